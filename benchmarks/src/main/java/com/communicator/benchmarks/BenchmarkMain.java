@@ -0,0 +1,37 @@
+package com.communicator.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of the benchmarks jar.
+ *
+ * <p>Runs JMH with the GC profiler, which reports allocation per operation, and writes the
+ * results to {@code jmh-result.json} so they can be kept and compared across releases. Passing
+ * {@code -prof} or {@code -rf} replaces the respective default; any other JMH option is passed
+ * through as is.</p>
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args JMH command line options
+     * @throws Exception if JMH fails
+     */
+    public static void main(final String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        if (!arguments.contains("-prof")) {
+            arguments.addAll(List.of("-prof", "gc"));
+        }
+        if (!arguments.contains("-rf")) {
+            arguments.addAll(List.of("-rf", "json", "-rff", "jmh-result.json"));
+        }
+        Main.main(arguments.toArray(String[]::new));
+    }
+}
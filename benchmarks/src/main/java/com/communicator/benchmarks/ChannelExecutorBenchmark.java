@@ -0,0 +1,110 @@
+package com.communicator.benchmarks;
+
+import com.communicator.config.websockets.ChannelExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Compares the platform-thread and virtual-thread channel executors under blocking handlers.
+ *
+ * <p>Every operation is a burst in which each session sends a few messages. A session's messages
+ * are handled one after another, as with preserved receive order, and every handler blocks for
+ * the given time like a Mongo round trip. The burst ends when all messages have been handled,
+ * so the score is the time a burst of that many sessions takes to clear.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelExecutorBenchmark {
+
+    private static final int MESSAGES_PER_SESSION = 5;
+    private static final int MAX_CONCURRENCY = 1000;
+
+    @Param({"platform", "virtual"})
+    private String executorType;
+
+    @Param({"100", "1000"})
+    private int sessions;
+
+    @Param({"2000"})
+    private long blockingMicros;
+
+    private ThreadPoolTaskExecutor executor;
+    private AtomicIntegerArray lastHandled;
+
+    /**
+     * Creates the executor under test.
+     */
+    @Setup
+    public void setUp() {
+        executor = "virtual".equals(executorType)
+                ? ChannelExecutors.virtualThreads("benchmark-", MAX_CONCURRENCY)
+                : ChannelExecutors.platformThreads();
+        executor.initialize();
+        lastHandled = new AtomicIntegerArray(sessions);
+    }
+
+    /**
+     * Shuts the executor down.
+     */
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Handles one burst of messages from every session.
+     *
+     * @return number of sessions whose messages were handled in order
+     */
+    @Benchmark
+    public int burst() {
+        CompletableFuture<?>[] sessionsDone = new CompletableFuture<?>[sessions];
+        for (int session = 0; session < sessions; session++) {
+            int sessionIndex = session;
+            lastHandled.set(sessionIndex, 0);
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int message = 1; message <= MESSAGES_PER_SESSION; message++) {
+                int sequence = message;
+                chain = chain.thenRunAsync(() -> handle(sessionIndex, sequence), executor);
+            }
+            sessionsDone[session] = chain;
+        }
+        CompletableFuture.allOf(sessionsDone).join();
+
+        int inOrder = 0;
+        for (int session = 0; session < sessions; session++) {
+            if (lastHandled.get(session) == MESSAGES_PER_SESSION) {
+                inOrder++;
+            }
+        }
+        return inOrder;
+    }
+
+    private void handle(final int session, final int sequence) {
+        try {
+            TimeUnit.MICROSECONDS.sleep(blockingMicros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lastHandled.compareAndSet(session, sequence - 1, sequence);
+    }
+}
@@ -0,0 +1,98 @@
+package com.communicator.benchmarks;
+
+import com.communicator.dto.UserDto;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.entity.chat.ChatRoom;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds chat rooms resembling production data for the benchmarks.
+ */
+final class ChatFixtures {
+
+    /**
+     * User every generated room belongs to.
+     */
+    static final String USER_ID = "48123456789";
+
+    private static final long FIRST_PARTNER = 48_500_000_000L;
+
+    private ChatFixtures() {
+    }
+
+    /**
+     * Creates rooms of {@link #USER_ID}, mostly one-to-one chats with a group chat every tenth
+     * room. Partners repeat across rooms the way friends do.
+     *
+     * @param rooms number of rooms
+     * @param partners number of distinct partners
+     * @param groupSize number of members of every group chat
+     * @return chat rooms with a last message
+     */
+    static List<ChatRoom> rooms(final int rooms, final int partners, final int groupSize) {
+        final int groupEvery = 10;
+        Random random = new Random(rooms);
+        List<ChatRoom> chatRooms = new ArrayList<>(rooms);
+        for (int i = 0; i < rooms; i++) {
+            int members = i % groupEvery == 0 ? groupSize : 2;
+            List<UserDto> users = new ArrayList<>(members);
+            users.add(user(USER_ID));
+            for (int m = 1; m < members; m++) {
+                users.add(user(String.valueOf(FIRST_PARTNER + random.nextInt(partners))));
+            }
+            chatRooms.add(room(users, users.get(1).getUserId()));
+        }
+        return chatRooms;
+    }
+
+    /**
+     * Creates a room with the given number of members.
+     *
+     * @param members number of members, at least two
+     * @return chat room with a last message
+     */
+    static ChatRoom room(final int members) {
+        List<UserDto> users = new ArrayList<>(members);
+        users.add(user(USER_ID));
+        for (int m = 1; m < members; m++) {
+            users.add(user(String.valueOf(FIRST_PARTNER + m)));
+        }
+        return room(users, USER_ID);
+    }
+
+    /**
+     * Creates a chat message of typical length.
+     *
+     * @param chatId chat id
+     * @param senderId sender id
+     * @return chat message
+     */
+    static ChatMessage message(final String chatId, final String senderId) {
+        return ChatMessage.builder()
+                .messageId(new ObjectId().toHexString())
+                .chatId(chatId)
+                .senderId(senderId)
+                .content("Hello everyone, see you at the meeting tomorrow!")
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    private static ChatRoom room(final List<UserDto> users, final String lastSender) {
+        ChatRoom chatRoom = new ChatRoom();
+        chatRoom.setChatId(new ObjectId().toHexString());
+        chatRoom.setUsers(users);
+        chatRoom.setLastMessage(message(chatRoom.getChatId(), lastSender));
+        return chatRoom;
+    }
+
+    private static UserDto user(final String userId) {
+        return new UserDto(userId, "Jan", "Kowalski",
+                "https://img.freepik.com/premium-vector/illustration-persons-face-outline-icon-symbolizing"
+                        + "-anonymity_1171540-20820.jpg");
+    }
+}
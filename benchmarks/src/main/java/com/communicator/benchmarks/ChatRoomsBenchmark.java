@@ -0,0 +1,75 @@
+package com.communicator.benchmarks;
+
+import com.communicator.dto.chat.ChatPreview;
+import com.communicator.entity.chat.ChatRoom;
+import com.communicator.services.chat.ChatBroadcastService;
+import com.communicator.services.chat.ChatService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the in-memory work done on a user's chat rooms: collecting chat partners with
+ * {@link ChatBroadcastService#getFriendsIds} and mapping rooms to previews with
+ * {@link ChatService#toChatPreviewList}. Room counts cover a new user, a typical one and a heavy
+ * one; every tenth room is a group chat of ten members.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatRoomsBenchmark {
+
+    private static final int GROUP_SIZE = 10;
+
+    @Param({"10", "100", "1000"})
+    private int rooms;
+
+    private ChatBroadcastService chatBroadcastService;
+    private ChatService chatService;
+    private List<ChatRoom> chatRooms;
+
+    /**
+     * Creates the services and the rooms.
+     */
+    @Setup
+    public void setUp() {
+        chatBroadcastService = new ChatBroadcastService(null, null);
+        chatService = new ChatService(null, null, null, null, null, null, null, null);
+        chatRooms = ChatFixtures.rooms(rooms, Math.max(rooms / 2, GROUP_SIZE), GROUP_SIZE);
+    }
+
+    /**
+     * Collects ids of all chat partners.
+     *
+     * @return partner ids
+     */
+    @Benchmark
+    public Set<String> getFriendsIds() {
+        return chatBroadcastService.getFriendsIds(ChatFixtures.USER_ID, chatRooms);
+    }
+
+    /**
+     * Maps rooms to previews.
+     *
+     * @return previews
+     */
+    @Benchmark
+    public List<ChatPreview> toChatPreviewList() {
+        return chatService.toChatPreviewList(chatRooms);
+    }
+}
@@ -0,0 +1,123 @@
+package com.communicator.benchmarks;
+
+import com.communicator.dto.MessageType;
+import com.communicator.entity.TypedWebSocketMessage;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.services.cluster.ClusterMessagingService;
+import com.communicator.services.cluster.LoopbackCluster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures delivery latency of a chat message to a user connected to another node.
+ *
+ * <p>Two {@link ClusterMessagingService} nodes share a {@link LoopbackCluster}. Each benchmark
+ * sends a message and waits until it reaches the recipient node's local broker channel, so
+ * {@code crossNodeDelivery} covers serialization, the relay hop and the hand-off to the broker.
+ * {@code localDelivery} sends to a user connected to the sending node for comparison.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClusterFanOutBenchmark {
+
+    private static final String REMOTE_USER = "48123456789";
+    private static final String LOCAL_USER = "48987654321";
+
+    @Param({"64", "4096"})
+    private int contentLength;
+
+    private ClusterMessagingService sendingNode;
+    private ClusterMessagingService receivingNode;
+    private TypedWebSocketMessage message;
+    private volatile CompletableFuture<Message<?>> delivered;
+
+    /**
+     * Starts two nodes with one user connected to each.
+     */
+    @Setup
+    public void setUp() {
+        LoopbackCluster cluster = LoopbackCluster.named("benchmark-" + UUID.randomUUID());
+        sendingNode = new ClusterMessagingService(template(), cluster, cluster, "node-a");
+        receivingNode = new ClusterMessagingService(template(), cluster, cluster, "node-b");
+        sendingNode.start();
+        receivingNode.start();
+        sendingNode.userConnected(LOCAL_USER);
+        receivingNode.userConnected(REMOTE_USER);
+
+        ChatMessage chatMessage = ChatMessage.builder()
+                .messageId(UUID.randomUUID().toString())
+                .chatId(UUID.randomUUID().toString())
+                .senderId(LOCAL_USER)
+                .content("x".repeat(contentLength))
+                .timestamp(Instant.now())
+                .build();
+        message = new TypedWebSocketMessage(MessageType.CHAT_MESSAGE, chatMessage);
+    }
+
+    /**
+     * Stops both nodes.
+     */
+    @TearDown
+    public void tearDown() {
+        sendingNode.stop();
+        receivingNode.stop();
+    }
+
+    /**
+     * Sends to a user connected to the other node.
+     *
+     * @return message handed to the receiving node's broker
+     */
+    @Benchmark
+    public Message<?> crossNodeDelivery() {
+        delivered = new CompletableFuture<>();
+        sendingNode.sendToUser(REMOTE_USER, message);
+        return delivered.join();
+    }
+
+    /**
+     * Sends to a user connected to the sending node.
+     *
+     * @return message handed to the sending node's broker
+     */
+    @Benchmark
+    public Message<?> localDelivery() {
+        delivered = new CompletableFuture<>();
+        sendingNode.sendToUser(LOCAL_USER, message);
+        return delivered.join();
+    }
+
+    private SimpMessagingTemplate template() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((brokerMessage, timeout) -> {
+            delivered.complete(brokerMessage);
+            return true;
+        });
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        template.setMessageConverter(converter);
+        return template;
+    }
+}
@@ -0,0 +1,94 @@
+package com.communicator.benchmarks;
+
+import com.communicator.config.websockets.WebSocketEventListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link WebSocketEventListener} finds the phone number of a connecting client. The
+ * listener renders the headers of the connected event to a string and searches it, so
+ * {@code renderAndParse} covers the whole cost and {@code parse} only the search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectHeadersBenchmark {
+
+    private static final long HEARTBEAT_MILLIS = 10_000;
+
+    private WebSocketEventListener listener;
+    private MethodHandle getPhoneNumberFromHeaders;
+    private MessageHeaders headers;
+    private String renderedHeaders;
+
+    /**
+     * Builds the headers of a connected event the way the STOMP handler does.
+     *
+     * @throws ReflectiveOperationException if the parsing method cannot be found
+     */
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        listener = new WebSocketEventListener(null, null, null, null, null, null);
+        Method method = WebSocketEventListener.class.getDeclaredMethod("getPhoneNumberFromHeaders", String.class);
+        method.setAccessible(true);
+        getPhoneNumberFromHeaders = MethodHandles.lookup().unreflect(method);
+
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.setAcceptVersion("1.1,1.0");
+        connect.setHeartbeat(HEARTBEAT_MILLIS, HEARTBEAT_MILLIS);
+        connect.setNativeHeader("phoneNumber", ChatFixtures.USER_ID);
+        connect.setSessionId("f3x1kq2m");
+        Message<byte[]> connectMessage = MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders());
+
+        SimpMessageHeaderAccessor connected = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+        connected.setSessionId("f3x1kq2m");
+        connected.setHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER, connectMessage);
+        headers = connected.getMessageHeaders();
+        renderedHeaders = headers.toString();
+    }
+
+    /**
+     * Searches already rendered headers.
+     *
+     * @return phone number
+     * @throws Throwable never, the method does not throw
+     */
+    @Benchmark
+    public String parse() throws Throwable {
+        return (String) getPhoneNumberFromHeaders.invoke(listener, renderedHeaders);
+    }
+
+    /**
+     * Renders the headers and searches them, as done on every connect.
+     *
+     * @return phone number
+     * @throws Throwable never, the method does not throw
+     */
+    @Benchmark
+    public String renderAndParse() throws Throwable {
+        return (String) getPhoneNumberFromHeaders.invoke(listener, headers.toString());
+    }
+}
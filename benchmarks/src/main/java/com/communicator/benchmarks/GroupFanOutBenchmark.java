@@ -0,0 +1,113 @@
+package com.communicator.benchmarks;
+
+import com.communicator.dto.MessageType;
+import com.communicator.entity.TypedWebSocketMessage;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.services.cluster.ClusterMessagingService;
+import com.communicator.services.cluster.LoopbackCluster;
+import com.communicator.services.cluster.SerializedMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares sending one chat message to a group with one serialization per recipient against
+ * serializing it once. Run with {@code -prof gc} to see the allocation difference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupFanOutBenchmark {
+
+    @Param({"2", "50"})
+    private int recipients;
+
+    private ClusterMessagingService node;
+    private String[] userIds;
+    private TypedWebSocketMessage message;
+    private Blackhole blackhole;
+
+    /**
+     * Starts a single node with every recipient connected to it.
+     *
+     * @param blackholeParam sink for the frames handed to the broker
+     */
+    @Setup
+    public void setUp(final Blackhole blackholeParam) {
+        blackhole = blackholeParam;
+        SimpMessagingTemplate template = new SimpMessagingTemplate((brokerMessage, timeout) -> {
+            blackhole.consume(brokerMessage);
+            return true;
+        });
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        template.setMessageConverter(converter);
+
+        LoopbackCluster cluster = LoopbackCluster.named("benchmark-" + UUID.randomUUID());
+        node = new ClusterMessagingService(template, cluster, cluster, "node-a");
+        node.start();
+        userIds = new String[recipients];
+        for (int i = 0; i < recipients; i++) {
+            userIds[i] = String.valueOf(48_100_000_000L + i);
+            node.userConnected(userIds[i]);
+        }
+
+        ChatMessage chatMessage = ChatMessage.builder()
+                .messageId(UUID.randomUUID().toString())
+                .chatId(UUID.randomUUID().toString())
+                .senderId(userIds[0])
+                .content("Hello everyone, see you at the meeting tomorrow!")
+                .timestamp(Instant.now())
+                .build();
+        message = new TypedWebSocketMessage(MessageType.CHAT_MESSAGE, chatMessage);
+    }
+
+    /**
+     * Stops the node.
+     */
+    @TearDown
+    public void tearDown() {
+        node.stop();
+    }
+
+    /**
+     * Serializes the message again for every recipient.
+     */
+    @Benchmark
+    public void serializePerRecipient() {
+        for (String userId : userIds) {
+            node.sendToUser(userId, message);
+        }
+    }
+
+    /**
+     * Serializes the message once and reuses the bytes for every recipient.
+     */
+    @Benchmark
+    public void serializeOnce() {
+        SerializedMessage serializedMessage = node.serialize(message);
+        for (String userId : userIds) {
+            node.sendToUser(userId, serializedMessage);
+        }
+    }
+}
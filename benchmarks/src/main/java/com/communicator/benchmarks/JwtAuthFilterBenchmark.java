@@ -0,0 +1,136 @@
+package com.communicator.benchmarks;
+
+import com.communicator.config.auth.JWTAuthFilter;
+import com.communicator.config.auth.VerifiedTokenCache;
+import com.communicator.entity.AppUser;
+import com.communicator.services.TokenRevocationService;
+import com.communicator.services.UserService;
+import com.communicator.services.utils.JWTUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JWT filter before and after the verified token cache.
+ *
+ * <p>{@code legacyFilter} repeats what the filter used to do on every request: parse the token for
+ * its subject, load the user and parse it twice more in {@code isTokenValid}. The user lookup is
+ * modelled with {@link Blackhole#consumeCPU(long)} so its cost can be varied with
+ * {@code userLookupTokens}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+
+    private static final String PHONE_NUMBER = "48123456789";
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+    private static final long EXPIRATION_MILLIS = 3_600_000;
+
+    @Param({"0", "1000"})
+    private long userLookupTokens;
+
+    private JWTUtils jwtUtils;
+    private UserService userService;
+    private VerifiedTokenCache verifiedTokenCache;
+    private JWTAuthFilter filter;
+    private String token;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain chain;
+
+    /**
+     * Wires the filter with a stubbed user service.
+     */
+    @Setup
+    public void setUp() {
+        AppUser appUser = new AppUser();
+        appUser.setPhoneNumber(PHONE_NUMBER);
+
+        jwtUtils = new JWTUtils();
+        ReflectionTestUtils.setField(jwtUtils, "secretString", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "accessTokenExpiration", EXPIRATION_MILLIS);
+        ReflectionTestUtils.invokeMethod(jwtUtils, "init");
+
+        final long lookupTokens = userLookupTokens;
+        userService = new UserService() {
+            @Override
+            public AppUser findByPhoneNumber(final String phoneNumber) {
+                Blackhole.consumeCPU(lookupTokens);
+                return appUser;
+            }
+        };
+
+        verifiedTokenCache = new VerifiedTokenCache(1024);
+        filter = new JWTAuthFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "userService", userService);
+        ReflectionTestUtils.setField(filter, "verifiedTokenCache", verifiedTokenCache);
+        ReflectionTestUtils.setField(filter, "tokenRevocationService",
+                new TokenRevocationService(null, null, EXPIRATION_MILLIS));
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        filter.init();
+
+        token = jwtUtils.generateAccessToken(appUser, 0);
+        request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+        chain = (req, res) -> { };
+    }
+
+    /**
+     * Request path as it was before the cache: three parses and a user lookup.
+     *
+     * @return validation result
+     */
+    @Benchmark
+    public boolean legacyFilter() {
+        String phoneNumber = jwtUtils.extractPhoneNumber(token);
+        AppUser appUser = userService.findByPhoneNumber(phoneNumber);
+        return jwtUtils.extractPhoneNumber(token).equals(appUser.getPhoneNumber())
+                && !jwtUtils.isTokenExpired(token);
+    }
+
+    /**
+     * Repeat request with a token that is already cached.
+     *
+     * @throws Exception if the filter fails
+     */
+    @Benchmark
+    public void cachedFilterHit() throws Exception {
+        filter.doFilter(request, response, chain);
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * First request with a token: one parse, one user lookup and a cache insert.
+     *
+     * @throws Exception if the filter fails
+     */
+    @Benchmark
+    public void cachedFilterMiss() throws Exception {
+        verifiedTokenCache.revokeSubject(PHONE_NUMBER);
+        filter.doFilter(request, response, chain);
+        SecurityContextHolder.clearContext();
+    }
+}
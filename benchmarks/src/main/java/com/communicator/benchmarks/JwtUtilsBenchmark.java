@@ -0,0 +1,81 @@
+package com.communicator.benchmarks;
+
+import com.communicator.entity.AppUser;
+import com.communicator.services.utils.JWTUtils;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures issuing and verifying access tokens with {@link JWTUtils}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+    private static final long EXPIRATION_MILLIS = 3_600_000;
+
+    private JWTUtils jwtUtils;
+    private AppUser appUser;
+    private String token;
+
+    /**
+     * Initializes the utils with a fixed secret and issues a token to verify.
+     */
+    @Setup
+    public void setUp() {
+        jwtUtils = new JWTUtils();
+        ReflectionTestUtils.setField(jwtUtils, "secretString", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "accessTokenExpiration", EXPIRATION_MILLIS);
+        ReflectionTestUtils.invokeMethod(jwtUtils, "init");
+        appUser = new AppUser();
+        appUser.setPhoneNumber(ChatFixtures.USER_ID);
+        token = jwtUtils.generateAccessToken(appUser, 0);
+    }
+
+    /**
+     * Issues an access token.
+     *
+     * @return signed token
+     */
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtUtils.generateAccessToken(appUser, 0);
+    }
+
+    /**
+     * Verifies the signature and parses the claims once.
+     *
+     * @return token claims
+     */
+    @Benchmark
+    public Claims parseClaims() {
+        return jwtUtils.parseClaims(token);
+    }
+
+    /**
+     * Checks the subject and expiration of a token.
+     *
+     * @return true for a valid token
+     */
+    @Benchmark
+    public boolean isTokenValid() {
+        return jwtUtils.isTokenValid(token, appUser);
+    }
+}
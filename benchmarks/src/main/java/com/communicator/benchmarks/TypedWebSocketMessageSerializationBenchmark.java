@@ -0,0 +1,73 @@
+package com.communicator.benchmarks;
+
+import com.communicator.dto.MessageType;
+import com.communicator.entity.TypedWebSocketMessage;
+import com.communicator.entity.chat.ChatRoom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting {@link TypedWebSocketMessage}s into STOMP frame bodies with the JSON
+ * converter the message broker uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypedWebSocketMessageSerializationBenchmark {
+
+    @Param({"2", "50"})
+    private int chatMembers;
+
+    private MappingJackson2MessageConverter converter;
+    private TypedWebSocketMessage chatMessage;
+    private TypedWebSocketMessage newChat;
+
+    /**
+     * Creates the converter and the messages.
+     */
+    @Setup
+    public void setUp() {
+        converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        ChatRoom chatRoom = ChatFixtures.room(chatMembers);
+        chatMessage = new TypedWebSocketMessage(MessageType.CHAT_MESSAGE, chatRoom.getLastMessage());
+        newChat = new TypedWebSocketMessage(MessageType.NEW_CHAT, chatRoom);
+    }
+
+    /**
+     * Serializes a chat message.
+     *
+     * @return frame with the serialized body
+     */
+    @Benchmark
+    public Message<?> chatMessage() {
+        return converter.toMessage(chatMessage, null);
+    }
+
+    /**
+     * Serializes a new chat notification, which carries every member.
+     *
+     * @return frame with the serialized body
+     */
+    @Benchmark
+    public Message<?> newChat() {
+        return converter.toMessage(newChat, null);
+    }
+}
@@ -0,0 +1,164 @@
+package com.communicator.benchmarks;
+
+import com.communicator.config.websockets.CborFrameCodec;
+import com.communicator.dto.MessageType;
+import com.communicator.dto.chat.ChatPreview;
+import com.communicator.dto.chat.MessagesAfterLoginDto;
+import com.communicator.entity.TypedWebSocketMessage;
+import com.communicator.entity.chat.ActivityStatusUpdate;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.entity.chat.ChatRoom;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON frame bodies the broker sends with the CBOR bodies of {@link CborFrameCodec}:
+ * the cost of encoding and decoding one frame and, reported as the {@code bytes} counter of the
+ * encode benchmarks, its size in bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireCodecBenchmark {
+
+    @Param({"CHAT_MESSAGE", "ACTIVITY_STATUS_UPDATE", "ALL_CHATS"})
+    private MessageType type;
+
+    private MappingJackson2MessageConverter converter;
+    private ObjectMapper objectMapper;
+    private CborFrameCodec codec;
+    private TypedWebSocketMessage frame;
+    private byte[] json;
+    private byte[] cbor;
+
+    /**
+     * Creates the frame and its encoded bodies.
+     */
+    @Setup
+    public void setUp() {
+        final int chats = 50;
+        final int partners = 40;
+        final int groupSize = 8;
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        codec = new CborFrameCodec();
+
+        List<ChatRoom> rooms = ChatFixtures.rooms(chats, partners, groupSize);
+        frame = switch (type) {
+            case CHAT_MESSAGE -> new TypedWebSocketMessage(type, rooms.get(0).getLastMessage());
+            case ACTIVITY_STATUS_UPDATE -> new TypedWebSocketMessage(type,
+                    new ActivityStatusUpdate(ChatFixtures.USER_ID, true));
+            default -> new TypedWebSocketMessage(MessageType.ALL_CHATS, afterLogin(rooms));
+        };
+        json = toJson();
+        cbor = codec.encode(json);
+    }
+
+    /**
+     * Serializes the frame with the broker's JSON converter.
+     *
+     * @param size receives the size of the body
+     * @return JSON body
+     */
+    @Benchmark
+    public byte[] encodeJson(final FrameSize size) {
+        byte[] body = toJson();
+        size.bytes = body.length;
+        return body;
+    }
+
+    /**
+     * Serializes the frame as JSON and encodes it as CBOR, which is what a CBOR session costs.
+     *
+     * @param size receives the size of the body
+     * @return CBOR body
+     */
+    @Benchmark
+    public byte[] encodeCbor(final FrameSize size) {
+        byte[] body = codec.encode(toJson());
+        size.bytes = body.length;
+        return body;
+    }
+
+    /**
+     * Parses the JSON body, like a JSON client does.
+     *
+     * @return parsed frame
+     * @throws IOException never for a valid body
+     */
+    @Benchmark
+    public JsonNode decodeJson() throws IOException {
+        return objectMapper.readTree(json);
+    }
+
+    /**
+     * Decodes the CBOR body into the JSON shape, like a CBOR client does.
+     *
+     * @return decoded frame
+     */
+    @Benchmark
+    public JsonNode decodeCbor() {
+        return codec.decode(cbor);
+    }
+
+    private byte[] toJson() {
+        return (byte[]) converter.toMessage(frame, null).getPayload();
+    }
+
+    /**
+     * Size of the last encoded frame, reported next to the time of the encode benchmarks.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class FrameSize {
+
+        /**
+         * Size of the frame body in bytes.
+         */
+        public long bytes;
+
+        /**
+         * Clears the size of the previous iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    private static MessagesAfterLoginDto afterLogin(final List<ChatRoom> rooms) {
+        Map<String, Boolean> friendsActivity = new HashMap<>();
+        List<ChatPreview> previews = rooms.stream().map(room -> {
+            ChatMessage last = room.getLastMessage();
+            room.getUsers().forEach(user -> friendsActivity.put(user.getUserId(), false));
+            return new ChatPreview(room.getChatId(), room.getUsers(), false, room.getPhoto(), last.getContent(),
+                    last.getSenderId(), last.getTimestamp(), last.getMessageId());
+        }).toList();
+        return new MessagesAfterLoginDto(previews, List.of(), friendsActivity);
+    }
+}
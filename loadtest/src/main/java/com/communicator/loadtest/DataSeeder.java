@@ -0,0 +1,102 @@
+package com.communicator.loadtest;
+
+import com.communicator.dto.UserDto;
+import com.communicator.entity.AppUser;
+import com.communicator.entity.chat.ChatRoom;
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the users and chats the simulated clients use.
+ *
+ * <p>Clients are paired: users {@code 2n} and {@code 2n + 1} share one chat. Seeded users and
+ * chats are removed first, so runs can be repeated against the same database.</p>
+ */
+final class DataSeeder {
+
+    private static final long FIRST_PHONE_NUMBER = 48_700_000_000L;
+    private static final int BATCH_SIZE = 1000;
+
+    private DataSeeder() {
+    }
+
+    /**
+     * Seeds the database.
+     *
+     * @param mongoUri connection string including the database name
+     * @param clients number of users to create
+     * @return chat id of every user, indexed like {@link #userId(int)}
+     */
+    static List<String> seed(final String mongoUri, final int clients) {
+        try (MongoClient mongoClient = MongoClients.create(mongoUri)) {
+            String database = new ConnectionString(mongoUri).getDatabase();
+            MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, database == null ? "test" : database);
+
+            List<String> userIds = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                userIds.add(userId(i));
+            }
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(userIds)), AppUser.class);
+            mongoTemplate.remove(Query.query(Criteria.where("users.userId").in(userIds)), ChatRoom.class);
+
+            List<String> chatIds = new ArrayList<>(clients);
+            BulkOperations users = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AppUser.class);
+            BulkOperations chats = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatRoom.class);
+            for (int i = 0; i < clients; i += 2) {
+                users.insert(user(userIds.get(i)));
+                users.insert(user(userIds.get(i + 1)));
+                ChatRoom chatRoom = new ChatRoom();
+                chatRoom.setChatId(new ObjectId().toHexString());
+                chatRoom.setUsers(List.of(userDto(userIds.get(i)), userDto(userIds.get(i + 1))));
+                chats.insert(chatRoom);
+                chatIds.add(chatRoom.getChatId());
+                chatIds.add(chatRoom.getChatId());
+                if (chatIds.size() % BATCH_SIZE == 0) {
+                    users.execute();
+                    chats.execute();
+                    users = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AppUser.class);
+                    chats = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatRoom.class);
+                }
+            }
+            if (chatIds.size() % BATCH_SIZE != 0) {
+                users.execute();
+                chats.execute();
+            }
+            return chatIds;
+        }
+    }
+
+    /**
+     * Phone number of the client with the given index.
+     *
+     * @param index client index
+     * @return phone number
+     */
+    static String userId(final int index) {
+        return String.valueOf(FIRST_PHONE_NUMBER + index);
+    }
+
+    private static AppUser user(final String userId) {
+        AppUser appUser = new AppUser();
+        appUser.setPhoneNumber(userId);
+        appUser.setFirstName("Load");
+        appUser.setLastName("Test " + userId);
+        appUser.setEmail(userId + "@loadtest.invalid");
+        appUser.setPassword("{noop}load-test");
+        appUser.setValidated(true);
+        return appUser;
+    }
+
+    private static UserDto userDto(final String userId) {
+        return new UserDto(userId, "Load", "Test " + userId, null);
+    }
+}
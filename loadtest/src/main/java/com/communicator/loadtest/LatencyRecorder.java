@@ -0,0 +1,73 @@
+package com.communicator.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and counters of one kind of round trip.
+ *
+ * <p>Values are recorded in microseconds with three significant digits. Sends without a
+ * matching receive show up as the difference between the two counters.</p>
+ */
+final class LatencyRecorder {
+
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final String name;
+    private final Histogram histogram = new ConcurrentHistogram(MAX_MICROS, SIGNIFICANT_DIGITS);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    LatencyRecorder(final String recorderName) {
+        this.name = recorderName;
+    }
+
+    void sent() {
+        sent.increment();
+    }
+
+    void received(final long sentAtNanos) {
+        received.increment();
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAtNanos);
+        histogram.recordValue(Math.min(Math.max(micros, 0), MAX_MICROS));
+    }
+
+    long getReceived() {
+        return received.sum();
+    }
+
+    void reset() {
+        histogram.reset();
+        sent.reset();
+        received.reset();
+    }
+
+    void printSummary(final PrintStream out, final double seconds) {
+        out.printf("%-14s sent=%d received=%d throughput=%.1f/s p50=%.2fms p90=%.2fms p99=%.2fms "
+                        + "p99.9=%.2fms max=%.2fms%n",
+                name, sent.sum(), received.sum(), received.sum() / seconds,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    void writeHistogram(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+
+    private static double millis(final long micros) {
+        return micros / MICROS_PER_MILLI;
+    }
+}
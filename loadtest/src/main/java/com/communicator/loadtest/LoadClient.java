@@ -0,0 +1,134 @@
+package com.communicator.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One simulated user.
+ *
+ * <p>After connecting the client subscribes to its user destination and acknowledges the
+ * subscription, which makes the server send the {@code ALL_CHATS} bootstrap. From then on
+ * {@link #tick()} sends a chat message to its partner and, every few ticks, requests the last
+ * messages of the chat. Chat messages carry their send time in the content, so the partner can
+ * record the send-to-receive latency when the message arrives.</p>
+ */
+@Slf4j
+final class LoadClient extends StompSessionHandlerAdapter {
+
+    private static final String SENT_AT_PREFIX = "sent-at:";
+
+    private final String userId;
+    private final String chatId;
+    private final int lastMessagesEvery;
+    private final LoadGenerator.Recorders recorders;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private final AtomicInteger ticks = new AtomicInteger();
+    private final AtomicLong lastMessagesSentAt = new AtomicLong();
+    private volatile StompSession session;
+    private volatile long connectStartedAt;
+
+    LoadClient(final String userIdValue, final String chatIdValue, final int lastMessagesEveryValue,
+               final LoadGenerator.Recorders recordersValue) {
+        this.userId = userIdValue;
+        this.chatId = chatIdValue;
+        this.lastMessagesEvery = lastMessagesEveryValue;
+        this.recorders = recordersValue;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    CompletableFuture<Void> getReady() {
+        return ready;
+    }
+
+    void connectStarted() {
+        connectStartedAt = System.nanoTime();
+        recorders.bootstrap().sent();
+    }
+
+    @Override
+    public void afterConnected(final StompSession stompSession, final StompHeaders connectedHeaders) {
+        session = stompSession;
+        stompSession.subscribe("/user/" + userId + "/" + userId, this);
+        stompSession.send("/app/ack", Map.of("userId", userId));
+    }
+
+    @Override
+    public Type getPayloadType(final StompHeaders headers) {
+        return Map.class;
+    }
+
+    @Override
+    public void handleFrame(final StompHeaders headers, final Object payload) {
+        if (!(payload instanceof Map<?, ?> message)) {
+            return;
+        }
+        Object type = message.get("type");
+        if ("ALL_CHATS".equals(type)) {
+            recorders.bootstrap().received(connectStartedAt);
+            ready.complete(null);
+        } else if ("CHAT_MESSAGE".equals(type) && message.get("content") instanceof Map<?, ?> chatMessage
+                && !userId.equals(chatMessage.get("senderId"))
+                && chatMessage.get("content") instanceof String content && content.startsWith(SENT_AT_PREFIX)) {
+            recorders.chatMessage().received(Long.parseLong(content.substring(SENT_AT_PREFIX.length())));
+        } else if ("LAST_MESSAGES".equals(type)) {
+            long sentAt = lastMessagesSentAt.getAndSet(0);
+            if (sentAt != 0) {
+                recorders.lastMessages().received(sentAt);
+            }
+        }
+    }
+
+    @Override
+    public void handleException(final StompSession stompSession, final StompCommand command,
+                                final StompHeaders headers, final byte[] payload, final Throwable exception) {
+        log.warn("Client {} failed to handle {}", userId, command, exception);
+    }
+
+    @Override
+    public void handleTransportError(final StompSession stompSession, final Throwable exception) {
+        if (!ready.isDone()) {
+            ready.completeExceptionally(exception);
+        }
+        log.debug("Client {} transport error", userId, exception);
+    }
+
+    /**
+     * Sends the next chat message and, every few ticks, a last messages request.
+     */
+    void tick() {
+        StompSession current = session;
+        if (current == null || !current.isConnected() || !ready.isDone()) {
+            return;
+        }
+        current.send("/app/chat/message", Map.of(
+                "chatId", chatId,
+                "senderId", userId,
+                "content", SENT_AT_PREFIX + System.nanoTime()));
+        recorders.chatMessage().sent();
+
+        if (ticks.incrementAndGet() % lastMessagesEvery == 0
+                && lastMessagesSentAt.compareAndSet(0, System.nanoTime())) {
+            current.send("/app/lastMessage", Map.of("chatId", chatId, "userId", userId));
+            recorders.lastMessages().sent();
+        }
+    }
+
+    void disconnect() {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.communicator.loadtest;
+
+import com.communicator.CommunicatorServerApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator simulating many concurrent users of one server node.
+ *
+ * <p>Every client connects to {@code /ws} over SockJS, subscribes to its user destination,
+ * acknowledges the subscription to receive {@code ALL_CHATS}, and then keeps sending chat
+ * messages to its partner and periodically asks for the chat's last messages. Three latency
+ * histograms are recorded: connect to {@code ALL_CHATS}, chat message send to receive by the
+ * partner, and last messages request to response. Summaries are printed at the end and full
+ * percentile distributions are written as {@code .hgrm} files.</p>
+ *
+ * <p>By default an embedded {@code mongod} is started as a stand-in (see {@link StandInMongo}) and
+ * the server is started in this JVM, so a run works on a single offline box once the Mongo binary
+ * has been fetched. {@code --mongo-container} starts the stand-in in a container instead. Use
+ * {@code --mongo-uri} to seed and use an existing database, and {@code --embedded-server false
+ * --url ...} to load a server started separately.</p>
+ */
+@Slf4j
+public final class LoadGenerator {
+
+    private static final String DATABASE = "communicatorLoadTest";
+    private static final long READY_TIMEOUT_SECONDS = 60;
+    private static final long DRAIN_MILLIS = 2000;
+    private static final long PROGRESS_SECONDS = 5;
+
+    /**
+     * Recorders shared by all clients.
+     *
+     * @param bootstrap connect to {@code ALL_CHATS}
+     * @param chatMessage chat message send to receive by the partner
+     * @param lastMessages last messages request to response
+     */
+    record Recorders(LatencyRecorder bootstrap, LatencyRecorder chatMessage, LatencyRecorder lastMessages) {
+    }
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args options, see {@link LoadTestOptions}
+     * @throws Exception if the run cannot be completed
+     */
+    public static void main(final String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        if (!options.embeddedServer() && options.mongoUri() == null) {
+            throw new IllegalArgumentException("--mongo-uri of the server's database is needed to seed it");
+        }
+
+        StandInMongo mongo = null;
+        ConfigurableApplicationContext server = null;
+        try {
+            String mongoUri = options.mongoUri();
+            if (mongoUri == null) {
+                mongo = options.mongoContainer() ? StandInMongo.container()
+                        : StandInMongo.embedded(options.mongoDistributionUrl());
+                mongoUri = mongo.uri(DATABASE);
+            }
+            List<String> chatIds = DataSeeder.seed(mongoUri, options.clients());
+            log.info("Seeded {} users", options.clients());
+
+            String url = options.url();
+            if (options.embeddedServer()) {
+                server = startServer(mongoUri);
+                url = "http://localhost:" + server.getEnvironment().getProperty("local.server.port") + "/ws";
+            }
+            run(options, url, chatIds);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+            if (mongo != null) {
+                mongo.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startServer(final String mongoUri) {
+        return new SpringApplicationBuilder(CommunicatorServerApplication.class).run(
+                "--spring.profiles.active=loadtest",
+                "--spring.devtools.restart.enabled=false",
+                "--server.port=0",
+                "--spring.data.mongodb.uri=" + mongoUri,
+                "--application.security.jwt.secret-string=" + UUID.randomUUID() + UUID.randomUUID(),
+                "--application.security.jwt.access-token-expiration=3600000",
+                "--application.mail.service.from=loadtest@localhost",
+                "--application.mail.service.password=",
+                "--application.mail.service.host=localhost",
+                "--application.mail.service.port=25");
+    }
+
+    private static void run(final LoadTestOptions options, final String url, final List<String> chatIds)
+            throws InterruptedException, IOException {
+        Recorders recorders = new Recorders(new LatencyRecorder("bootstrap"), new LatencyRecorder("chat-message"),
+                new LatencyRecorder("last-messages"));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(converter);
+        stompClient.setDefaultHeartbeat(new long[] {0, 0});
+
+        List<LoadClient> clients = connect(options, url, chatIds, stompClient, recorders);
+        long connected = clients.stream().filter(client -> !client.getReady().isCompletedExceptionally()
+                && client.getReady().isDone()).count();
+        log.info("{} of {} clients connected", connected, clients.size());
+        // Messages exchanged while others were still connecting are not steady state.
+        recorders.chatMessage().reset();
+        recorders.lastMessages().reset();
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Runtime.getRuntime().availableProcessors(), Thread.ofPlatform().name("load-", 0).factory());
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(options.messageIntervalMillis());
+        for (int i = 0; i < clients.size(); i++) {
+            LoadClient client = clients.get(i);
+            scheduler.scheduleAtFixedRate(client::tick, intervalNanos * i / clients.size(), intervalNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        while (System.nanoTime() < end) {
+            TimeUnit.SECONDS.sleep(Math.min(PROGRESS_SECONDS,
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(end - System.nanoTime()))));
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            log.info("{}s: {} chat messages received ({}/s)", Math.round(elapsed),
+                    recorders.chatMessage().getReceived(),
+                    Math.round(recorders.chatMessage().getReceived() / elapsed));
+        }
+        scheduler.shutdownNow();
+        Thread.sleep(DRAIN_MILLIS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%n%d clients, %d connected, %.0fs%n", clients.size(), connected, seconds);
+        for (LatencyRecorder recorder : List.of(recorders.bootstrap(), recorders.chatMessage(),
+                recorders.lastMessages())) {
+            recorder.printSummary(System.out, recorder == recorders.bootstrap() ? options.rampUpSeconds() : seconds);
+            recorder.writeHistogram(options.resultsDir());
+        }
+        System.out.println("Histograms written to " + options.resultsDir().toAbsolutePath());
+
+        clients.forEach(LoadClient::disconnect);
+        stompClient.stop();
+    }
+
+    private static List<LoadClient> connect(final LoadTestOptions options, final String url,
+                                            final List<String> chatIds, final WebSocketStompClient stompClient,
+                                            final Recorders recorders) throws InterruptedException {
+        List<LoadClient> clients = new ArrayList<>(options.clients());
+        long rampUpNanos = TimeUnit.SECONDS.toNanos(options.rampUpSeconds());
+        long start = System.nanoTime();
+        for (int i = 0; i < options.clients(); i++) {
+            LockSupport.parkNanos(start + rampUpNanos * i / options.clients() - System.nanoTime());
+            LoadClient client = new LoadClient(DataSeeder.userId(i), chatIds.get(i), options.lastMessagesEvery(),
+                    recorders);
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add("phoneNumber", client.getUserId());
+            client.connectStarted();
+            stompClient.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, client)
+                    .exceptionally(e -> {
+                        client.getReady().completeExceptionally(e);
+                        return null;
+                    });
+            clients.add(client);
+        }
+
+        CompletableFuture<?>[] ready = clients.stream()
+                .map(client -> client.getReady().exceptionally(e -> null))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(ready).get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Not every client received ALL_CHATS within {} seconds", READY_TIMEOUT_SECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        return clients;
+    }
+}
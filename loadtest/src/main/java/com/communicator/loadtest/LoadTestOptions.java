@@ -0,0 +1,78 @@
+package com.communicator.loadtest;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line options of the load generator.
+ *
+ * @param url SockJS endpoint of the server, ignored when the server is started in-process
+ * @param clients number of simulated users, paired into one-to-one chats
+ * @param rampUpSeconds time over which the clients connect
+ * @param durationSeconds time messages are sent for once every client is connected
+ * @param messageIntervalMillis time between two chat messages of one client
+ * @param lastMessagesEvery every how many chat messages a client also requests the last messages
+ * @param mongoUri Mongo the server uses, or null to start a stand-in
+ * @param mongoContainer whether the stand-in Mongo runs in a container instead of as an embedded {@code mongod}
+ * @param mongoDistributionUrl base URL the embedded {@code mongod} binary is fetched from when it is not
+ *                             cached yet, or null for the MongoDB download site
+ * @param embeddedServer whether to start the server in this JVM
+ * @param resultsDir directory the histograms are written to
+ */
+public record LoadTestOptions(String url, int clients, int rampUpSeconds, int durationSeconds,
+                              long messageIntervalMillis, int lastMessagesEvery, String mongoUri,
+                              boolean mongoContainer, String mongoDistributionUrl, boolean embeddedServer,
+                              Path resultsDir) {
+
+    private static final Set<String> KNOWN = Set.of("url", "clients", "ramp-up-seconds", "duration-seconds",
+            "message-interval-ms", "last-messages-every", "mongo-uri", "mongo-container", "mongo-distribution-url",
+            "embedded-server", "results-dir");
+
+    /**
+     * Parses {@code --name value} or {@code --name=value} options.
+     *
+     * @param args command line arguments
+     * @return options with defaults for everything not given
+     */
+    public static LoadTestOptions parse(final String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            String option = args[i].substring(2);
+            int equals = option.indexOf('=');
+            if (equals >= 0) {
+                values.put(option.substring(0, equals), option.substring(equals + 1));
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                values.put(option, args[++i]);
+            } else {
+                values.put(option, "true");
+            }
+        }
+        for (String name : values.keySet()) {
+            if (!KNOWN.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + ", known options: " + KNOWN);
+            }
+        }
+
+        int clients = Integer.parseInt(values.getOrDefault("clients", "1000"));
+        if (clients < 2 || clients % 2 != 0) {
+            throw new IllegalArgumentException("--clients must be an even number of at least 2");
+        }
+        return new LoadTestOptions(
+                values.getOrDefault("url", "http://localhost:8080/ws"),
+                clients,
+                Integer.parseInt(values.getOrDefault("ramp-up-seconds", "30")),
+                Integer.parseInt(values.getOrDefault("duration-seconds", "60")),
+                Long.parseLong(values.getOrDefault("message-interval-ms", "1000")),
+                Integer.parseInt(values.getOrDefault("last-messages-every", "10")),
+                values.get("mongo-uri"),
+                Boolean.parseBoolean(values.getOrDefault("mongo-container", "false")),
+                values.get("mongo-distribution-url"),
+                Boolean.parseBoolean(values.getOrDefault("embedded-server", "true")),
+                Path.of(values.getOrDefault("results-dir", "target/loadtest-results")));
+    }
+}
@@ -0,0 +1,79 @@
+package com.communicator.loadtest;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.embed.mongo.types.DistributionBaseUrl;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Throwaway Mongo the load test seeds and points the server at when no {@code --mongo-uri} is given.
+ *
+ * <p>The default is an embedded {@code mongod} run from the binary flapdoodle keeps in
+ * {@code ~/.embedmongo}, so after the binary has been fetched once a run needs neither Docker nor
+ * network access. On a box that was never online, point {@code --mongo-distribution-url} at a
+ * local copy of the MongoDB download tree ({@code file:///...}). The container is kept as an
+ * opt-in for machines that already have Docker and the image.</p>
+ */
+final class StandInMongo implements AutoCloseable {
+
+    private static final String MONGO_IMAGE = "mongo:7.0";
+
+    private final UnaryOperator<String> uriOfDatabase;
+    private final AutoCloseable stop;
+
+    private StandInMongo(final UnaryOperator<String> standInUriOfDatabase, final AutoCloseable standInStop) {
+        this.uriOfDatabase = standInUriOfDatabase;
+        this.stop = standInStop;
+    }
+
+    /**
+     * Starts an embedded {@code mongod}.
+     *
+     * @param distributionUrl base URL the binary is fetched from when it is not cached yet, or null for
+     *                        the MongoDB download site
+     * @return the running stand-in
+     */
+    static StandInMongo embedded(final String distributionUrl) {
+        Mongod mongod = Mongod.instance();
+        if (distributionUrl != null) {
+            mongod = mongod.withDistributionBaseUrl(Start.to(DistributionBaseUrl.class)
+                    .initializedWith(DistributionBaseUrl.of(distributionUrl)));
+        }
+        TransitionWalker.ReachedState<RunningMongodProcess> running = mongod.start(Version.Main.V7_0);
+        ServerAddress address = running.current().getServerAddress();
+        String hosts = "mongodb://" + address.getHost() + ":" + address.getPort();
+        return new StandInMongo(database -> hosts + "/" + database, running::close);
+    }
+
+    /**
+     * Starts Mongo in a container, which needs Docker and the {@value #MONGO_IMAGE} image.
+     *
+     * @return the running stand-in
+     */
+    static StandInMongo container() {
+        MongoDBContainer container = new MongoDBContainer(MONGO_IMAGE);
+        container.start();
+        return new StandInMongo(container::getReplicaSetUrl, container::stop);
+    }
+
+    /**
+     * Connection string of a database on this stand-in.
+     *
+     * @param database name of the database
+     * @return the connection string
+     */
+    String uri(final String database) {
+        return uriOfDatabase.apply(database);
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop.close();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package holding the STOMP load generator.
+ */
+package com.communicator.loadtest;
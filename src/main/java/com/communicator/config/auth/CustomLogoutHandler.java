@@ -1,7 +1,6 @@
 package com.communicator.config.auth;
 
-import com.communicator.entity.Token;
-import com.communicator.repositories.TokenRepository;
+import com.communicator.services.TokenRevocationService;
 import com.communicator.services.utils.JWTUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -9,32 +8,34 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 
-import java.util.List;
-
 /**
- * CustomLogoutHandler is responsible for handling user logout by invalidating JWT tokens.
+ * CustomLogoutHandler is responsible for handling user logout by revoking JWT tokens.
  * It implements the {@link org.springframework.security.web.authentication.logout.LogoutHandler}
  * interface.
  */
 @Configuration
 public class CustomLogoutHandler implements LogoutHandler {
 
-    private final TokenRepository tokenRepository;
+    private final TokenRevocationService tokenRevocationService;
     private final JWTUtils jwtUtils;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     /**
      * Constructor for CustomLogoutHandler.
      *
-     * @param tokenRepo    repository for managing tokens
-     * @param jwtUtilsProp utility class for handling JWT operations
+     * @param revocationService service revoking user's tokens
+     * @param jwtUtilsProp      utility class for handling JWT operations
+     * @param tokenCache        cache of tokens verified by {@link JWTAuthFilter}
      */
-    public CustomLogoutHandler(final TokenRepository tokenRepo, final JWTUtils jwtUtilsProp) {
-        this.tokenRepository = tokenRepo;
+    public CustomLogoutHandler(final TokenRevocationService revocationService, final JWTUtils jwtUtilsProp,
+                               final VerifiedTokenCache tokenCache) {
+        this.tokenRevocationService = revocationService;
         this.jwtUtils = jwtUtilsProp;
+        this.verifiedTokenCache = tokenCache;
     }
 
     /**
-     * Handles the logout process by removing all tokens associated with the authenticated user.
+     * Handles the logout process by revoking all tokens issued to the authenticated user.
      *
      * @param request        the HTTP request
      * @param response       the HTTP response
@@ -52,13 +53,8 @@ public class CustomLogoutHandler implements LogoutHandler {
         final int tokenStartIndex = 7;
         String token = authHeader.substring(tokenStartIndex);
         String phoneNumber = jwtUtils.extractPhoneNumber(token);
-
-        List<Token> storedTokens = tokenRepository.findAllTokensByPhoneNumber(phoneNumber)
-                .orElseThrow();
-
-        if (!storedTokens.isEmpty()) {
-            tokenRepository.deleteAll(storedTokens);
-        }
+        tokenRevocationService.revokeAll(phoneNumber);
+        verifiedTokenCache.revokeSubject(phoneNumber);
     }
 }
 
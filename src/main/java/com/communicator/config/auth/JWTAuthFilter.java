@@ -2,7 +2,13 @@ package com.communicator.config.auth;
 
 import com.communicator.entity.AppUser;
 import com.communicator.services.utils.JWTUtils;
+import com.communicator.services.TokenRevocationService;
 import com.communicator.services.UserService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,6 +21,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWTAuthFilter is a custom filter that checks for a valid JWT token in the Authorization header
@@ -26,14 +33,18 @@ import java.io.IOException;
  * <p>The filter performs the following steps:</p>
  * <ol>
  *   <li>Extracts the token from the Authorization header (if it exists).</li>
- *   <li>Validates the token and checks if it contains the phone number.</li>
- *   <li>If the token is valid, it retrieves the corresponding {@link AppUser}
- *   from the database
- *   and sets the user in the
+ *   <li>Looks the token up in {@link VerifiedTokenCache}.</li>
+ *   <li>On a cache miss, parses and verifies the token once, retrieves the corresponding
+ *   {@link AppUser} from the database and caches the result.</li>
+ *   <li>Rejects tokens revoked by logout, see {@link TokenRevocationService}.</li>
+ *   <li>If the token is valid, it sets its subject in the
  *   {@link org.springframework.security.core.context.SecurityContext}.</li>
  *   <li>Proceeds with the filter chain.</li>
  * </ol>
  *
+ * <p>The time spent authenticating a request is recorded in the {@code auth.jwt.filter} timer,
+ * tagged with the outcome: {@code cached}, {@code verified} or {@code rejected}.</p>
+ *
  * <p>Annotations used:</p>
  * <ul>
  *   <li>{@link org.springframework.stereotype.Component}: Marks this class as a Spring component
@@ -57,6 +68,29 @@ public class JWTAuthFilter extends OncePerRequestFilter {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer cachedTimer;
+    private Timer verifiedTimer;
+    private Timer rejectedTimer;
+
+    /**
+     * Registers the filter timers.
+     */
+    @PostConstruct
+    public void init() {
+        cachedTimer = filterTimer("cached");
+        verifiedTimer = filterTimer("verified");
+        rejectedTimer = filterTimer("rejected");
+    }
+
     /**
      * Filters HTTP requests by checking the presence of a valid JWT token in the "Authorization"
      * header.
@@ -81,24 +115,66 @@ public class JWTAuthFilter extends OncePerRequestFilter {
 
         final int tokenStartIndex = 7;
         String token = authorizationHeader.substring(tokenStartIndex);
-        String phoneNumber = jwtUtils.extractPhoneNumber(token);
-
-        if (phoneNumber != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-
-            AppUser appUser = userService.findByPhoneNumber(phoneNumber);
 
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            long start = System.nanoTime();
+            Timer timer = cachedTimer;
+            VerifiedTokenCache.VerifiedToken verifiedToken = verifiedTokenCache.get(token);
+            if (verifiedToken == null) {
+                verifiedToken = verify(token);
+                timer = verifiedTimer;
+            }
 
-            if (jwtUtils.isTokenValid(token, appUser)) {
+            if (verifiedToken != null
+                    && !tokenRevocationService.isRevoked(verifiedToken.subject(), verifiedToken.generation())) {
                 UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(appUser, null,
-                                appUser.getAuthorities());
+                        new UsernamePasswordAuthenticationToken(verifiedToken.subject(), null,
+                                verifiedToken.authorities());
 
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                 SecurityContextHolder.getContext().setAuthentication(authToken);
+            } else {
+                timer = rejectedTimer;
             }
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Parses the token once, loads its user and caches the result.
+     *
+     * @param token raw JWT token
+     * @return verified token or null if the token is invalid or its user does not exist
+     */
+    private VerifiedTokenCache.VerifiedToken verify(final String token) {
+        Claims claims;
+        try {
+            claims = jwtUtils.parseClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+
+        String phoneNumber = claims.getSubject();
+        if (phoneNumber == null) {
+            return null;
+        }
+
+        AppUser appUser = userService.findByPhoneNumber(phoneNumber);
+        if (appUser == null) {
+            return null;
+        }
+
+        return verifiedTokenCache.put(token, phoneNumber, jwtUtils.extractGeneration(claims),
+                claims.getExpiration().toInstant(), appUser.getAuthorities());
+    }
+
+    private Timer filterTimer(final String outcome) {
+        return Timer.builder("auth.jwt.filter")
+                .description("Time spent authenticating a request with a bearer token")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
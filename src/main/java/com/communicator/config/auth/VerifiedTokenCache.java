@@ -0,0 +1,125 @@
+package com.communicator.config.auth;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of JWT tokens that were already verified by {@link JWTAuthFilter}.
+ *
+ * <p>Entries are keyed by the SHA-256 hash of the token, so raw tokens are never kept in memory,
+ * and hold everything the filter needs to authenticate the request: subject, expiration and
+ * authorities. A cached token skips both the signature check and the user lookup until it
+ * expires or its user logs out.</p>
+ *
+ * <p>The cache is a bounded LRU map: once it is full, storing a token evicts the least recently
+ * used one, and expired tokens are removed when they are looked up, so neither path scans the
+ * cache.</p>
+ */
+@Component
+public class VerifiedTokenCache {
+
+    /**
+     * Verified token data.
+     *
+     * @param subject phone number the token was issued for
+     * @param generation token generation checked against revocations
+     * @param expiresAt token expiration
+     * @param authorities authorities granted to the user
+     */
+    public record VerifiedToken(String subject, long generation, Instant expiresAt,
+                                List<GrantedAuthority> authorities) {
+    }
+
+    private final Map<String, VerifiedToken> tokens;
+    private final int maxSize;
+
+    /**
+     * Creates the cache.
+     *
+     * @param maxSizeProp maximum number of tokens kept in memory
+     */
+    public VerifiedTokenCache(@Value("${application.security.jwt.verified-token-cache.max-size}")
+                              final int maxSizeProp) {
+        this.maxSize = maxSizeProp;
+        final int initialCapacity = 16;
+        final float loadFactor = 0.75f;
+        this.tokens = new LinkedHashMap<>(initialCapacity, loadFactor, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, VerifiedToken> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached verification result of a token.
+     *
+     * @param token raw JWT token
+     * @return verified token or null if the token is unknown or expired
+     */
+    public VerifiedToken get(final String token) {
+        String key = hash(token);
+        synchronized (tokens) {
+            VerifiedToken verifiedToken = tokens.get(key);
+            if (verifiedToken == null) {
+                return null;
+            }
+            if (!verifiedToken.expiresAt().isAfter(Instant.now())) {
+                tokens.remove(key);
+                return null;
+            }
+            return verifiedToken;
+        }
+    }
+
+    /**
+     * Stores a token after its signature was verified and its user was found.
+     *
+     * @param token raw JWT token
+     * @param subject token subject
+     * @param generation token generation
+     * @param expiresAt token expiration
+     * @param authorities user's authorities
+     * @return cached entry
+     */
+    public VerifiedToken put(final String token, final String subject, final long generation,
+                             final Instant expiresAt, final Collection<? extends GrantedAuthority> authorities) {
+        VerifiedToken verifiedToken = new VerifiedToken(subject, generation, expiresAt, List.copyOf(authorities));
+        String key = hash(token);
+        synchronized (tokens) {
+            tokens.put(key, verifiedToken);
+        }
+        return verifiedToken;
+    }
+
+    /**
+     * Removes every cached token of the given user. Called on logout.
+     *
+     * @param subject phone number of the user
+     */
+    public void revokeSubject(final String subject) {
+        synchronized (tokens) {
+            tokens.values().removeIf(verifiedToken -> verifiedToken.subject().equals(subject));
+        }
+    }
+
+    private static String hash(final String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
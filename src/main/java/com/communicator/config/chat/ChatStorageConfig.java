@@ -0,0 +1,64 @@
+package com.communicator.config.chat;
+
+import com.communicator.repositories.ChatMessageRepository;
+import com.communicator.repositories.reactive.ReactiveChatMessageRepository;
+import com.communicator.services.chat.BucketedChatMessageStore;
+import com.communicator.services.chat.ChatMessageStore;
+import com.communicator.services.chat.DocumentChatMessageStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.time.Duration;
+
+/**
+ * Selects the {@link ChatMessageStore} with {@code application.chat.storage.engine}.
+ *
+ * <p>{@code document} keeps one document per message and is used when the property is missing.
+ * {@code bucketed} packs messages into time-window buckets and migrates the existing messages
+ * on its first start, see {@link com.communicator.config.mongo.ChatMessageBucketMigration}.</p>
+ */
+@Configuration
+public class ChatStorageConfig {
+
+    private static final String ENGINE = "application.chat.storage.engine";
+
+    /**
+     * Creates the store keeping one document per message.
+     *
+     * @param mongoTemplate template used for bulk inserts and history queries
+     * @param chatMessageRepository repository with chat messages
+     * @param reactiveChatMessageRepository reactive repository with chat messages
+     * @return document store
+     */
+    @Bean
+    @ConditionalOnProperty(name = ENGINE, havingValue = "document", matchIfMissing = true)
+    public DocumentChatMessageStore documentChatMessageStore(
+            final MongoTemplate mongoTemplate,
+            final ChatMessageRepository chatMessageRepository,
+            final ReactiveChatMessageRepository reactiveChatMessageRepository) {
+        return new DocumentChatMessageStore(mongoTemplate, chatMessageRepository, reactiveChatMessageRepository);
+    }
+
+    /**
+     * Creates the store packing messages into buckets.
+     *
+     * @param mongoTemplate template used for appends and reads
+     * @param reactiveMongoTemplate reactive template used for reads
+     * @param maxMessages maximum number of messages in one bucket
+     * @param window length of the time window of one bucket
+     * @return bucketed store
+     */
+    @Bean
+    @ConditionalOnProperty(name = ENGINE, havingValue = "bucketed")
+    public BucketedChatMessageStore bucketedChatMessageStore(
+            final MongoTemplate mongoTemplate,
+            final ReactiveMongoTemplate reactiveMongoTemplate,
+            @Value("${application.chat.storage.bucket.max-messages}") final int maxMessages,
+            @Value("${application.chat.storage.bucket.window}") final Duration window) {
+        return new BucketedChatMessageStore(mongoTemplate, reactiveMongoTemplate, maxMessages, window);
+    }
+}
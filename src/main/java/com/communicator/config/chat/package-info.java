@@ -0,0 +1,4 @@
+/**
+ * Package holding chat storage configuration.
+ */
+package com.communicator.config.chat;
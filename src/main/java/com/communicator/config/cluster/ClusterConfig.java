@@ -0,0 +1,32 @@
+package com.communicator.config.cluster;
+
+import com.communicator.services.cluster.ClusterBroker;
+import com.communicator.services.cluster.LoopbackCluster;
+import com.communicator.services.cluster.UserRoutingTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configures the transport and routing table used to fan messages out across server nodes.
+ *
+ * <p>Without another {@link ClusterBroker} and {@link UserRoutingTable} the in-process
+ * {@link LoopbackCluster} is used, which makes a single node work as before and lets several
+ * nodes run side by side in one JVM.</p>
+ */
+@Configuration
+public class ClusterConfig {
+
+    /**
+     * Creates the in-process cluster.
+     *
+     * @param clusterName name shared by the nodes of one cluster
+     * @return loopback transport and routing table
+     */
+    @Bean
+    @ConditionalOnMissingBean({ClusterBroker.class, UserRoutingTable.class})
+    public LoopbackCluster loopbackCluster(@Value("${application.cluster.name}") final String clusterName) {
+        return LoopbackCluster.named(clusterName);
+    }
+}
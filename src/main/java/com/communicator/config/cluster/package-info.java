@@ -0,0 +1,4 @@
+/**
+ * Package holding cluster configuration.
+ */
+package com.communicator.config.cluster;
@@ -0,0 +1,149 @@
+package com.communicator.config.mongo;
+
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.entity.chat.ChatMessageBucket;
+import com.communicator.services.chat.BucketedChatMessageStore;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Copies the messages stored one per document into {@link ChatMessageBucket} documents when the
+ * bucketed engine starts for the first time.
+ *
+ * <p>Messages are streamed chat by chat in timestamp order, which the (chatId, timestamp, _id)
+ * index serves in reverse, and packed into full buckets that are inserted in batches; the last
+ * bucket of every window stays open for appends. Only the node that claims the
+ * {@link MigrationMarker} runs it, and buckets left over by an interrupted run are removed only
+ * after that, so a failed migration is simply retried on the next start. The original collection
+ * is left as it is, switching the engine back to {@code document} only loses the messages sent in
+ * between.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "application.chat.storage.engine", havingValue = "bucketed")
+@Slf4j
+public class ChatMessageBucketMigration {
+
+    private static final String MIGRATION_ID = "chat-message-buckets";
+    private static final int INSERT_BATCH = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final BucketedChatMessageStore bucketedChatMessageStore;
+
+    /**
+     * Creates the migration.
+     *
+     * @param mongoTemplateBean template used to read messages and insert buckets
+     * @param bucketedChatMessageStoreBean store defining the bucket windows and size
+     */
+    public ChatMessageBucketMigration(final MongoTemplate mongoTemplateBean,
+                                      final BucketedChatMessageStore bucketedChatMessageStoreBean) {
+        this.mongoTemplate = mongoTemplateBean;
+        this.bucketedChatMessageStore = bucketedChatMessageStoreBean;
+    }
+
+    /**
+     * Runs the migration unless it has run before.
+     */
+    @PostConstruct
+    public void migrate() {
+        MigrationMarker marker = new MigrationMarker(mongoTemplate, MIGRATION_ID);
+        if (!marker.claim()) {
+            return;
+        }
+        try {
+            packMessages(marker);
+        } catch (RuntimeException e) {
+            marker.release();
+            throw e;
+        }
+        marker.complete();
+    }
+
+    private void packMessages(final MigrationMarker marker) {
+        mongoTemplate.remove(new Query(), ChatMessageBucket.class);
+        Query messagesInOrder = new Query().with(Sort.by(Sort.Direction.DESC, "chatId")
+                .and(Sort.by(Sort.Direction.ASC, "timestamp", "messageId")));
+        List<ChatMessageBucket> pending = new ArrayList<>(INSERT_BATCH);
+        ChatMessageBucket current = null;
+        long messages = 0;
+        long buckets = 0;
+        try (Stream<ChatMessage> stream = mongoTemplate.stream(messagesInOrder, ChatMessage.class)) {
+            for (ChatMessage message : (Iterable<ChatMessage>) stream::iterator) {
+                if (message.getTimestamp() == null) {
+                    message.setTimestamp(fallbackTimestamp(message.getMessageId()));
+                }
+                Instant start = bucketedChatMessageStore.windowStart(message.getTimestamp());
+                if (current == null || !Objects.equals(current.getChatId(), message.getChatId())
+                        || !current.getStart().equals(start)
+                        || current.getCount() == bucketedChatMessageStore.getMaxMessages()) {
+                    if (current != null && Objects.equals(current.getChatId(), message.getChatId())
+                            && current.getStart().equals(start)) {
+                        current.setOpen(false);
+                    }
+                    current = newBucket(message.getChatId(), start);
+                    pending.add(current);
+                    buckets++;
+                }
+                current.getMessages().add(message);
+                current.setCount(current.getCount() + 1);
+                current.setMinTimestamp(min(current.getMinTimestamp(), message.getTimestamp()));
+                current.setMaxTimestamp(max(current.getMaxTimestamp(), message.getTimestamp()));
+                messages++;
+
+                if (pending.size() > INSERT_BATCH) {
+                    // The last bucket may still grow, it goes out with the next batch.
+                    insert(pending.subList(0, pending.size() - 1));
+                    pending = new ArrayList<>(List.of(current));
+                    marker.renew();
+                }
+            }
+        }
+        insert(pending);
+        log.info("Packed {} chat messages into {} buckets", messages, buckets);
+    }
+
+    private void insert(final List<ChatMessageBucket> buckets) {
+        if (!buckets.isEmpty()) {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessageBucket.class)
+                    .insert(buckets)
+                    .execute();
+        }
+    }
+
+    private static ChatMessageBucket newBucket(final String chatId, final Instant start) {
+        return ChatMessageBucket.builder()
+                .chatId(chatId)
+                .start(start)
+                .open(true)
+                .messages(new ArrayList<>())
+                .build();
+    }
+
+    private static Instant fallbackTimestamp(final String messageId) {
+        if (messageId != null && ObjectId.isValid(messageId)) {
+            return new ObjectId(messageId).getDate().toInstant();
+        }
+        return Instant.EPOCH;
+    }
+
+    private static Instant min(final Instant current, final Instant candidate) {
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+
+    private static Instant max(final Instant current, final Instant candidate) {
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+}
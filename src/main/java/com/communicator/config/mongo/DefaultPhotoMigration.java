@@ -0,0 +1,71 @@
+package com.communicator.config.mongo;
+
+import com.communicator.entity.AppUser;
+import com.communicator.entity.DefaultPhoto;
+import com.communicator.entity.chat.ChatRoom;
+import com.mongodb.client.result.UpdateResult;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Removes default photo URLs stored before {@link DefaultPhoto} stood for a missing field.
+ *
+ * <p>Users, chats and the members embedded in chats lose their {@code photo} field where it
+ * holds the default URL. The migration scans both collections, so it runs once, on the node that
+ * claims its {@link MigrationMarker}.</p>
+ */
+@Component
+@Slf4j
+public class DefaultPhotoMigration {
+
+    private static final String MIGRATION_ID = "default-photo-sentinel";
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Creates the migration.
+     *
+     * @param mongoTemplateBean template used to update the documents
+     */
+    public DefaultPhotoMigration(final MongoTemplate mongoTemplateBean) {
+        this.mongoTemplate = mongoTemplateBean;
+    }
+
+    /**
+     * Runs the migration unless it has run before.
+     */
+    @PostConstruct
+    public void migrate() {
+        MigrationMarker marker = new MigrationMarker(mongoTemplate, MIGRATION_ID);
+        if (!marker.claim()) {
+            return;
+        }
+        try {
+            removeDefaultPhotos();
+        } catch (RuntimeException e) {
+            marker.release();
+            throw e;
+        }
+        marker.complete();
+    }
+
+    private void removeDefaultPhotos() {
+        String usersCollection = mongoTemplate.getCollectionName(AppUser.class);
+        String chatsCollection = mongoTemplate.getCollectionName(ChatRoom.class);
+        Query defaultPhoto = Query.query(Criteria.where("photo").is(DefaultPhoto.URL));
+        UpdateResult users = mongoTemplate.updateMulti(defaultPhoto, new Update().unset("photo"), usersCollection);
+        UpdateResult chats = mongoTemplate.updateMulti(defaultPhoto, new Update().unset("photo"), chatsCollection);
+        UpdateResult members = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("users.photo").is(DefaultPhoto.URL)),
+                new Update().unset("users.$[member].photo")
+                        .filterArray(Criteria.where("member.photo").is(DefaultPhoto.URL)),
+                chatsCollection);
+        log.info("Removed default photo URL from {} users, {} chats and members of {} chats",
+                users.getModifiedCount(), chats.getModifiedCount(), members.getModifiedCount());
+    }
+}
@@ -0,0 +1,15 @@
+package com.communicator.config.mongo;
+
+import org.bson.Document;
+
+/**
+ * Shape of a query that runs on the request path and must be served by an index.
+ *
+ * @param name name used when reporting the query
+ * @param entityClass entity whose collection is queried
+ * @param filter query filter with sample values
+ * @param sort sort order, empty if unsorted
+ * @param limit maximum number of documents, 0 for no limit
+ */
+public record HotQuery(String name, Class<?> entityClass, Document filter, Document sort, int limit) {
+}
@@ -0,0 +1,108 @@
+package com.communicator.config.mongo;
+
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Marker of a one-time migration in the {@value #MIGRATIONS_COLLECTION} collection, which makes
+ * sure only one node runs it.
+ *
+ * <p>A node claims the migration by inserting the marker before touching any data; the unique
+ * {@code _id} lets exactly one of several nodes starting side by side succeed. The marker gets
+ * {@code appliedAt} when the migration is done, and is deleted when it fails, so the next start
+ * retries it. A node that died while migrating leaves a claim behind, which another node takes
+ * over once it has not been renewed for {@link #STALE_CLAIM}. A migration that has to finish
+ * before the node goes on uses {@link #claimOrAwait()}, which waits while another node runs it.</p>
+ */
+final class MigrationMarker {
+
+    static final String MIGRATIONS_COLLECTION = "migrations";
+    static final Duration STALE_CLAIM = Duration.ofMinutes(10);
+    static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private final MongoTemplate mongoTemplate;
+    private final String migrationId;
+
+    /**
+     * Creates the marker.
+     *
+     * @param mongoTemplateBean template used to access the migrations collection
+     * @param migrationIdProp id of the migration
+     */
+    MigrationMarker(final MongoTemplate mongoTemplateBean, final String migrationIdProp) {
+        this.mongoTemplate = mongoTemplateBean;
+        this.migrationId = migrationIdProp;
+    }
+
+    /**
+     * Claims the migration for this node.
+     *
+     * @return true if this node has to run the migration, false if it is done or running elsewhere
+     */
+    boolean claim() {
+        try {
+            mongoTemplate.insert(new Document("_id", migrationId).append("claimedAt", Instant.now()),
+                    MIGRATIONS_COLLECTION);
+            return true;
+        } catch (DuplicateKeyException e) {
+            Query staleClaim = Query.query(Criteria.where("_id").is(migrationId)
+                    .and("appliedAt").exists(false)
+                    .and("claimedAt").lt(Instant.now().minus(STALE_CLAIM)));
+            return mongoTemplate.updateFirst(staleClaim, new Update().set("claimedAt", Instant.now()),
+                    MIGRATIONS_COLLECTION).getModifiedCount() == 1;
+        }
+    }
+
+    /**
+     * Claims the migration for this node, or waits until the node that claimed it is done. A claim
+     * that goes stale or is released meanwhile is taken over.
+     *
+     * @return true if this node has to run the migration, false once it is done
+     */
+    boolean claimOrAwait() {
+        while (!claim()) {
+            if (mongoTemplate.exists(Query.query(Criteria.where("_id").is(migrationId)
+                    .and("appliedAt").exists(true)), MIGRATIONS_COLLECTION)) {
+                return false;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for migration " + migrationId, e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renews the claim of a migration that is still running.
+     */
+    void renew() {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(migrationId)),
+                new Update().set("claimedAt", Instant.now()), MIGRATIONS_COLLECTION);
+    }
+
+    /**
+     * Records that the migration is done.
+     */
+    void complete() {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(migrationId)),
+                new Update().set("appliedAt", Instant.now()).unset("claimedAt"), MIGRATIONS_COLLECTION);
+    }
+
+    /**
+     * Gives up the claim of a failed migration, so it is retried on the next start.
+     */
+    void release() {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(migrationId).and("appliedAt").exists(false)),
+                MIGRATIONS_COLLECTION);
+    }
+}
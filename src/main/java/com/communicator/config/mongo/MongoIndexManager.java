@@ -0,0 +1,182 @@
+package com.communicator.config.mongo;
+
+import com.communicator.entity.AppUser;
+import com.communicator.entity.TokenRevocation;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.entity.chat.ChatMessageBucket;
+import com.communicator.entity.chat.ChatRoom;
+import com.communicator.entity.chat.UndeliveredMessage;
+import com.mongodb.client.FindIterable;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver.IndexDefinitionHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes declared on the entities and checks that hot queries use them.
+ *
+ * <p>Indexes are declared with {@code @Indexed} and {@code @CompoundIndex} next to the fields
+ * they cover and created here at startup. Creating an index that already exists is a no-op, so
+ * this is safe on every start. Afterwards every query in {@link #hotQueries()} is explained and
+ * startup fails if one of them would scan a whole collection, which catches a query and its
+ * index drifting apart before it reaches production traffic. Migrations that make existing
+ * documents fit a new unique index run before it, see {@link OutboxSequenceMigration}.</p>
+ */
+@Component
+@DependsOn("outboxSequenceMigration")
+@Slf4j
+public class MongoIndexManager {
+
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(AppUser.class, ChatRoom.class,
+            ChatMessage.class, ChatMessageBucket.class, UndeliveredMessage.class, TokenRevocation.class);
+
+    private static final String SAMPLE_USER = "48123456789";
+    private static final String SAMPLE_PARTNER = "48987654321";
+    private static final String SAMPLE_CHAT = "6710b3a4c2f1e35a9d4b7c01";
+    private static final int RECENT_CHATS = 10;
+    private static final int LAST_MESSAGES = 20;
+    private static final int HISTORY_PAGE = 21;
+    private static final int OUTBOX_PAGE = 100;
+    private static final int BUCKET_SIZE = 200;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean verifyQueryPlans;
+
+    /**
+     * Creates the manager.
+     *
+     * @param mongoTemplateBean template used to create indexes and explain queries
+     * @param verifyQueryPlansProp whether startup fails if a hot query scans a collection
+     */
+    public MongoIndexManager(final MongoTemplate mongoTemplateBean,
+                             @Value("${application.mongo.verify-query-plans:true}")
+                             final boolean verifyQueryPlansProp) {
+        this.mongoTemplate = mongoTemplateBean;
+        this.verifyQueryPlans = verifyQueryPlansProp;
+    }
+
+    /**
+     * Creates missing indexes and verifies the query plans of hot queries.
+     */
+    @PostConstruct
+    public void init() {
+        ensureIndexes();
+        if (!verifyQueryPlans) {
+            return;
+        }
+        List<String> collectionScans = findCollectionScans();
+        if (!collectionScans.isEmpty()) {
+            throw new IllegalStateException("Queries without a supporting index: " + collectionScans);
+        }
+        log.info("Verified query plans of {} hot queries", hotQueries().size());
+    }
+
+    /**
+     * Creates every index declared on the indexed entities.
+     */
+    public void ensureIndexes() {
+        MongoPersistentEntityIndexResolver resolver =
+                new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entityClass : INDEXED_ENTITIES) {
+            IndexOperations indexOperations = mongoTemplate.indexOps(entityClass);
+            for (IndexDefinition index : resolver.resolveIndexFor(entityClass)) {
+                // Buckets embed messages, whose own indexes would only slow their appends down.
+                if (index instanceof IndexDefinitionHolder holder && entityClass == ChatMessageBucket.class
+                        && holder.getPath().startsWith("messages")) {
+                    continue;
+                }
+                indexOperations.ensureIndex(index);
+            }
+        }
+    }
+
+    /**
+     * Explains every hot query.
+     *
+     * @return names of the hot queries whose winning plan scans a whole collection
+     */
+    public List<String> findCollectionScans() {
+        List<String> collectionScans = new ArrayList<>();
+        for (HotQuery hotQuery : hotQueries()) {
+            FindIterable<Document> find = mongoTemplate.getCollection(
+                            mongoTemplate.getCollectionName(hotQuery.entityClass()))
+                    .find(hotQuery.filter())
+                    .sort(hotQuery.sort())
+                    .limit(hotQuery.limit());
+            Document queryPlanner = find.explain().get("queryPlanner", Document.class);
+            if (queryPlanner != null && containsCollectionScan(queryPlanner.get("winningPlan"))) {
+                collectionScans.add(hotQuery.name());
+            }
+        }
+        return collectionScans;
+    }
+
+    /**
+     * Shapes of the queries that run on the request path, filled with sample values.
+     *
+     * @return hot queries
+     */
+    public static List<HotQuery> hotQueries() {
+        Date now = new Date();
+        return List.of(
+                new HotQuery("ChatRepository.findByUserId", ChatRoom.class,
+                        new Document("users.userId", SAMPLE_USER), new Document(), 0),
+                new HotQuery("ChatRepository.findByExactUsersPhoneNumber", ChatRoom.class,
+                        new Document("users.userId", new Document("$all", List.of(SAMPLE_USER, SAMPLE_PARTNER))),
+                        new Document(), 0),
+                new HotQuery("ChatRepository.findRecentByUserId", ChatRoom.class,
+                        new Document("users.userId", SAMPLE_USER),
+                        new Document("lastMessage.timestamp", -1), RECENT_CHATS),
+                new HotQuery("ChatMessageRepository.findTop20ByChatIdOrderByTimestampDesc", ChatMessage.class,
+                        new Document("chatId", SAMPLE_CHAT), new Document("timestamp", -1), LAST_MESSAGES),
+                new HotQuery("ChatMessageService.getChatHistory", ChatMessage.class,
+                        new Document("chatId", SAMPLE_CHAT).append("$or", List.of(
+                                new Document("timestamp", new Document("$lt", now)),
+                                new Document("timestamp", now).append("_id", new Document("$lt", SAMPLE_CHAT)))),
+                        new Document("timestamp", -1).append("_id", -1), HISTORY_PAGE),
+                new HotQuery("BucketedChatMessageStore.saveAll", ChatMessageBucket.class,
+                        new Document("chatId", SAMPLE_CHAT).append("start", now).append("open", true)
+                                .append("count", new Document("$lte", BUCKET_SIZE - 1)),
+                        new Document(), 0),
+                new HotQuery("BucketedChatMessageStore.findBefore", ChatMessageBucket.class,
+                        new Document("chatId", SAMPLE_CHAT).append("minTimestamp", new Document("$lte", now)),
+                        new Document("start", -1).append("minTimestamp", -1), 0),
+                new HotQuery("BucketedChatMessageStore.findById", ChatMessageBucket.class,
+                        new Document("messages._id", SAMPLE_CHAT), new Document(), 1),
+                new HotQuery("UndeliveredMessageRepository.findByUserId", UndeliveredMessage.class,
+                        new Document("userId", SAMPLE_USER), new Document(), 0),
+                new HotQuery("OfflineOutboxService.nextPage", UndeliveredMessage.class,
+                        new Document("userId", SAMPLE_USER).append("sequence", new Document("$gt", 0L)),
+                        new Document("sequence", 1), OUTBOX_PAGE),
+                new HotQuery("OfflineOutboxService.trim", UndeliveredMessage.class,
+                        new Document("userId", SAMPLE_USER).append("sequence", new Document("$lte", 1L)),
+                        new Document(), 0),
+                new HotQuery("UserRepository.findByEmail", AppUser.class,
+                        new Document("email", "user@example.com"), new Document(), 0));
+    }
+
+    private static boolean containsCollectionScan(final Object plan) {
+        if (plan instanceof Map<?, ?> stage) {
+            if ("COLLSCAN".equals(stage.get("stage"))) {
+                return true;
+            }
+            return stage.values().stream().anyMatch(MongoIndexManager::containsCollectionScan);
+        }
+        if (plan instanceof List<?> stages) {
+            return stages.stream().anyMatch(MongoIndexManager::containsCollectionScan);
+        }
+        return false;
+    }
+}
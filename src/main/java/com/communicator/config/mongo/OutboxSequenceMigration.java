@@ -0,0 +1,93 @@
+package com.communicator.config.mongo;
+
+import com.communicator.entity.chat.OutboxSequence;
+import com.communicator.entity.chat.UndeliveredMessage;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+/**
+ * Gives undelivered messages stored before the outbox had sequences the next sequence of their
+ * recipient, so they are replayed once like any other entry and do not collide in the unique
+ * (userId, sequence) index, which {@link MongoIndexManager} creates only after this has run.
+ *
+ * <p>Entries are numbered in insertion order per user. The outbox is scanned once, by the node that
+ * claims the {@link MigrationMarker}; nodes starting meanwhile wait for it, since the index must
+ * not be created before every entry is numbered. Every entry is updated only while it still has
+ * no sequence, so a run taken over from a node that died midway skips what was numbered already.</p>
+ */
+@Component
+@Slf4j
+public class OutboxSequenceMigration {
+
+    private static final String MIGRATION_ID = "outbox-sequences";
+    private static final int RENEW_EVERY = 1000;
+    private static final FindAndModifyOptions SEQUENCE_OPTIONS =
+            FindAndModifyOptions.options().returnNew(true).upsert(true);
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Creates the migration.
+     *
+     * @param mongoTemplateBean template used to number the entries
+     */
+    public OutboxSequenceMigration(final MongoTemplate mongoTemplateBean) {
+        this.mongoTemplate = mongoTemplateBean;
+    }
+
+    /**
+     * Runs the migration unless it has run before, waiting while another node runs it.
+     */
+    @PostConstruct
+    public void migrate() {
+        MigrationMarker marker = new MigrationMarker(mongoTemplate, MIGRATION_ID);
+        if (!marker.claimOrAwait()) {
+            return;
+        }
+        try {
+            numberEntries(marker);
+        } catch (RuntimeException e) {
+            marker.release();
+            throw e;
+        }
+        marker.complete();
+    }
+
+    private void numberEntries(final MigrationMarker marker) {
+        Query legacy = Query.query(Criteria.where("sequence").exists(false))
+                .with(Sort.by("userId", "_id"));
+        legacy.fields().include("userId");
+        String collection = mongoTemplate.getCollectionName(UndeliveredMessage.class);
+        long numbered = 0;
+        long scanned = 0;
+        try (Stream<Document> entries = mongoTemplate.stream(legacy, Document.class, collection)) {
+            for (Document entry : (Iterable<Document>) entries::iterator) {
+                long sequence = nextSequence(entry.getString("userId"));
+                numbered += mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(entry.get("_id")).and("sequence").exists(false)),
+                        new Update().set("sequence", sequence), collection).getModifiedCount();
+                if (++scanned % RENEW_EVERY == 0) {
+                    marker.renew();
+                }
+            }
+        }
+        if (numbered > 0) {
+            log.info("Assigned outbox sequences to {} undelivered messages", numbered);
+        }
+    }
+
+    private long nextSequence(final String userId) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(userId)),
+                new Update().inc("sequence", 1), SEQUENCE_OPTIONS, OutboxSequence.class).getSequence();
+    }
+}
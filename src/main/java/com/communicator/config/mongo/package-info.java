@@ -0,0 +1,4 @@
+/**
+ * Package holding MongoDB index configuration and data migrations.
+ */
+package com.communicator.config.mongo;
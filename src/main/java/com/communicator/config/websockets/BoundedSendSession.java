@@ -0,0 +1,250 @@
+package com.communicator.config.websockets;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Session that queues outbound frames and writes them on a virtual thread of its own.
+ *
+ * <p>{@link #sendMessage} only queues the frame, so the thread sending it never waits for the
+ * client. Once the queued frames reach the drop threshold, frames of a droppable type are
+ * discarded, both the queued ones and new ones. When they reach the buffer limit, the queue is
+ * handed to {@link SlowConsumerProtection#closed} and a {@link SessionLimitExceededException} is
+ * thrown, which makes the STOMP handler end the session and close it. The send time limit is
+ * enforced by {@link SlowConsumerProtection} on a timer, see {@link #checkSendTime}, which closes a
+ * session the same way once a write has been blocked in the transport for too long. Only the time
+ * inside the transport's write counts, so a write thread that is scheduled late never closes a
+ * healthy session. When a write fails, the failed and queued frames are handed to
+ * {@link SlowConsumerProtection#unsent} and the session is closed. Closing is queued behind the
+ * frames sent before it, or done at once after a limit was exceeded, always on the write thread;
+ * frames still queued then are handed over too.</p>
+ */
+@Slf4j
+class BoundedSendSession extends WebSocketSessionDecorator {
+
+    private final SlowConsumerProtection settings;
+    private final Executor writer;
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private int bufferedBytes;
+    private boolean writing;
+    private boolean inTransportWrite;
+    private long writeStartedNanos;
+    private CloseStatus pendingClose;
+    private boolean limitExceeded;
+    private boolean delegateClosed;
+
+    /**
+     * Wraps a session.
+     *
+     * @param session session to write to
+     * @param settingsBean limits and overflow handling
+     * @param writerBean executor running the write thread
+     */
+    BoundedSendSession(final WebSocketSession session, final SlowConsumerProtection settingsBean,
+                       final Executor writerBean) {
+        super(session);
+        this.settings = settingsBean;
+        this.writer = writerBean;
+    }
+
+    @Override
+    public void sendMessage(final WebSocketMessage<?> message) throws IOException {
+        String type = StompFrames.typeOf(message);
+        Frame frame = new Frame(message, type, settings.isDroppable(type));
+        List<WebSocketMessage<?>> unsent;
+        synchronized (queue) {
+            if (limitExceeded || pendingClose != null) {
+                return;
+            }
+            if (frame.droppable() && bufferedBytes + frame.size() > settings.getDropThreshold()) {
+                settings.dropped(type);
+                return;
+            }
+            enqueue(frame);
+            if (bufferedBytes > settings.getDropThreshold()) {
+                dropQueued();
+            }
+            if (bufferedBytes <= settings.getBufferSizeLimit()) {
+                startWriting();
+                return;
+            }
+            limitExceeded = true;
+            unsent = drainQueue();
+        }
+        settings.closed(getId(), false, unsent);
+        throw new SessionLimitExceededException(
+                "Buffer size " + settings.getBufferSizeLimit() + " bytes exceeded for session " + getId(),
+                CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /**
+     * Closes the session if the write in progress has been blocked in the transport for longer than
+     * the send time limit.
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     */
+    void checkSendTime(final long nowNanos) {
+        List<WebSocketMessage<?>> unsent;
+        synchronized (queue) {
+            if (limitExceeded || !inTransportWrite
+                    || nowNanos - writeStartedNanos <= settings.getSendTimeLimitNanos()) {
+                return;
+            }
+            limitExceeded = true;
+            unsent = drainQueue();
+            if (pendingClose == null) {
+                pendingClose = CloseStatus.SESSION_NOT_RELIABLE;
+            }
+        }
+        log.debug("Send time {} ms exceeded for session {}", settings.getSendTimeLimitMillis(), getId());
+        settings.closed(getId(), true, unsent);
+        writer.execute(this::closeDelegate);
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(final CloseStatus status) {
+        synchronized (queue) {
+            if (pendingClose != null) {
+                return;
+            }
+            pendingClose = status;
+            // A write stuck on the client must not delay closing a session over its limits.
+            if (limitExceeded || !writing) {
+                writer.execute(this::closeDelegate);
+            }
+        }
+    }
+
+    private void enqueue(final Frame frame) {
+        queue.add(frame);
+        bufferedBytes += frame.size();
+        settings.buffered(bufferedBytes, frame.size());
+    }
+
+    private void dropQueued() {
+        Iterator<Frame> frames = queue.iterator();
+        // The first frame may be in the middle of being written.
+        if (writing && frames.hasNext()) {
+            frames.next();
+        }
+        while (frames.hasNext() && bufferedBytes > settings.getDropThreshold()) {
+            Frame queued = frames.next();
+            if (queued.droppable()) {
+                frames.remove();
+                bufferedBytes -= queued.size();
+                settings.buffered(bufferedBytes, -queued.size());
+                settings.dropped(queued.type());
+            }
+        }
+    }
+
+    private List<WebSocketMessage<?>> drainQueue() {
+        List<WebSocketMessage<?>> unsent = new ArrayList<>(queue.size());
+        queue.forEach(queued -> unsent.add(queued.message()));
+        settings.buffered(0, -bufferedBytes);
+        queue.clear();
+        bufferedBytes = 0;
+        return unsent;
+    }
+
+    private void startWriting() {
+        if (!writing) {
+            writing = true;
+            writer.execute(this::writeQueued);
+        }
+    }
+
+    private void writeQueued() {
+        while (true) {
+            Frame frame;
+            synchronized (queue) {
+                frame = queue.peek();
+                if (frame == null || limitExceeded) {
+                    writing = false;
+                    break;
+                }
+                inTransportWrite = true;
+                writeStartedNanos = System.nanoTime();
+            }
+            try {
+                getDelegate().sendMessage(frame.message());
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to write to session {}", getId(), e);
+                writeFailed();
+            }
+            synchronized (queue) {
+                inTransportWrite = false;
+                if (queue.peek() == frame) {
+                    queue.poll();
+                    bufferedBytes -= frame.size();
+                    settings.buffered(bufferedBytes, -frame.size());
+                }
+            }
+        }
+        closeDelegate();
+    }
+
+    private void writeFailed() {
+        List<WebSocketMessage<?>> unsent;
+        synchronized (queue) {
+            if (limitExceeded) {
+                return;
+            }
+            limitExceeded = true;
+            unsent = drainQueue();
+            if (pendingClose == null) {
+                pendingClose = CloseStatus.SERVER_ERROR;
+            }
+        }
+        settings.unsent(getId(), unsent);
+    }
+
+    private void closeDelegate() {
+        CloseStatus status;
+        List<WebSocketMessage<?>> unsent;
+        synchronized (queue) {
+            if (pendingClose == null || delegateClosed) {
+                return;
+            }
+            delegateClosed = true;
+            status = pendingClose;
+            unsent = drainQueue();
+        }
+        settings.unsent(getId(), unsent);
+        try {
+            getDelegate().close(status);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to close session {}", getId(), e);
+        }
+    }
+
+    /**
+     * Queued frame.
+     *
+     * @param message encoded frame
+     * @param type message type, null for frames without one
+     * @param droppable whether it may be discarded
+     */
+    private record Frame(WebSocketMessage<?> message, String type, boolean droppable) {
+
+        int size() {
+            return message.getPayloadLength();
+        }
+    }
+}
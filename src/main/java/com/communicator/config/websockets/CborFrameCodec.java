@@ -0,0 +1,252 @@
+package com.communicator.config.websockets;
+
+import com.communicator.dto.MessageType;
+import com.communicator.entity.DefaultPhoto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact CBOR encoding of {@link com.communicator.entity.TypedWebSocketMessage} frames.
+ *
+ * <p>A frame becomes the array {@code [type, content]}. The contents of the frames sent most often
+ * are encoded by schema: chat messages, chat previews with their members, activity updates and the
+ * login payload become arrays of their field values in the order listed below, timestamps become
+ * epoch milliseconds and the default photo becomes null. Anything else keeps its JSON shape; a
+ * value that does not have the shape its schema expects, say an array where an object is
+ * expected, is wrapped in the map {@code {"raw": value}} so it is never read back as a schema
+ * array.
+ * Strings repeated within a frame, like phone numbers across a list of chats, are written once and
+ * referenced afterwards with the CBOR stringref extension.</p>
+ *
+ * <p>The codec reads the JSON body produced by the broker's converter, so frames relayed from
+ * other nodes are encoded exactly like local ones. {@link #decode} reverses the encoding into the
+ * JSON shape, which is what clients do and what the benchmarks measure.</p>
+ */
+public final class CborFrameCodec {
+
+    private static final int MILLIS_PER_SECOND_DIGITS = 3;
+    private static final String RAW = "raw";
+
+    private static final List<Field> USER = List.of(
+            Field.value("userId"), Field.value("firstName"), Field.value("lastName"), Field.photo("photo"));
+    private static final List<Field> CHAT_MESSAGE = List.of(
+            Field.value("messageId"), Field.value("content"), Field.value("chatId"), Field.value("senderId"),
+            Field.instant("timestamp"));
+    private static final List<Field> CHAT_PREVIEW = List.of(
+            Field.value("chatId"), Field.list("users", USER), Field.value("active"), Field.photo("photo"),
+            Field.value("lastMessageContent"), Field.value("lastMessageAuthorId"),
+            Field.instant("lastMessageTime"), Field.value("lastMessageId"));
+    private static final List<Field> ACTIVITY_STATUS_UPDATE = List.of(
+            Field.value("userId"), Field.value("active"));
+    private static final List<Field> MESSAGES_AFTER_LOGIN = List.of(
+            Field.list("chats", CHAT_PREVIEW), Field.value("undeliveredMessages"), Field.value("friendsActivity"));
+
+    private static final Field UNTYPED_CONTENT = Field.value("content");
+    private static final Map<String, Field> CONTENT = Map.of(
+            MessageType.CHAT_MESSAGE.name(), Field.object("content", CHAT_MESSAGE),
+            MessageType.LAST_MESSAGES.name(), Field.list("content", CHAT_MESSAGE),
+            MessageType.ACTIVITY_STATUS_UPDATE.name(), Field.object("content", ACTIVITY_STATUS_UPDATE),
+            MessageType.ACTIVITY_STATUS_UPDATES.name(), Field.list("content", ACTIVITY_STATUS_UPDATE),
+            MessageType.ALL_CHATS.name(), Field.object("content", MESSAGES_AFTER_LOGIN));
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final CBORMapper cborMapper = CBORMapper.builder()
+            .enable(CBORGenerator.Feature.STRINGREF)
+            .build();
+
+    /**
+     * Encodes a JSON frame body.
+     *
+     * @param json body of a {@code TypedWebSocketMessage} frame
+     * @return CBOR body
+     */
+    public byte[] encode(final byte[] json) {
+        try {
+            JsonNode frame = jsonMapper.readTree(json);
+            String type = frame.path("type").asText();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+            try (JsonGenerator generator = cborMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                generator.writeString(type);
+                write(generator, frame.get("content"), CONTENT.getOrDefault(type, UNTYPED_CONTENT));
+                generator.writeEndArray();
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode frame as CBOR", e);
+        }
+    }
+
+    /**
+     * Decodes a frame body created by {@link #encode}.
+     *
+     * @param cbor CBOR body
+     * @return frame in its JSON shape
+     */
+    public JsonNode decode(final byte[] cbor) {
+        try {
+            JsonNode frame = cborMapper.readTree(cbor);
+            String type = frame.path(0).asText();
+            ObjectNode decoded = jsonMapper.createObjectNode();
+            decoded.put("type", type);
+            decoded.set("content", read(frame.get(1), CONTENT.getOrDefault(type, UNTYPED_CONTENT)));
+            return decoded;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode CBOR frame", e);
+        }
+    }
+
+    /**
+     * Converts a CBOR body sent by a client into JSON for the message handlers. Client frames
+     * are plain CBOR maps, no schema applies.
+     *
+     * @param cbor CBOR body
+     * @return JSON body
+     */
+    public byte[] toJson(final byte[] cbor) {
+        try {
+            return jsonMapper.writeValueAsBytes(cborMapper.readTree(cbor));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot convert CBOR body to JSON", e);
+        }
+    }
+
+    private void write(final JsonGenerator generator, final JsonNode node, final Field field) throws IOException {
+        if (node == null || node.isNull()) {
+            generator.writeNull();
+            return;
+        }
+        switch (field.kind()) {
+            case INSTANT -> generator.writeNumber(toEpochMilli(node));
+            case PHOTO -> {
+                String photo = DefaultPhoto.compact(node.asText());
+                if (photo == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeString(photo);
+                }
+            }
+            case OBJECT -> writeObject(generator, node, field.schema());
+            case LIST -> {
+                if (!node.isArray()) {
+                    writeRaw(generator, node);
+                    return;
+                }
+                generator.writeStartArray();
+                for (JsonNode element : node) {
+                    writeObject(generator, element, field.schema());
+                }
+                generator.writeEndArray();
+            }
+            default -> generator.writeTree(node);
+        }
+    }
+
+    private void writeObject(final JsonGenerator generator, final JsonNode node, final List<Field> schema)
+            throws IOException {
+        if (!node.isObject()) {
+            writeRaw(generator, node);
+            return;
+        }
+        generator.writeStartArray();
+        for (Field field : schema) {
+            write(generator, node.get(field.name()), field);
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeRaw(final JsonGenerator generator, final JsonNode node) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(RAW);
+        generator.writeTree(node);
+        generator.writeEndObject();
+    }
+
+    private JsonNode read(final JsonNode node, final Field field) {
+        if (node == null || node.isNull()) {
+            return field.kind() == Kind.PHOTO ? TextNode.valueOf(DefaultPhoto.URL) : NullNode.getInstance();
+        }
+        return switch (field.kind()) {
+            case INSTANT -> TextNode.valueOf(Instant.ofEpochMilli(node.asLong()).toString());
+            case OBJECT -> readObject(node, field.schema());
+            case LIST -> {
+                if (node.isObject()) {
+                    yield node.path(RAW);
+                }
+                ArrayNode elements = jsonMapper.createArrayNode();
+                for (JsonNode element : node) {
+                    elements.add(readObject(element, field.schema()));
+                }
+                yield elements;
+            }
+            default -> node;
+        };
+    }
+
+    private JsonNode readObject(final JsonNode node, final List<Field> schema) {
+        if (node.isObject()) {
+            return node.path(RAW);
+        }
+        if (!node.isArray()) {
+            return node;
+        }
+        ObjectNode object = jsonMapper.createObjectNode();
+        for (int i = 0; i < schema.size(); i++) {
+            Field field = schema.get(i);
+            object.set(field.name(), read(node.get(i), field));
+        }
+        return object;
+    }
+
+    private static long toEpochMilli(final JsonNode node) {
+        if (node.isTextual()) {
+            return Instant.parse(node.asText()).toEpochMilli();
+        }
+        if (node.isIntegralNumber()) {
+            return node.asLong();
+        }
+        // Jackson writes timestamps with nanoseconds as decimal seconds.
+        return node.decimalValue().movePointRight(MILLIS_PER_SECOND_DIGITS).longValue();
+    }
+
+    private enum Kind {
+        VALUE, INSTANT, PHOTO, OBJECT, LIST
+    }
+
+    private record Field(String name, Kind kind, List<Field> schema) {
+
+        static Field value(final String name) {
+            return new Field(name, Kind.VALUE, List.of());
+        }
+
+        static Field instant(final String name) {
+            return new Field(name, Kind.INSTANT, List.of());
+        }
+
+        static Field photo(final String name) {
+            return new Field(name, Kind.PHOTO, List.of());
+        }
+
+        static Field object(final String name, final List<Field> schema) {
+            return new Field(name, Kind.OBJECT, schema);
+        }
+
+        static Field list(final String name, final List<Field> schema) {
+            return new Field(name, Kind.LIST, schema);
+        }
+    }
+}
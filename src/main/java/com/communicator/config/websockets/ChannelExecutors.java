@@ -0,0 +1,51 @@
+package com.communicator.config.websockets;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for the STOMP client inbound and outbound channels.
+ *
+ * <p>Message handlers block on Mongo, so with platform threads a handful of slow queries occupy
+ * the whole pool. Virtual threads unmount while blocked, so the same number of carrier threads
+ * can wait on many queries at once. The virtual-thread executor still has a concurrency limit:
+ * it keeps at most that many threads and queues further tasks, which keeps a reconnect storm
+ * from opening more Mongo requests than the connection pool can serve. Idle threads time out,
+ * so nothing is kept around between bursts.</p>
+ */
+public final class ChannelExecutors {
+
+    private static final int PLATFORM_THREADS_PER_CPU = 2;
+    private static final int KEEP_ALIVE_SECONDS = 60;
+
+    private ChannelExecutors() {
+    }
+
+    /**
+     * Platform-thread executor sized like Spring's default channel executor.
+     *
+     * @return executor that still has to be initialized
+     */
+    public static ThreadPoolTaskExecutor platformThreads() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * PLATFORM_THREADS_PER_CPU);
+        executor.setKeepAliveSeconds(KEEP_ALIVE_SECONDS);
+        return executor;
+    }
+
+    /**
+     * Executor running every task on a virtual thread, with at most the given number of tasks
+     * running at once.
+     *
+     * @param threadNamePrefix prefix of the virtual threads' names
+     * @param maxConcurrency maximum number of tasks running at once
+     * @return executor that still has to be initialized
+     */
+    public static ThreadPoolTaskExecutor virtualThreads(final String threadNamePrefix, final int maxConcurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadFactory(Thread.ofVirtual().name(threadNamePrefix, 0).factory());
+        executor.setCorePoolSize(maxConcurrency);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setKeepAliveSeconds(1);
+        return executor;
+    }
+}
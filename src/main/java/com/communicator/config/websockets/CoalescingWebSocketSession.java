@@ -0,0 +1,162 @@
+package com.communicator.config.websockets;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Session that gathers outbound STOMP frames and writes them as one WebSocket message.
+ *
+ * <p>A MESSAGE frame is held until the oldest held frame is older than the maximum delay or the
+ * held frames reach the size threshold. Frames of a bypass type and all other frames, such as
+ * RECEIPT, ERROR or heartbeats, are written at once together with anything held before them, so
+ * frames always reach the client in the order they were sent. STOMP clients read several frames
+ * from one WebSocket message, so coalescing does not change the protocol.</p>
+ *
+ * <p>When a delayed write fails the session is closed with {@link CloseStatus#SERVER_ERROR} and the
+ * held frames are handed to {@link OutboundCoalescing#unsent}, which stores those of an outbox type
+ * for the next connection, like {@link BoundedSendSession} does with its queue. Frames still held
+ * when the session turns out to be closed are handed over the same way.</p>
+ *
+ * <p>Writes happen while holding a lock, so it is a {@link ReentrantLock}: a virtual thread blocked
+ * on a slow client inside a monitor would pin its carrier thread.</p>
+ */
+@Slf4j
+class CoalescingWebSocketSession extends WebSocketSessionDecorator {
+
+    private final OutboundCoalescing settings;
+    private final ScheduledExecutorService scheduler;
+    private final Executor writer;
+    private final DistributionSummary framesPerWrite;
+    private final List<WebSocketMessage<?>> pending = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int pendingBytes;
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Wraps a session.
+     *
+     * @param session session to write to
+     * @param settingsBean delay, threshold and bypass types
+     * @param schedulerBean scheduler of delayed flushes
+     * @param writerBean executor writing delayed flushes
+     * @param framesPerWriteSummary summary of frames written per WebSocket message
+     */
+    CoalescingWebSocketSession(final WebSocketSession session, final OutboundCoalescing settingsBean,
+                               final ScheduledExecutorService schedulerBean, final Executor writerBean,
+                               final DistributionSummary framesPerWriteSummary) {
+        super(session);
+        this.settings = settingsBean;
+        this.scheduler = schedulerBean;
+        this.writer = writerBean;
+        this.framesPerWrite = framesPerWriteSummary;
+    }
+
+    @Override
+    public void sendMessage(final WebSocketMessage<?> message) throws IOException {
+        boolean urgent = !isCoalescible(message);
+        lock.lock();
+        try {
+            if (!pending.isEmpty() && pending.get(0).getClass() != message.getClass()) {
+                flush();
+            }
+            pending.add(message);
+            pendingBytes += message.getPayloadLength();
+            if (urgent || pendingBytes >= settings.getMaxBytes()) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(() -> writer.execute(this::flushDelayed),
+                        settings.getMaxDelayMillis(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushDelayed() {
+        List<WebSocketMessage<?>> unsent = List.of();
+        CloseStatus closeStatus = null;
+        lock.lock();
+        try {
+            scheduledFlush = null;
+            List<WebSocketMessage<?>> held = List.copyOf(pending);
+            if (!isOpen()) {
+                pending.clear();
+                pendingBytes = 0;
+                unsent = held;
+            } else {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    log.debug("Failed to write to session {}", getId(), e);
+                    unsent = held;
+                    closeStatus = CloseStatus.SERVER_ERROR;
+                } catch (SessionLimitExceededException e) {
+                    // The bounded session has taken over the frames, but nobody else closes it.
+                    closeStatus = e.getStatus();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        settings.unsent(getId(), unsent);
+        if (closeStatus != null) {
+            try {
+                getDelegate().close(closeStatus);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to close session {}", getId(), e);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        WebSocketMessage<?> combined = pending.size() == 1 ? pending.get(0) : combine(pending);
+        framesPerWrite.record(pending.size());
+        pending.clear();
+        pendingBytes = 0;
+        getDelegate().sendMessage(combined);
+    }
+
+    private WebSocketMessage<?> combine(final List<WebSocketMessage<?>> messages) {
+        if (messages.get(0) instanceof TextMessage) {
+            StringBuilder frames = new StringBuilder(pendingBytes);
+            for (WebSocketMessage<?> message : messages) {
+                frames.append(((TextMessage) message).getPayload());
+            }
+            return new TextMessage(frames);
+        }
+        ByteBuffer frames = ByteBuffer.allocate(pendingBytes);
+        for (WebSocketMessage<?> message : messages) {
+            frames.put(((BinaryMessage) message).getPayload().duplicate());
+        }
+        return new BinaryMessage(frames.flip());
+    }
+
+    private boolean isCoalescible(final WebSocketMessage<?> message) {
+        String type = StompFrames.typeOf(message);
+        return type != null && !settings.getBypassTypes().contains(type);
+    }
+}
@@ -0,0 +1,138 @@
+package com.communicator.config.websockets;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Coalesces the outbound frames of every WebSocket session, see {@link CoalescingWebSocketSession}.
+ *
+ * <p>Presence updates and fan-out in busy chats otherwise cost one WebSocket write per event and
+ * recipient. Frames held for a session are written after at most the configured delay, at once
+ * when they reach the size threshold, or together with the next frame of a bypass type such as
+ * {@code CHAT_MESSAGE}. Delayed writes run on virtual threads, so a slow client never holds up the
+ * flushes of other sessions. Frames a delayed write could not deliver are passed to
+ * {@link SlowConsumerProtection#unsent} for the offline outbox. The number of frames per write is
+ * published as the
+ * {@code websocket.outbound.frames.per.write} summary.</p>
+ */
+@Component
+public class OutboundCoalescing implements WebSocketHandlerDecoratorFactory {
+
+    private final boolean enabled;
+    private final long maxDelayMillis;
+    private final int maxBytes;
+    private final Set<String> bypassTypes;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("ws-coalescing").daemon().factory());
+    private final ExecutorService writer =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-coalescing-write-", 0).factory());
+    private final DistributionSummary framesPerWrite;
+    private final SlowConsumerProtection slowConsumerProtection;
+
+    /**
+     * Creates the factory.
+     *
+     * @param enabledProp whether outbound frames are coalesced
+     * @param maxDelayMillisProp longest time a frame is held
+     * @param maxBytesProp size of the held frames at which they are written at once
+     * @param bypassTypesProp message types written at once, with the frames held before them
+     * @param slowConsumerProtectionBean stores the outbox frames a delayed write could not deliver
+     * @param meterRegistry registry the coalescing summary is published to
+     */
+    public OutboundCoalescing(@Value("${application.websocket.coalescing.enabled}") final boolean enabledProp,
+                              @Value("${application.websocket.coalescing.max-delay-ms}") final long maxDelayMillisProp,
+                              @Value("${application.websocket.coalescing.max-bytes}") final int maxBytesProp,
+                              @Value("${application.websocket.coalescing.bypass-types}")
+                              final Set<String> bypassTypesProp,
+                              final SlowConsumerProtection slowConsumerProtectionBean,
+                              final MeterRegistry meterRegistry) {
+        this.enabled = enabledProp;
+        this.maxDelayMillis = maxDelayMillisProp;
+        this.maxBytes = maxBytesProp;
+        this.bypassTypes = Set.copyOf(bypassTypesProp);
+        this.slowConsumerProtection = slowConsumerProtectionBean;
+        this.framesPerWrite = DistributionSummary.builder("websocket.outbound.frames.per.write")
+                .description("STOMP frames written in one WebSocket message")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stops the flush threads.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        writer.shutdown();
+    }
+
+    @Override
+    public WebSocketHandler decorate(final WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(final WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(new CoalescingWebSocketSession(session, OutboundCoalescing.this,
+                        scheduler, writer, framesPerWrite));
+            }
+        };
+    }
+
+    /**
+     * Whether outbound frames are coalesced.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Longest time a frame is held.
+     *
+     * @return delay in milliseconds
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Size of the held frames at which they are written at once.
+     *
+     * @return threshold in bytes
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Message types written at once.
+     *
+     * @return names of {@link com.communicator.dto.MessageType} constants
+     */
+    public Set<String> getBypassTypes() {
+        return bypassTypes;
+    }
+
+    /**
+     * Stores the frames of an outbox type that a delayed write could not deliver.
+     *
+     * @param sessionId session the frames were held for
+     * @param held frames that were not written
+     */
+    void unsent(final String sessionId, final List<WebSocketMessage<?>> held) {
+        slowConsumerProtection.unsent(sessionId, held);
+    }
+}
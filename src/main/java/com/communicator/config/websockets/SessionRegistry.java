@@ -2,37 +2,76 @@ package com.communicator.config.websockets;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+/**
+ * Phone numbers of the users of open STOMP sessions on this node, taken from the
+ * {@code phoneNumber} header of CONNECT.
+ */
 @Component
 public class SessionRegistry {
 
+    private static final String PHONE_NUMBER_HEADER = "phoneNumber";
+
     /**
-     * asd.
+     * Phone numbers by session id.
      */
     private final Map<String, String> sessionMap = new ConcurrentHashMap<>();
 
     /**
-     * asd.
-     * @param sessionId
-     * @param phoneNumber
+     * Registers the user of a session that is connecting.
+     *
+     * @param event CONNECT event
+     */
+    @EventListener
+    public void onConnect(final SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String phoneNumber = accessor.getFirstNativeHeader(PHONE_NUMBER_HEADER);
+        if (accessor.getSessionId() != null && phoneNumber != null && !phoneNumber.isBlank()) {
+            put(accessor.getSessionId(), phoneNumber.trim());
+        }
+    }
+
+    /**
+     * Forgets a closed session, after the other disconnect listeners had the chance to look up its
+     * user.
+     *
+     * @param event disconnect event
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onDisconnect(final SessionDisconnectEvent event) {
+        remove(event.getSessionId());
+    }
+
+    /**
+     * Registers the user of a session.
+     * @param sessionId session id
+     * @param phoneNumber user's phone number
      */
     public void put(final String sessionId, final String phoneNumber) {
         sessionMap.put(sessionId, phoneNumber);
     }
 
     /**
-     * asdas.
-     * @param sessionId
-     * @return asd
+     * User of a session.
+     * @param sessionId session id
+     * @return phone number, null for unknown sessions
      */
     public String get(final String sessionId) {
         return sessionMap.get(sessionId);
     }
 
     /**
-     * asda.
-     * @param sessionId
+     * Forgets a session.
+     * @param sessionId session id
      */
     public void remove(final String sessionId) {
         sessionMap.remove(sessionId);
@@ -0,0 +1,307 @@
+package com.communicator.config.websockets;
+
+import com.communicator.dto.MessageType;
+import com.communicator.services.chat.OfflineOutboxService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds what is buffered for every WebSocket session, see {@link BoundedSendSession}.
+ *
+ * <p>Without it a client that stops reading blocks the {@code clientOutboundChannel} thread that
+ * writes to it and every frame for it piles up behind that thread. Here frames are queued per
+ * session and written by a virtual thread of that session, so sending never waits for a client.
+ * Overflow is handled in two steps: frames of a droppable type, presence by default, are discarded
+ * once the buffered frames reach the drop threshold, and the session is closed when they reach the
+ * buffer limit. Writes in progress are checked on a timer, twice per send time limit, and a session
+ * whose write has been blocked in the transport for longer than the limit is closed as well. Queued
+ * frames of an outbox type, of a closed session or one whose write failed, are then stored in the
+ * {@link OfflineOutboxService} and replayed when the client reconnects.</p>
+ *
+ * <p>Published metrics: the {@code websocket.session.buffered.bytes} summary of a session's
+ * buffered bytes whenever a frame is queued, the {@code websocket.buffered.bytes} gauge of all
+ * buffered bytes, and the {@code websocket.slow.consumer.dropped} and
+ * {@code websocket.slow.consumer.closed} counters.</p>
+ */
+@Component
+@Slf4j
+public class SlowConsumerProtection implements WebSocketHandlerDecoratorFactory {
+
+    private static final int CHECKS_PER_SEND_TIME_LIMIT = 2;
+
+    private final boolean enabled;
+    private final int sendTimeLimitMillis;
+    private final int bufferSizeLimit;
+    private final int dropThreshold;
+    private final Set<String> droppableTypes;
+    private final Set<String> outboxTypes;
+    private final OfflineOutboxService offlineOutboxService;
+    private final SessionRegistry sessionRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CborFrameCodec cborFrameCodec = new CborFrameCodec();
+    private final ExecutorService writer =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-send-", 0).factory());
+    private final ScheduledExecutorService sendTimeChecker =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("ws-send-time").daemon().factory());
+    private final Map<String, BoundedSendSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final DistributionSummary sessionBufferedBytes;
+    private final Map<String, Counter> droppedCounters = new ConcurrentHashMap<>();
+    private final Counter closedForBufferCounter;
+    private final Counter closedForTimeCounter;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Creates the factory.
+     *
+     * @param enabledProp whether sessions are protected
+     * @param sendTimeLimitMillisProp longest time one write may take
+     * @param bufferSizeLimitProp buffered bytes at which a session is closed
+     * @param dropThresholdProp buffered bytes at which frames of a droppable type are discarded
+     * @param droppableTypesProp message types discarded first
+     * @param outboxTypesProp message types stored in the outbox when a session is closed
+     * @param offlineOutboxServiceBean outbox for frames of closed sessions
+     * @param sessionRegistryBean users of the open sessions
+     * @param meterRegistryBean registry the buffer metrics are published to
+     */
+    public SlowConsumerProtection(
+            @Value("${application.websocket.slow-consumer.enabled}") final boolean enabledProp,
+            @Value("${application.websocket.slow-consumer.send-time-limit-ms}") final int sendTimeLimitMillisProp,
+            @Value("${application.websocket.slow-consumer.buffer-size-limit}") final int bufferSizeLimitProp,
+            @Value("${application.websocket.slow-consumer.drop-threshold}") final int dropThresholdProp,
+            @Value("${application.websocket.slow-consumer.droppable-types}") final Set<String> droppableTypesProp,
+            @Value("${application.websocket.slow-consumer.outbox-types}") final Set<String> outboxTypesProp,
+            final OfflineOutboxService offlineOutboxServiceBean,
+            final SessionRegistry sessionRegistryBean,
+            final MeterRegistry meterRegistryBean) {
+        this.enabled = enabledProp;
+        this.sendTimeLimitMillis = sendTimeLimitMillisProp;
+        this.bufferSizeLimit = bufferSizeLimitProp;
+        this.dropThreshold = Math.min(dropThresholdProp, bufferSizeLimitProp);
+        this.droppableTypes = Set.copyOf(droppableTypesProp);
+        this.outboxTypes = Set.copyOf(outboxTypesProp);
+        this.offlineOutboxService = offlineOutboxServiceBean;
+        this.sessionRegistry = sessionRegistryBean;
+        this.meterRegistry = meterRegistryBean;
+
+        this.sessionBufferedBytes = DistributionSummary.builder("websocket.session.buffered.bytes")
+                .description("Bytes buffered for a session, recorded whenever a frame is queued")
+                .baseUnit("bytes")
+                .register(meterRegistryBean);
+        Gauge.builder("websocket.buffered.bytes", bufferedBytes, AtomicLong::get)
+                .description("Bytes buffered for all sessions on this node")
+                .baseUnit("bytes")
+                .register(meterRegistryBean);
+        this.closedForBufferCounter = closedCounter("buffer");
+        this.closedForTimeCounter = closedCounter("time");
+    }
+
+    /**
+     * Starts checking the writes in progress against the send time limit.
+     */
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            long period = Math.max(1, sendTimeLimitMillis / CHECKS_PER_SEND_TIME_LIMIT);
+            sendTimeChecker.scheduleAtFixedRate(this::checkSendTimes, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the write and check threads.
+     */
+    @PreDestroy
+    public void stop() {
+        sendTimeChecker.shutdownNow();
+        writer.shutdown();
+    }
+
+    @Override
+    public WebSocketHandler decorate(final WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(final WebSocketSession session) throws Exception {
+                BoundedSendSession bounded = new BoundedSendSession(session, SlowConsumerProtection.this, writer);
+                sessions.put(session.getId(), bounded);
+                super.afterConnectionEstablished(bounded);
+            }
+
+            @Override
+            public void afterConnectionClosed(final WebSocketSession session, final CloseStatus closeStatus)
+                    throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    sessions.remove(session.getId());
+                }
+            }
+        };
+    }
+
+    /**
+     * Whether sessions are protected.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Longest time one write may take.
+     *
+     * @return limit in milliseconds
+     */
+    public int getSendTimeLimitMillis() {
+        return sendTimeLimitMillis;
+    }
+
+    /**
+     * Longest time one write may take.
+     *
+     * @return limit in nanoseconds
+     */
+    long getSendTimeLimitNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+    }
+
+    /**
+     * Buffered bytes at which a session is closed.
+     *
+     * @return limit in bytes
+     */
+    public int getBufferSizeLimit() {
+        return bufferSizeLimit;
+    }
+
+    /**
+     * Buffered bytes at which frames of a droppable type are discarded.
+     *
+     * @return threshold in bytes
+     */
+    int getDropThreshold() {
+        return dropThreshold;
+    }
+
+    /**
+     * Whether frames of a type are discarded first.
+     *
+     * @param type message type, null for frames without one
+     * @return true if droppable
+     */
+    boolean isDroppable(final String type) {
+        return type != null && droppableTypes.contains(type);
+    }
+
+    /**
+     * Records frames queued for or written to a session.
+     *
+     * @param sessionBytes bytes now buffered for the session
+     * @param delta change of the buffered bytes
+     */
+    void buffered(final int sessionBytes, final int delta) {
+        bufferedBytes.addAndGet(delta);
+        if (delta > 0) {
+            sessionBufferedBytes.record(sessionBytes);
+        }
+    }
+
+    /**
+     * Counts a discarded frame.
+     *
+     * @param type message type
+     */
+    void dropped(final String type) {
+        droppedCounters.computeIfAbsent(type, key -> Counter.builder("websocket.slow.consumer.dropped")
+                .description("Frames discarded for sessions over the drop threshold")
+                .tag("type", key)
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * Counts a closed session and stores its queued frames of an outbox type.
+     *
+     * @param sessionId closed session
+     * @param timedOut whether a write took too long, rather than the buffer filling up
+     * @param queued frames that were not written
+     */
+    void closed(final String sessionId, final boolean timedOut, final List<WebSocketMessage<?>> queued) {
+        (timedOut ? closedForTimeCounter : closedForBufferCounter).increment();
+        unsent(sessionId, queued);
+    }
+
+    /**
+     * Stores the frames of an outbox type that were not written to a session.
+     *
+     * @param sessionId session the frames were queued for
+     * @param queued frames that were not written
+     */
+    void unsent(final String sessionId, final List<WebSocketMessage<?>> queued) {
+        String userId = sessionRegistry.get(sessionId);
+        if (userId == null || queued.isEmpty()) {
+            return;
+        }
+        writer.execute(() -> queued.forEach(message -> storeSafely(userId, message)));
+    }
+
+    private void storeSafely(final String userId, final WebSocketMessage<?> message) {
+        String type = StompFrames.typeOf(message);
+        if (type == null || !outboxTypes.contains(type)) {
+            return;
+        }
+        try {
+            byte[] body = StompFrames.bodyOf(message);
+            JsonNode frame = message instanceof BinaryMessage ? cborFrameCodec.decode(body)
+                    : objectMapper.readTree(body);
+            offlineOutboxService.enqueue(userId, MessageType.valueOf(type),
+                    objectMapper.treeToValue(frame.get("content"), Object.class));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to store a {} frame of a closed session in the outbox of {}", type, userId, e);
+        }
+    }
+
+    private void checkSendTimes() {
+        long now = System.nanoTime();
+        for (BoundedSendSession session : sessions.values()) {
+            try {
+                session.checkSendTime(now);
+            } catch (RuntimeException e) {
+                log.warn("Failed to check the send time of session {}", session.getId(), e);
+            }
+        }
+    }
+
+    private Counter closedCounter(final String reason) {
+        return Counter.builder("websocket.slow.consumer.closed")
+                .description("Sessions closed because the client did not keep up")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,145 @@
+package com.communicator.config.websockets;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads encoded outbound STOMP frames without parsing them, for the session decorators.
+ *
+ * <p>Only MESSAGE frames whose body starts with the message type are recognised: JSON bodies
+ * starting with {@code {"type":"} and bodies encoded by {@link CborFrameCodec}.</p>
+ */
+final class StompFrames {
+
+    private static final String MESSAGE_PREFIX = "MESSAGE\n";
+    private static final byte[] MESSAGE_COMMAND = MESSAGE_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final String JSON_TYPE_PREFIX = "{\"type\":\"";
+    private static final int CBOR_STRINGREF_NAMESPACE = 0xd9;
+    private static final int CBOR_PAIR = 0x82;
+    private static final int CBOR_SHORT_TEXT = 0x60;
+    private static final int CBOR_MAX_SHORT_TEXT = 0x77;
+    private static final int CBOR_TEXT_ONE_BYTE_LENGTH = 0x78;
+    private static final int CBOR_TAG_LENGTH = 3;
+    private static final int BYTE_MASK = 0xff;
+
+    private StompFrames() {
+    }
+
+    /**
+     * Type of a MESSAGE frame.
+     *
+     * @param message text or binary WebSocket message with one STOMP frame
+     * @return message type, null if it is another frame or the body has no leading type
+     */
+    static String typeOf(final WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return typeOf(text.getPayload());
+        }
+        if (message instanceof BinaryMessage binary) {
+            return typeOf(binary.getPayload().duplicate());
+        }
+        return null;
+    }
+
+    /**
+     * Type of a MESSAGE frame with a JSON body.
+     *
+     * @param frame encoded STOMP frame
+     * @return message type, null if it is another frame or the body has no leading type
+     */
+    static String typeOf(final String frame) {
+        if (!frame.startsWith(MESSAGE_PREFIX)) {
+            return null;
+        }
+        int body = frame.indexOf("\n\n");
+        if (body < 0 || !frame.startsWith(JSON_TYPE_PREFIX, body + 2)) {
+            return null;
+        }
+        int start = body + 2 + JSON_TYPE_PREFIX.length();
+        int end = frame.indexOf('"', start);
+        return end < 0 ? null : frame.substring(start, end);
+    }
+
+    /**
+     * Type of a MESSAGE frame with a body encoded by {@link CborFrameCodec}.
+     *
+     * @param frame encoded STOMP frame, read from its position on
+     * @return message type, null if it is another frame or the body has no leading type
+     */
+    static String typeOf(final ByteBuffer frame) {
+        return skipHeaders(frame) ? cborType(frame) : null;
+    }
+
+    /**
+     * Body of a MESSAGE frame, without the terminating NUL.
+     *
+     * @param message text or binary WebSocket message with one STOMP frame
+     * @return body as JSON for text frames and CBOR for binary frames, null for other frames
+     */
+    static byte[] bodyOf(final WebSocketMessage<?> message) {
+        ByteBuffer frame;
+        if (message instanceof TextMessage text) {
+            frame = ByteBuffer.wrap(text.asBytes());
+        } else if (message instanceof BinaryMessage binary) {
+            frame = binary.getPayload().duplicate();
+        } else {
+            return null;
+        }
+        if (!skipHeaders(frame)) {
+            return null;
+        }
+        byte[] body = new byte[frame.remaining()];
+        frame.get(body);
+        int length = body.length;
+        while (length > 0 && body[length - 1] == 0) {
+            length--;
+        }
+        return Arrays.copyOf(body, length);
+    }
+
+    private static boolean skipHeaders(final ByteBuffer frame) {
+        for (byte expected : MESSAGE_COMMAND) {
+            if (!frame.hasRemaining() || frame.get() != expected) {
+                return false;
+            }
+        }
+        byte previous = '\n';
+        while (frame.hasRemaining()) {
+            byte current = frame.get();
+            if (current == '\n' && previous == '\n') {
+                return true;
+            }
+            previous = current;
+        }
+        return false;
+    }
+
+    private static String cborType(final ByteBuffer body) {
+        if (body.remaining() > CBOR_TAG_LENGTH && (body.get(body.position()) & BYTE_MASK) == CBOR_STRINGREF_NAMESPACE) {
+            body.position(body.position() + CBOR_TAG_LENGTH);
+        }
+        if (!body.hasRemaining() || (body.get() & BYTE_MASK) != CBOR_PAIR || !body.hasRemaining()) {
+            return null;
+        }
+        int header = body.get() & BYTE_MASK;
+        int length;
+        if (header >= CBOR_SHORT_TEXT && header <= CBOR_MAX_SHORT_TEXT) {
+            length = header - CBOR_SHORT_TEXT;
+        } else if (header == CBOR_TEXT_ONE_BYTE_LENGTH && body.hasRemaining()) {
+            length = body.get() & BYTE_MASK;
+        } else {
+            return null;
+        }
+        if (body.remaining() < length) {
+            return null;
+        }
+        byte[] type = new byte[length];
+        body.get(type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+}
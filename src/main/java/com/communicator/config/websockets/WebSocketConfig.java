@@ -1,14 +1,25 @@
 package com.communicator.config.websockets;
 
-
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 //import com.communicator.services.utils.UserHandshakeInterceptor;
 /**
  * Configures the WebSocket message broker for the application.
+ *
+ * <p>Messages of one session are handled and sent in the order they arrived, one at a time, so
+ * running handlers concurrently never reorders a user's messages. With
+ * {@code spring.threads.virtual.enabled}, which also moves servlet request handling to virtual
+ * threads, the client channels run their handlers on virtual threads, see {@link ChannelExecutors}.</p>
+ *
+ * <p>Clients may ask for binary frame bodies at CONNECT, see {@link WireCodec}. Outbound frames of
+ * a session are coalesced into fewer WebSocket writes, see {@link OutboundCoalescing}, and what is
+ * buffered for a client that does not keep up is bounded, see {@link SlowConsumerProtection}.</p>
  */
 @Configuration
 @EnableWebSocketMessageBroker
@@ -17,6 +28,35 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 //    @Autowired
 //    private UserHandshakeInterceptor handshakeInterceptor;
 
+    private final boolean virtualThreads;
+    private final int channelMaxConcurrency;
+    private final WireCodecInterceptors wireCodecInterceptors;
+    private final OutboundCoalescing outboundCoalescing;
+    private final SlowConsumerProtection slowConsumerProtection;
+
+    /**
+     * Creates the configuration.
+     *
+     * @param virtualThreadsProp whether the client channels run on virtual threads
+     * @param channelMaxConcurrencyProp maximum number of messages handled at once per channel
+     *                                  when running on virtual threads
+     * @param wireCodecInterceptorsBean interceptors negotiating and applying the sessions' codecs
+     * @param outboundCoalescingBean factory coalescing the sessions' outbound frames
+     * @param slowConsumerProtectionBean factory bounding the sessions' send buffers
+     */
+    public WebSocketConfig(@Value("${spring.threads.virtual.enabled:false}") final boolean virtualThreadsProp,
+                           @Value("${application.websocket.channel-max-concurrency:1000}")
+                           final int channelMaxConcurrencyProp,
+                           final WireCodecInterceptors wireCodecInterceptorsBean,
+                           final OutboundCoalescing outboundCoalescingBean,
+                           final SlowConsumerProtection slowConsumerProtectionBean) {
+        this.virtualThreads = virtualThreadsProp;
+        this.channelMaxConcurrency = channelMaxConcurrencyProp;
+        this.wireCodecInterceptors = wireCodecInterceptorsBean;
+        this.outboundCoalescing = outboundCoalescingBean;
+        this.slowConsumerProtection = slowConsumerProtectionBean;
+    }
+
     /**
      * Registers the STOMP endpoints used by WebSocket clients.
      *
@@ -24,11 +64,60 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
      */
     @Override
     public void registerStompEndpoints(final StompEndpointRegistry registry) {
+        registry.setPreserveReceiveOrder(true);
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
 
+    /**
+     * Decodes binary client frames and runs inbound message handlers on virtual threads if enabled.
+     *
+     * @param registration inbound channel registration
+     */
+    @Override
+    public void configureClientInboundChannel(final ChannelRegistration registration) {
+        registration.interceptors(wireCodecInterceptors.inbound());
+        if (virtualThreads) {
+            registration.taskExecutor(ChannelExecutors.virtualThreads("ws-inbound-", channelMaxConcurrency));
+        }
+    }
+
+    /**
+     * Encodes outbound frames with the sessions' codecs and sends them from virtual threads if
+     * enabled.
+     *
+     * @param registration outbound channel registration
+     */
+    @Override
+    public void configureClientOutboundChannel(final ChannelRegistration registration) {
+        registration.interceptors(wireCodecInterceptors.outbound());
+        if (virtualThreads) {
+            registration.taskExecutor(ChannelExecutors.virtualThreads("ws-outbound-", channelMaxConcurrency));
+        }
+    }
+
+    /**
+     * Bounds the sessions' send buffers and coalesces outbound frames if enabled. The limits are
+     * also given to the broker's own session decorator, which enforces them when the protection is
+     * disabled. Factories added first decorate the session last, so frames are bounded before they
+     * are coalesced, and the codec decorator, added last, sees the transport's own session.
+     *
+     * @param registration WebSocket transport registration
+     */
+    @Override
+    public void configureWebSocketTransport(final WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(slowConsumerProtection.getSendTimeLimitMillis());
+        registration.setSendBufferSizeLimit(slowConsumerProtection.getBufferSizeLimit());
+        if (slowConsumerProtection.isEnabled()) {
+            registration.addDecoratorFactory(slowConsumerProtection);
+        }
+        if (outboundCoalescing.isEnabled()) {
+            registration.addDecoratorFactory(outboundCoalescing);
+        }
+        registration.addDecoratorFactory(wireCodecInterceptors.transport());
+    }
+
     /**
      * Configures the message broker for routing messages.
      *
@@ -39,5 +128,6 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.setApplicationDestinationPrefixes("/app");
         registry.enableSimpleBroker("/topic", "/queue", "/user");
         registry.setUserDestinationPrefix("/user");  // Add this line
+        registry.setPreservePublishOrder(true);
     }
 }
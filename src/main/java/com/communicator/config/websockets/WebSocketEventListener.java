@@ -1,34 +1,31 @@
 package com.communicator.config.websockets;
 
 import com.communicator.dto.MessageType;
-import com.communicator.dto.chat.ChatPreview;
 import com.communicator.dto.chat.MessagesAfterLoginDto;
-import com.communicator.entity.AppUser;
 import com.communicator.entity.TypedWebSocketMessage;
 import com.communicator.entity.chat.ChatMessage;
-import com.communicator.entity.chat.ChatRoom;
 import com.communicator.entity.chat.UndeliveredMessage;
-import com.communicator.repositories.ChatMessageRepository;
-import com.communicator.repositories.ChatRepository;
-import com.communicator.repositories.UndeliveredMessageRepository;
-import com.communicator.repositories.UserRepository;
-import com.communicator.services.UserService;
-import com.communicator.services.chat.ChatBroadcastService;
-import com.communicator.services.chat.ChatService;
+import com.communicator.services.chat.ChatTailCache;
+import com.communicator.services.chat.LoginBootstrapService;
+import com.communicator.services.chat.OfflineOutboxService;
+import com.communicator.services.chat.PresenceService;
+import com.communicator.services.chat.ReactiveChatPipeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -44,15 +41,13 @@ public class WebSocketEventListener {
      * Service to send messages to subscribed clients.
      */
     private final SimpMessageSendingOperations messagingTemplate;
-    private final UserRepository userRepository;
-    private final UndeliveredMessageRepository undeliveredMessageRepository;
-    private final ConcurrentHashMap<String, String> sessionRegistry = new ConcurrentHashMap<>();
+    private final SessionRegistry sessionRegistry;
     private final ConcurrentHashMap<String, Boolean> subscriptionAcknowledged = new ConcurrentHashMap<>();
-    private final ChatRepository chatRepository;
-    private final ChatService chatService;
-    private final UserService userService;
-    private final ChatBroadcastService chatBroadcastService;
-    private final ChatMessageRepository chatMessageRepository;
+    private final PresenceService presenceService;
+    private final LoginBootstrapService loginBootstrapService;
+    private final OfflineOutboxService offlineOutboxService;
+    private final ChatTailCache chatTailCache;
+    private final ReactiveChatPipeline reactiveChatPipeline;
 
 
 
@@ -63,19 +58,13 @@ public class WebSocketEventListener {
      */
     @EventListener
     public void handleWebSocketConnectListener(final SessionConnectedEvent event) {
-        var headers = event.getMessage().getHeaders();
-        String phoneNumber = getPhoneNumberFromHeaders(headers.toString());
-        String sessionId = headers.get("simpSessionId").toString();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        String phoneNumber = sessionId == null ? null : sessionRegistry.get(sessionId);
 
         if (phoneNumber != null) {
-            sessionRegistry.put(sessionId, phoneNumber);
-
-            AppUser appUser = userService.findByPhoneNumber(phoneNumber);
-            appUser.setActive(true);
-            userRepository.save(appUser);
-            chatBroadcastService.broadcastStatusToChatPartners(appUser.getPhoneNumber(), appUser.isActive());
+            presenceService.sessionOpened(phoneNumber);
         } else {
-            log.error("Failed to extract phone number from headers");
+            log.error("No phone number registered for session {}", sessionId);
         }
     }
 
@@ -96,6 +85,40 @@ public class WebSocketEventListener {
         }
     }
 
+    /**
+     * Acknowledge undelivered messages up to a sequence number and get the next page of them. The
+     * user is the one who opened the session, a {@code userId} in the payload is ignored.
+     * @param payload payload from client with sequence
+     * @param sessionId id of the session the acknowledgment arrived on
+     */
+    @MessageMapping("/outbox/ack")
+    public void acknowledgeUndelivered(final Map<String, String> payload,
+                                       @Header("simpSessionId") final String sessionId) {
+        String userId = sessionRegistry.get(sessionId);
+        String sequence = payload.get("sequence");
+        if (userId == null || sequence == null) {
+            log.error("Invalid outbox acknowledgment on session {}: {}", sessionId, payload);
+            return;
+        }
+        long acknowledgedSequence;
+        try {
+            acknowledgedSequence = Long.parseLong(sequence);
+        } catch (NumberFormatException e) {
+            log.error("Invalid sequence in outbox acknowledgment of {}: {}", userId, sequence);
+            return;
+        }
+
+        offlineOutboxService.acknowledge(userId, acknowledgedSequence);
+        List<UndeliveredMessage> undeliveredMessages = offlineOutboxService.nextPage(userId);
+        if (!undeliveredMessages.isEmpty()) {
+            messagingTemplate.convertAndSendToUser(
+                    userId,
+                    "/" + userId,
+                    new TypedWebSocketMessage(MessageType.UNDELIVERED_MESSAGES, undeliveredMessages)
+            );
+        }
+    }
+
     /**
      * Get last messages.
      * @param payload payload from client
@@ -105,7 +128,11 @@ public class WebSocketEventListener {
         String chatId = payload.get("chatId");
         String userId = payload.get("userId");
         if (chatId != null && userId != null) {
-            List<ChatMessage> messages = chatMessageRepository.findTop20ByChatIdOrderByTimestampDesc(chatId);
+            if (reactiveChatPipeline.isEnabled()) {
+                reactiveChatPipeline.sendLastMessages(chatId, userId);
+                return;
+            }
+            List<ChatMessage> messages = chatTailCache.getLastMessages(chatId);
             TypedWebSocketMessage webSocketLastMessages = new TypedWebSocketMessage(MessageType.LAST_MESSAGES,
                     messages);
             messagingTemplate.convertAndSendToUser(
@@ -121,13 +148,12 @@ public class WebSocketEventListener {
 
     private void processMessagesForClient(final String userId) {
         if (subscriptionAcknowledged.getOrDefault(userId, false)) {
-            List<UndeliveredMessage> undeliveredMessages = undeliveredMessageRepository.findByUserId(userId);
-            List<ChatRoom> chatRooms = chatRepository.findTop10ByUserId(userId);
-            List<ChatPreview> chatPreviews = chatService.toChatPreviewList(chatRooms);
-            Map<String, Boolean> friendsActivity = getFriendsActivity(userId);
-
-            MessagesAfterLoginDto message = new MessagesAfterLoginDto(chatPreviews, undeliveredMessages,
-                friendsActivity);
+            if (reactiveChatPipeline.isEnabled()) {
+                reactiveChatPipeline.sendAllChats(userId);
+                subscriptionAcknowledged.remove(userId);
+                return;
+            }
+            MessagesAfterLoginDto message = loginBootstrapService.bootstrap(userId);
             TypedWebSocketMessage webSocketMessage = new TypedWebSocketMessage(MessageType.ALL_CHATS, message);
 
             messagingTemplate.convertAndSendToUser(
@@ -140,72 +166,23 @@ public class WebSocketEventListener {
         }
     }
 
-    private Map<String, Boolean> getFriendsActivity(final String userId) {
-        List<ChatRoom> allUserChatRooms = chatRepository.findByUserId(userId);
-        Set<String> friendsIds = chatBroadcastService.getFriendsIds(userId, allUserChatRooms);
-        List<AppUser> users = userRepository.findByPhoneNumberIn(friendsIds);
-        Map<String, Boolean> friendsActivity = new HashMap<>();
-        for (AppUser user : users) {
-            friendsActivity.put(user.getPhoneNumber(), user.isActive());
-        }
-
-        return friendsActivity;
-    }
-
     /**
-     * Handles WebSocket disconnection events. Sends a "user left" message to all clients.
+     * Handles WebSocket disconnection events. Sends a "user left" message to all clients. Runs
+     * before the {@link SessionRegistry} forgets the session.
      *
      * @param event the disconnection event.
      */
     @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
     public void handleWebSocketDisconnectListener(final SessionDisconnectEvent event) {
         String sessionId = event.getSessionId();
-        log.info("WebSocket disconnect event: sessionId={}", sessionId);
 
-        // Retrieve phone number from sessionRegistry
         String phoneNumber = sessionRegistry.get(sessionId);
         if (phoneNumber == null) {
             return; // Exit gracefully
         }
 
-        AppUser appUser = userService.findByPhoneNumber(phoneNumber);
-        if (appUser != null) {
-            appUser.setActive(false);
-            userRepository.save(appUser);
-            chatBroadcastService.broadcastStatusToChatPartners(appUser.getPhoneNumber(), appUser.isActive());
-            log.info("User set to inactive: {}", phoneNumber);
-        } else {
-            log.warn("User not found for phone number: {}", phoneNumber);
-        }
-
-        sessionRegistry.remove(sessionId);
-        log.info("Session removed: sessionId={}, phoneNumber={}", sessionId, phoneNumber);
-    }
-
-    private String getPhoneNumberFromHeaders(final String headers) {
-        if (headers == null || headers.isEmpty()) {
-            log.error("Headers are null or empty");
-            return null;
-        }
-
-        // Look for the "phoneNumber=" part in the headers
-        String key = "phoneNumber=[";
-        int startIndex = headers.indexOf(key);
-        if (startIndex == -1) {
-            log.error("Phone number not found in headers: {}", headers);
-            return null;
-        }
-
-        // Extract everything after "phoneNumber=[" and before the closing "]"
-        startIndex += key.length();
-        int endIndex = headers.indexOf("]", startIndex);
-        if (endIndex == -1) {
-            log.error("Invalid phone number format in headers: {}", headers);
-            return null;
-        }
-
-        // Extract and trim the phone number
-        String phoneNumber = headers.substring(startIndex, endIndex).trim();
-        return phoneNumber.isEmpty() ? null : phoneNumber;
+        presenceService.sessionClosed(phoneNumber);
+        log.debug("Session removed: sessionId={}, phoneNumber={}", sessionId, phoneNumber);
     }
 }
@@ -0,0 +1,71 @@
+package com.communicator.config.websockets;
+
+import java.util.Locale;
+
+/**
+ * Encoding of the frame bodies a session receives.
+ *
+ * <p>Clients pick one with the {@value #ACCEPT_HEADER} header of their STOMP CONNECT frame, a
+ * comma separated list in order of preference. Sessions that do not send it, or only list codecs
+ * the server does not know, get JSON. Binary bodies are sent as binary WebSocket messages, which
+ * needs a native WebSocket connection to {@code /ws/websocket}; SockJS transports are text only,
+ * so sessions connected through SockJS get JSON.</p>
+ */
+public enum WireCodec {
+
+    /**
+     * JSON bodies, the default.
+     */
+    JSON("json"),
+
+    /**
+     * CBOR bodies, see {@link CborFrameCodec}.
+     */
+    CBOR("cbor");
+
+    /**
+     * CONNECT header listing the codecs the client accepts.
+     */
+    public static final String ACCEPT_HEADER = "accept-codec";
+
+    /**
+     * MESSAGE header naming the codec of a binary body.
+     */
+    public static final String HEADER = "codec";
+
+    private final String name;
+
+    WireCodec(final String nameProp) {
+        this.name = nameProp;
+    }
+
+    /**
+     * Name used in the STOMP headers.
+     *
+     * @return codec name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Picks the first codec of the client's list that the server supports.
+     *
+     * @param accepted value of the {@value #ACCEPT_HEADER} header, may be null
+     * @return negotiated codec, {@link #JSON} if none matches
+     */
+    public static WireCodec negotiate(final String accepted) {
+        if (accepted == null) {
+            return JSON;
+        }
+        for (String candidate : accepted.split(",")) {
+            String trimmed = candidate.trim().toLowerCase(Locale.ROOT);
+            for (WireCodec codec : values()) {
+                if (codec.name.equals(trimmed)) {
+                    return codec;
+                }
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,200 @@
+package com.communicator.config.websockets;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Negotiates the {@link WireCodec} of every session and converts frame bodies accordingly.
+ *
+ * <p>The inbound interceptor records the codec a client asked for at CONNECT, forgets it at
+ * DISCONNECT and turns {@code application/cbor} bodies of SEND frames into JSON for the message
+ * handlers. The outbound interceptor encodes the JSON body of every MESSAGE frame for a CBOR
+ * session and marks it with the {@value WireCodec#HEADER} header; the content type becomes
+ * {@code application/octet-stream}, which is what makes the STOMP handler send a binary message.
+ * The broker hands the same body to every session a message goes to, so encoded bodies are kept
+ * per body until it is garbage collected and a message reaching many sessions is encoded once.
+ * Bodies that cannot be encoded are sent as JSON.</p>
+ *
+ * <p>Binary messages need a native WebSocket connection, so the {@link #transport()} decorator
+ * records which sessions have one and sessions connected through SockJS always get JSON, whatever
+ * they ask for. It also forgets the codec of a session closed without a DISCONNECT frame.</p>
+ */
+@Component
+@Slf4j
+public class WireCodecInterceptors {
+
+    private static final MimeType APPLICATION_CBOR = MimeType.valueOf("application/cbor");
+
+    private final CborFrameCodec cborFrameCodec = new CborFrameCodec();
+    private final Map<String, WireCodec> sessionCodecs = new ConcurrentHashMap<>();
+    private final Set<String> nativeSessions = ConcurrentHashMap.newKeySet();
+    private final Map<byte[], byte[]> encodedBodies = new WeakHashMap<>();
+
+    /**
+     * Interceptor for the client inbound channel.
+     *
+     * @return inbound interceptor
+     */
+    public ChannelInterceptor inbound() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(final Message<?> message, final MessageChannel channel) {
+                return handleInbound(message);
+            }
+        };
+    }
+
+    /**
+     * Interceptor for the client outbound channel.
+     *
+     * @return outbound interceptor
+     */
+    public ChannelInterceptor outbound() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(final Message<?> message, final MessageChannel channel) {
+                return handleOutbound(message);
+            }
+        };
+    }
+
+    /**
+     * Decorator factory recording which sessions are native WebSocket connections.
+     *
+     * @return transport decorator factory
+     */
+    public WebSocketHandlerDecoratorFactory transport() {
+        return handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(final WebSocketSession session) throws Exception {
+                if (!(WebSocketSessionDecorator.unwrap(session) instanceof SockJsSession)) {
+                    nativeSessions.add(session.getId());
+                }
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(final WebSocketSession session, final CloseStatus closeStatus)
+                    throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    nativeSessions.remove(session.getId());
+                    sessionCodecs.remove(session.getId());
+                }
+            }
+        };
+    }
+
+    /**
+     * Codec negotiated by a session.
+     *
+     * @param sessionId session id
+     * @return codec, {@link WireCodec#JSON} for unknown sessions
+     */
+    public WireCodec codecOf(final String sessionId) {
+        return sessionCodecs.getOrDefault(sessionId, WireCodec.JSON);
+    }
+
+    private Message<?> handleInbound(final Message<?> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null || accessor.getSessionId() == null) {
+            return message;
+        }
+        String sessionId = accessor.getSessionId();
+        switch (accessor.getCommand()) {
+            case CONNECT, STOMP -> {
+                WireCodec codec = WireCodec.negotiate(accessor.getFirstNativeHeader(WireCodec.ACCEPT_HEADER));
+                if (codec != WireCodec.JSON && nativeSessions.contains(sessionId)) {
+                    sessionCodecs.put(sessionId, codec);
+                } else if (codec != WireCodec.JSON) {
+                    log.debug("Session {} gets JSON, binary frames need a native WebSocket", sessionId);
+                }
+            }
+            case DISCONNECT -> sessionCodecs.remove(sessionId);
+            case SEND -> {
+                if (codecOf(sessionId) == WireCodec.CBOR && message.getPayload() instanceof byte[] body
+                        && body.length > 0 && hasContentType(message.getHeaders(), APPLICATION_CBOR)) {
+                    return decodeBody(message, body);
+                }
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private Message<?> handleOutbound(final Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || codecOf(SimpMessageHeaderAccessor.getSessionId(headers)) != WireCodec.CBOR
+                || !(message.getPayload() instanceof byte[] json)
+                || !hasContentType(headers, MimeTypeUtils.APPLICATION_JSON)) {
+            return message;
+        }
+        try {
+            byte[] cbor = encodeOnce(json);
+            MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+            if (accessor instanceof NativeMessageHeaderAccessor nativeAccessor) {
+                nativeAccessor.setNativeHeader(WireCodec.HEADER, WireCodec.CBOR.getName());
+            }
+            return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+        } catch (RuntimeException e) {
+            log.debug("Sending frame as JSON, it cannot be encoded as CBOR", e);
+            return message;
+        }
+    }
+
+    private Message<?> decodeBody(final Message<?> message, final byte[] cbor) {
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(cborFrameCodec.toJson(cbor), accessor.getMessageHeaders());
+    }
+
+    private byte[] encodeOnce(final byte[] json) {
+        synchronized (encodedBodies) {
+            byte[] cbor = encodedBodies.get(json);
+            if (cbor != null) {
+                return cbor;
+            }
+        }
+        byte[] cbor = cborFrameCodec.encode(json);
+        synchronized (encodedBodies) {
+            encodedBodies.put(json, cbor);
+        }
+        return cbor;
+    }
+
+    private static boolean hasContentType(final MessageHeaders headers, final MimeType expected) {
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        if (contentType == null) {
+            return false;
+        }
+        return expected.isCompatibleWith(contentType instanceof MimeType mimeType
+                ? mimeType : MimeTypeUtils.parseMimeType(contentType.toString()));
+    }
+}
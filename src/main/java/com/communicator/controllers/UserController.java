@@ -4,7 +4,7 @@ import com.communicator.dto.SearchResultDto;
 import com.communicator.dto.SearchUserResults;
 import com.communicator.services.UserService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,7 +25,7 @@ public class UserController {
      * @param query - parameter from client
      * @param page - page number
      * @param size - number of objects per page
-     * @return - page with given number of {@link SearchUserResults} objects
+     * @return - slice with given number of {@link SearchUserResults} objects
      */
     @GetMapping("/search")
     public ResponseEntity<SearchResultDto> getUsers(final @RequestParam String query,
@@ -37,8 +37,8 @@ public class UserController {
 //        } else {
 //            searchQuery = query;
 //        }
-        Page<SearchUserResults> foundUsers = userService.searchUsers(query, page, size);
-        if (foundUsers.getTotalElements() > 0) {
+        Slice<SearchUserResults> foundUsers = userService.searchUsers(query, page, size);
+        if (foundUsers.hasContent()) {
             SearchResultDto searchResultDto = new SearchResultDto();
             searchResultDto.setResults(foundUsers);
             return ResponseEntity.ok(searchResultDto);
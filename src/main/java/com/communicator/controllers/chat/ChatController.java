@@ -3,6 +3,7 @@ package com.communicator.controllers.chat;
 
 import com.communicator.dto.MessageType;
 import com.communicator.dto.UserDto;
+import com.communicator.dto.chat.ChatMessageSliceDto;
 import com.communicator.dto.chat.ChatRoomPageDto;
 import com.communicator.entity.TypedWebSocketMessage;
 import com.communicator.entity.chat.ChatMessage;
@@ -13,32 +14,84 @@ import com.communicator.repositories.ChatMessageRepository;
 import com.communicator.repositories.ChatRepository;
 import com.communicator.services.chat.ChatMessageService;
 import com.communicator.services.chat.ChatService;
-import lombok.RequiredArgsConstructor;
+import com.communicator.services.chat.OfflineOutboxService;
+import com.communicator.services.chat.PresenceService;
+import com.communicator.services.chat.ReactiveChatPipeline;
+import com.communicator.services.cluster.ClusterMessagingService;
+import com.communicator.services.cluster.SerializedMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controller handling chat-related WebSocket messages.
+ *
+ * <p>Every chat message is timed in the {@code chat.message} timer, tagged with the stage:
+ * {@code receive} for the whole handler, {@code persist} for handing the message to the
+ * write-behind pipeline and {@code fanout} for delivering it to the members. In reactive mode,
+ * see {@link ReactiveChatPipeline}, only {@code receive} is recorded because the handler returns
+ * as soon as the pipeline is submitted.</p>
  */
 @Controller
-@RequiredArgsConstructor
 @Slf4j
 public class ChatController {
     private final ChatMessageRepository chatMessageRepository;
 
     private final ChatService chatService;
     private final ChatMessageService chatMessageService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ClusterMessagingService clusterMessagingService;
     private final ChatRepository chatRepository;
+    private final PresenceService presenceService;
+    private final OfflineOutboxService offlineOutboxService;
+    private final ReactiveChatPipeline reactiveChatPipeline;
+    private final Timer receiveTimer;
+    private final Timer persistTimer;
+    private final Timer fanOutTimer;
+
+    /**
+     * Creates the controller.
+     *
+     * @param chatMessageRepo repository with chat messages
+     * @param chatServiceBean service managing chats
+     * @param chatMessageServiceBean service persisting chat messages
+     * @param clusterMessagingServiceBean service delivering frames to users on any node
+     * @param chatRepo repository with chat rooms
+     * @param presenceServiceBean in-memory presence
+     * @param offlineOutboxServiceBean outbox for members who are offline
+     * @param reactiveChatPipelineBean non-blocking message path used in reactive mode
+     * @param meterRegistry registry the stage timers are published to
+     */
+    public ChatController(final ChatMessageRepository chatMessageRepo,
+                          final ChatService chatServiceBean,
+                          final ChatMessageService chatMessageServiceBean,
+                          final ClusterMessagingService clusterMessagingServiceBean,
+                          final ChatRepository chatRepo,
+                          final PresenceService presenceServiceBean,
+                          final OfflineOutboxService offlineOutboxServiceBean,
+                          final ReactiveChatPipeline reactiveChatPipelineBean,
+                          final MeterRegistry meterRegistry) {
+        this.chatMessageRepository = chatMessageRepo;
+        this.chatService = chatServiceBean;
+        this.chatMessageService = chatMessageServiceBean;
+        this.clusterMessagingService = clusterMessagingServiceBean;
+        this.chatRepository = chatRepo;
+        this.presenceService = presenceServiceBean;
+        this.offlineOutboxService = offlineOutboxServiceBean;
+        this.reactiveChatPipeline = reactiveChatPipelineBean;
+        this.receiveTimer = stageTimer("receive", meterRegistry);
+        this.persistTimer = stageTimer("persist", meterRegistry);
+        this.fanOutTimer = stageTimer("fanout", meterRegistry);
+    }
 
     /**
      * Handles sending chat messages to the public topic.
@@ -47,28 +100,34 @@ public class ChatController {
      */
     @MessageMapping("/chat/message")
     public void sendMessage(@Payload final ChatMessage chatMessage) {
-
-        String chatId = chatMessage.getChatId();
-        ChatRoom chatRoom = chatService.getChat(chatId);
-        List<UserDto> users = chatRoom.getUsers();
-        chatMessageService.saveChatMessage(chatMessage);
-        chatRoom.setLastMessage(chatMessage);
-        chatService.saveChat(chatRoom);
-        TypedWebSocketMessage message = new TypedWebSocketMessage(MessageType.CHAT_MESSAGE, chatMessage);
-        if (log.isInfoEnabled()) {
-            log.info("Message sent: {}", message);
-            log.info(users.toString());
+        long start = System.nanoTime();
+        if (reactiveChatPipeline.isEnabled()) {
+            reactiveChatPipeline.sendMessage(chatMessage);
+            receiveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return;
         }
+        String chatId = chatMessage.getChatId();
+        List<String> userIds = chatService.getMemberIds(chatId);
+        chatMessageService.queueChatMessage(chatMessage);
+        long persisted = System.nanoTime();
+        persistTimer.record(persisted - start, TimeUnit.NANOSECONDS);
+        log.debug("Message {} sent to chat {} with {} members", chatMessage.getMessageId(), chatId, userIds.size());
 
-        for (UserDto user : users) {
-            String userId = user.getUserId();
-
-            messagingTemplate.convertAndSendToUser(
-                    userId,
-                    "/" + userId,
-                    message
-            );
+        TypedWebSocketMessage message = new TypedWebSocketMessage(MessageType.CHAT_MESSAGE, chatMessage);
+        SerializedMessage serializedMessage = null;
+        for (String userId : userIds) {
+            if (presenceService.isOnline(userId)) {
+                if (serializedMessage == null) {
+                    serializedMessage = clusterMessagingService.serialize(message);
+                }
+                clusterMessagingService.sendToUser(userId, serializedMessage);
+            } else {
+                offlineOutboxService.enqueue(userId, MessageType.CHAT_MESSAGE, chatMessage);
+            }
         }
+        long end = System.nanoTime();
+        fanOutTimer.record(end - persisted, TimeUnit.NANOSECONDS);
+        receiveTimer.record(end - start, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -128,7 +187,7 @@ public class ChatController {
      * @param messageId id of message
      * @param page the page number for pagination, default is 0.
      * @param size the size of each page, default is 10.
-     * @return a ResponseEntity containing a message
+     * @return a ResponseEntity containing a message, or bad request if the message does not exist
      */
     @GetMapping("/messages/{chatId}/before/{messageId}")
     public ResponseEntity<Page<ChatMessage>> getOlderMessages(
@@ -137,7 +196,43 @@ public class ChatController {
             @RequestParam(defaultValue = "1") final int page,
             @RequestParam(defaultValue = "10") final int size) {
 
-        Page<ChatMessage> messages = chatMessageService.getChatMessagesBefore(chatId, messageId, page, size);
-        return ResponseEntity.ok(messages);
+        try {
+            return ResponseEntity.ok(chatMessageService.getChatMessagesBefore(chatId, messageId, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Keyset-paginated message history, newest first.
+     *
+     * @param chatId id of chat
+     * @param cursor cursor returned with the previous slice; omit to start from the newest message
+     * @param before id of the oldest message the client already has, used when there is no cursor
+     * @param size the size of the slice, default is 20.
+     * @return a ResponseEntity containing the slice and the cursor of the next one
+     */
+    @GetMapping("/messages/{chatId}/history")
+    public ResponseEntity<ChatMessageSliceDto> getMessageHistory(
+            @PathVariable final String chatId,
+            @RequestParam(required = false) final String cursor,
+            @RequestParam(required = false) final String before,
+            @RequestParam(defaultValue = "20") final int size) {
+        final int maxSize = 100;
+        if (size < 1 || size > maxSize) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(chatMessageService.getChatHistory(chatId, cursor, before, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static Timer stageTimer(final String stage, final MeterRegistry meterRegistry) {
+        return Timer.builder("chat.message")
+                .description("Time spent handling an incoming chat message, by stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
     }
 }
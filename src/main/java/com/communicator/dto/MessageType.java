@@ -3,8 +3,10 @@ package com.communicator.dto;
 public enum MessageType {
     CHAT_MESSAGE,
     ACTIVITY_STATUS_UPDATE,
+    ACTIVITY_STATUS_UPDATES,
     ALL_CHATS,
     NEW_CHAT,
-    LAST_MESSAGES
+    LAST_MESSAGES,
+    UNDELIVERED_MESSAGES
 
 }
@@ -2,12 +2,12 @@ package com.communicator.dto;
 
 import lombok.Getter;
 import lombok.Setter;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 @Getter
 @Setter
 public class SearchResultDto {
 
-    private Page<SearchUserResults> results;
+    private Slice<SearchUserResults> results;
     private String message;
 }
@@ -1,16 +1,51 @@
 package com.communicator.dto;
 
-import lombok.AllArgsConstructor;
+import com.communicator.entity.DefaultPhoto;
 import lombok.Getter;
 import lombok.Setter;
 
+/**
+ * Chat member embedded in chat rooms. The default photo is stored as a missing field, see
+ * {@link DefaultPhoto}.
+ */
 @Getter
 @Setter
-@AllArgsConstructor
 public class UserDto {
     private String userId;
     private String firstName;
     private String lastName;
-    private String photo = "https://img.freepik.com/premium-vector/illustration-persons-face-outline-icon-symbolizing"
-            + "-anonymity_1171540-20820.jpg";
+    private String photo;
+
+    /**
+     * Creates a member.
+     *
+     * @param userId user's phone number
+     * @param firstName first name
+     * @param lastName last name
+     * @param photo photo URL, the default photo may be passed as the URL or null
+     */
+    public UserDto(final String userId, final String firstName, final String lastName, final String photo) {
+        this.userId = userId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.photo = DefaultPhoto.compact(photo);
+    }
+
+    /**
+     * Photo URL, the default photo if none was set.
+     *
+     * @return photo URL
+     */
+    public String getPhoto() {
+        return DefaultPhoto.orDefault(photo);
+    }
+
+    /**
+     * Sets the photo. The default photo is stored as a missing field, see {@link DefaultPhoto}.
+     *
+     * @param photoUrl photo URL
+     */
+    public void setPhoto(final String photoUrl) {
+        this.photo = DefaultPhoto.compact(photoUrl);
+    }
 }
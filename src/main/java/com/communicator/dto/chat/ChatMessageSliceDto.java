@@ -0,0 +1,16 @@
+package com.communicator.dto.chat;
+
+import com.communicator.entity.chat.ChatMessage;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Slice of a chat's message history, newest first.
+ *
+ * @param results messages of this slice
+ * @param nextCursor cursor of the next, older slice or null if there are no older messages
+ */
+public record ChatMessageSliceDto(
+        Slice<ChatMessage> results,
+        String nextCursor
+) {
+}
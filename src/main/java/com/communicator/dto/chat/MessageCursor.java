@@ -0,0 +1,43 @@
+package com.communicator.dto.chat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position in a chat's message history, ordered by timestamp and message id.
+ * Clients receive it as an opaque string and pass it back to get the next slice.
+ *
+ * @param timestamp timestamp of the last message returned
+ * @param messageId id of the last message returned
+ */
+public record MessageCursor(
+        Instant timestamp,
+        String messageId
+) {
+
+    /**
+     * Encodes the cursor into an opaque, URL safe string.
+     * @return encoded cursor
+     */
+    public String encode() {
+        String raw = timestamp.toEpochMilli() + ":" + messageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor created by {@link #encode()}.
+     * @param cursor encoded cursor
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static MessageCursor decode(final String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = raw.indexOf(':');
+        if (separator <= 0 || separator == raw.length() - 1) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        return new MessageCursor(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))),
+                raw.substring(separator + 1));
+    }
+}
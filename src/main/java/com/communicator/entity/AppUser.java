@@ -1,21 +1,19 @@
 package com.communicator.entity;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.data.mongodb.core.mapping.DocumentReference;
 import org.springframework.data.mongodb.core.mapping.Field;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -55,33 +53,31 @@ public class AppUser implements UserDetails {
     private String verificationCode;
     private String passwordResetCode;
 
-    private String photo = "https://img.freepik.com/premium-vector/illustration-persons-face-outline-icon-symbolizing"
-            + "-anonymity_1171540-20820.jpg";
+    private String photo;
 
     private boolean active = false;
 
-    @ReadOnlyProperty
-    @DocumentReference(lookup = "{'phoneNumber': ?#{#self.phoneNumber}}")
-    @JsonIgnore
-    private List<Token> tokens = new ArrayList<>();
+    private Instant lastSeen;
 
     private List<String> chatIds = new ArrayList<>();
 
 
     /**
-     * Tokens getter.
-     * @return lists of tokens
+     * Photo URL, the default photo if none was set.
+     *
+     * @return photo URL
      */
-    public List<Token> getTokens() {
-        return new ArrayList<>(tokens);
+    public String getPhoto() {
+        return DefaultPhoto.orDefault(photo);
     }
 
     /**
-     * Tokens setter.
-     * @param tokensList
+     * Sets the photo. The default photo is stored as a missing field, see {@link DefaultPhoto}.
+     *
+     * @param photoUrl photo URL
      */
-    public void setTokens(final List<Token> tokensList) {
-        this.tokens = new ArrayList<>(tokensList);
+    public void setPhoto(final String photoUrl) {
+        this.photo = DefaultPhoto.compact(photoUrl);
     }
 
     /**
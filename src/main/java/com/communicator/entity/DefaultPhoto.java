@@ -0,0 +1,41 @@
+package com.communicator.entity;
+
+/**
+ * Default photo of users and chats.
+ *
+ * <p>The default photo is not stored: a missing {@code photo} field stands for it, so the URL is
+ * neither repeated in every embedded chat member nor decoded into a new string for every
+ * document read. Entities keep {@code null} in the field and resolve it in their getters, so
+ * clients still receive the URL.</p>
+ */
+public final class DefaultPhoto {
+
+    /**
+     * URL of the default photo.
+     */
+    public static final String URL = "https://img.freepik.com/premium-vector/illustration-persons-face-outline-icon"
+            + "-symbolizing-anonymity_1171540-20820.jpg";
+
+    private DefaultPhoto() {
+    }
+
+    /**
+     * Value to store for a photo.
+     *
+     * @param photo photo URL, may be null
+     * @return null for the default photo, the URL otherwise
+     */
+    public static String compact(final String photo) {
+        return URL.equals(photo) ? null : photo;
+    }
+
+    /**
+     * Photo URL to show for a stored value.
+     *
+     * @param photo stored value, may be null
+     * @return the default photo URL for null, the stored URL otherwise
+     */
+    public static String orDefault(final String photo) {
+        return photo == null ? URL : photo;
+    }
+}
@@ -0,0 +1,31 @@
+package com.communicator.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+/**
+ * Entity class to map database token revocations collection. {@code generation} counts the
+ * user's logouts; every access token carrying a lower generation is rejected. {@code relevantUntil}
+ * tells when the last token issued or rejected with this counter expires; a TTL index deletes the
+ * document then.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document("token_revocations")
+public class TokenRevocation {
+
+    @Id
+    @Field("phone_number")
+    private String phoneNumber;
+    private long generation;
+    @Indexed(expireAfterSeconds = 0)
+    private Instant relevantUntil;
+}
@@ -2,6 +2,7 @@ package com.communicator.entity.chat;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -16,6 +17,7 @@ import java.time.Instant;
 @NoArgsConstructor
 @Builder
 @Document
+@CompoundIndex(name = "chatId_timestamp_id", def = "{ 'chatId': 1, 'timestamp': -1, '_id': -1 }")
 public class ChatMessage {
 
     @Id
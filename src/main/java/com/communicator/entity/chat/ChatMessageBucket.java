@@ -0,0 +1,47 @@
+package com.communicator.entity.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Messages of one chat sent within one time window, oldest first.
+ *
+ * <p>A window holds as many buckets as it needs to stay under the size limit. Only the newest
+ * bucket of a window is {@code open} for appends, which keeps every bucket's messages older than
+ * those of the buckets started after it; a unique index makes sure there is never more than one.
+ * The header fields let readers pick the buckets they need without loading their messages.</p>
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Document("chat_message_buckets")
+@CompoundIndexes({
+        @CompoundIndex(name = "chatId_start_minTimestamp", def = "{ 'chatId': 1, 'start': -1, 'minTimestamp': -1 }"),
+        @CompoundIndex(name = "messages_id", def = "{ 'messages._id': 1 }"),
+        @CompoundIndex(name = "chatId_start_open", def = "{ 'chatId': 1, 'start': 1 }", unique = true,
+                partialFilter = "{ 'open': true }")
+})
+public class ChatMessageBucket {
+
+    @Id
+    private String id;
+    private String chatId;
+    private Instant start;
+    private Instant minTimestamp;
+    private Instant maxTimestamp;
+    private int count;
+    private boolean open;
+    private List<ChatMessage> messages;
+}
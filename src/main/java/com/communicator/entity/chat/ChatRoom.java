@@ -1,16 +1,20 @@
 package com.communicator.entity.chat;
 
 import com.communicator.dto.UserDto;
+import com.communicator.entity.DefaultPhoto;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.List;
 
 @Getter
 @Setter
 @Document("chats")
+@CompoundIndex(name = "users_userId_lastMessage_timestamp",
+        def = "{ 'users.userId': 1, 'lastMessage.timestamp': -1 }")
 @NoArgsConstructor
 public class ChatRoom {
 
@@ -19,10 +23,27 @@ public class ChatRoom {
 
     private List<UserDto> users;
 
-    private String photo = "https://img.freepik.com/premium-vector/illustration-persons-face-outline-icon-symbolizing"
-            + "-anonymity_1171540-20820.jpg";
+    private String photo;
 
     private boolean active;
 
     private ChatMessage lastMessage;
+
+    /**
+     * Photo URL, the default photo if none was set.
+     *
+     * @return photo URL
+     */
+    public String getPhoto() {
+        return DefaultPhoto.orDefault(photo);
+    }
+
+    /**
+     * Sets the photo. The default photo is stored as a missing field, see {@link DefaultPhoto}.
+     *
+     * @param photoUrl photo URL
+     */
+    public void setPhoto(final String photoUrl) {
+        this.photo = DefaultPhoto.compact(photoUrl);
+    }
 }
@@ -1,6 +1,7 @@
 package com.communicator.entity.chat;
 
 import com.communicator.dto.UserDto;
+import com.communicator.entity.DefaultPhoto;
 import lombok.Getter;
 import lombok.Setter;
 import java.util.List;
@@ -12,7 +13,6 @@ public class ChatsDTO {
     private String chatId;
     private List<UserDto> users;
     private boolean active = true;
-    private String photo = "https://img.freepik.com/premium-vector/illustration-persons-face-outline-icon-symbolizing"
-            + "-anonymity_1171540-20820.jpg";
+    private String photo = DefaultPhoto.URL;
     private LastMessageDto message;
 }
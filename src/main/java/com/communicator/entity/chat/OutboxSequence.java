@@ -0,0 +1,21 @@
+package com.communicator.entity.chat;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Last sequence number handed out to a user's undelivered messages.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Document("outbox_sequences")
+public class OutboxSequence {
+
+    @Id
+    private String userId;
+    private long sequence;
+}
@@ -3,20 +3,27 @@ package com.communicator.entity.chat;
 import lombok.Builder;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 /**
  *Undelivered message class for safe messages to send when user reconnect to app.
- *
+ *Every entry gets the next sequence number of its recipient and is kept until the recipient
+ *acknowledges that sequence.
  */
 @Data
 @Builder
 @Document
+@CompoundIndex(name = "userId_sequence", def = "{ 'userId': 1, 'sequence': 1 }", unique = true)
 public class UndeliveredMessage {
     @Id
     private String id;
     private String userId;
-    private ChatRoom payload;
+    private long sequence;
+    private Object payload;
     private String type;
+    private Instant createdAt;
 }
 
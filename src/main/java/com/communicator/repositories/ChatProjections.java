@@ -0,0 +1,31 @@
+package com.communicator.repositories;
+
+/**
+ * Field projections for reading chat rooms.
+ *
+ * <p>Read paths that only need part of a chat load only those fields instead of the whole
+ * document with every member and the full last message. Fields left out keep their defaults in
+ * the mapped {@link com.communicator.entity.chat.ChatRoom}, so a projected room must not be
+ * saved back.</p>
+ */
+public final class ChatProjections {
+
+    /**
+     * Member ids only, for fan-out and the contact graph.
+     */
+    public static final String MEMBERS = "{ 'users.userId': 1 }";
+
+    /**
+     * Members, for listing chat partners.
+     */
+    public static final String USERS = "{ 'users': 1 }";
+
+    /**
+     * Everything a {@link com.communicator.dto.chat.ChatPreview} shows.
+     */
+    public static final String PREVIEW = "{ 'users': 1, 'active': 1, 'photo': 1, 'lastMessage._id': 1,"
+            + " 'lastMessage.content': 1, 'lastMessage.senderId': 1, 'lastMessage.timestamp': 1 }";
+
+    private ChatProjections() {
+    }
+}
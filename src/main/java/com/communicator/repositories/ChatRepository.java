@@ -28,12 +28,28 @@ public interface ChatRepository extends MongoRepository<ChatRoom, String> {
     @Query("{ '_id': ?0 }")
     Optional<ChatRoom> findByChatId(String chatId);
 
+    /**
+     * Finding chat members by chat id.
+     * @param chatId chat's id
+     * @return chat with only its member ids loaded
+     */
+    @Query(value = "{ '_id': ?0 }", fields = ChatProjections.MEMBERS)
+    Optional<ChatRoom> findMembersById(String chatId);
+
+    /**
+     * Finding chat users by chat id.
+     * @param chatId chat's id
+     * @return chat with only its members loaded
+     */
+    @Query(value = "{ '_id': ?0 }", fields = ChatProjections.USERS)
+    Optional<ChatRoom> findUsersById(String chatId);
+
     /**
      * Method to get chats with dynamic query.
      * @param userId user id
-     * @return - all results that match the query
+     * @return - all results that match the query, with only their members loaded
      */
-    @Query("{ 'users.userId': ?0 }")
+    @Query(value = "{ 'users.userId': ?0 }", fields = ChatProjections.USERS)
     List<ChatRoom> findByUserId(String userId);
 
     /**
@@ -49,8 +65,18 @@ public interface ChatRepository extends MongoRepository<ChatRoom, String> {
     /**
      * Method to get chats with dynamic query limited to ten.
      * @param userId user id
-     * @return - all results that match the query
+     * @return - all results that match the query, with only their preview fields loaded
      */
-    @Query("{ 'users.userId': ?0 }")
+    @Query(value = "{ 'users.userId': ?0 }", fields = ChatProjections.PREVIEW)
     List<ChatRoom> findTop10ByUserId(String userId);
+
+    /**
+     * Method to get the user's chats with the most recent activity first.
+     * @param userId user id
+     * @param pageable number of chats to return
+     * @return chats ordered by the timestamp of their last message, with only their preview fields loaded
+     */
+    @Query(value = "{ 'users.userId': ?0 }", fields = ChatProjections.PREVIEW,
+            sort = "{ 'lastMessage.timestamp': -1 }")
+    List<ChatRoom> findRecentByUserId(String userId, Pageable pageable);
 }
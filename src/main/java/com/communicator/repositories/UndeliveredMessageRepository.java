@@ -1,6 +1,7 @@
 package com.communicator.repositories;
 
 import com.communicator.entity.chat.UndeliveredMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.List;
 
@@ -16,6 +17,17 @@ public interface UndeliveredMessageRepository extends MongoRepository<Undelivere
      */
     List<UndeliveredMessage> findByUserId(String userId);
 
+    /**
+     * Page of messages the user has not acknowledged yet, oldest first. Returning a list instead
+     * of a page avoids the count query.
+     * @param userId - user's id
+     * @param sequence - last acknowledged sequence
+     * @param pageable - page size
+     * @return list of undelivered messages
+     */
+    List<UndeliveredMessage> findByUserIdAndSequenceGreaterThanOrderBySequenceAsc(String userId, long sequence,
+                                                                                 Pageable pageable);
+
     /**
      * Deleting old messages.
      * @param userId - user's id
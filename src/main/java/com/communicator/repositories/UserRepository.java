@@ -1,8 +1,6 @@
 package com.communicator.repositories;
 
 import com.communicator.entity.AppUser;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
@@ -29,25 +27,6 @@ public interface UserRepository extends MongoRepository<AppUser, String> {
      */
     Optional<AppUser> findByEmail(String email);
 
-    /**
-     * Method to get users with dynamic query.
-     * @param query - query from the client
-     * @param pageable - {@link Pageable} interface to enable pagination
-     * @return - all results that match the query
-     */
-    @Query("{ $and: ["
-            + "{ 'validated': true }, "
-            + "{ $or: ["
-            + "{ '_id': { $regex: '^?0', $options: 'i' } }, "
-            + "{ $or: [ "
-            + "{ 'first_name': { $regex: '^?0', $options: 'i' } }, "
-            + "{ 'last_name': { $regex: '^?0', $options: 'i' } } "
-            + "] }"
-            + "] }"
-            + "] }")
-    Page<AppUser> searchUsers(String query, Pageable pageable);
-
-
     /**
      * Gets users by their phone numbers.
      * @param ids - users ids
@@ -0,0 +1,18 @@
+package com.communicator.repositories.reactive;
+
+import com.communicator.entity.chat.ChatMessage;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reactive repository with chat messages.
+ */
+public interface ReactiveChatMessageRepository extends ReactiveMongoRepository<ChatMessage, String> {
+
+    /**
+     * Method to get 20 last messages.
+     * @param chatId id of chat
+     * @return last messages, newest first
+     */
+    Flux<ChatMessage> findTop20ByChatIdOrderByTimestampDesc(String chatId);
+}
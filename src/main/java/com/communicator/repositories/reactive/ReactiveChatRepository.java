@@ -0,0 +1,33 @@
+package com.communicator.repositories.reactive;
+
+import com.communicator.entity.chat.ChatRoom;
+import com.communicator.repositories.ChatProjections;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive repository with chat rooms.
+ */
+public interface ReactiveChatRepository extends ReactiveMongoRepository<ChatRoom, String> {
+
+    /**
+     * Finding chat members by chat id.
+     * @param chatId chat's id
+     * @return chat with only its member ids loaded
+     */
+    @Query(value = "{ '_id': ?0 }", fields = ChatProjections.MEMBERS)
+    Mono<ChatRoom> findMembersById(String chatId);
+
+    /**
+     * Method to get the user's chats with the most recent activity first.
+     * @param userId user id
+     * @param pageable number of chats to return
+     * @return chats ordered by the timestamp of their last message, with only their preview fields loaded
+     */
+    @Query(value = "{ 'users.userId': ?0 }", fields = ChatProjections.PREVIEW,
+            sort = "{ 'lastMessage.timestamp': -1 }")
+    Flux<ChatRoom> findRecentByUserId(String userId, Pageable pageable);
+}
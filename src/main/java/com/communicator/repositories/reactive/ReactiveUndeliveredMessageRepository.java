@@ -0,0 +1,22 @@
+package com.communicator.repositories.reactive;
+
+import com.communicator.entity.chat.UndeliveredMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reactive repository with undelivered messages.
+ */
+public interface ReactiveUndeliveredMessageRepository extends ReactiveMongoRepository<UndeliveredMessage, String> {
+
+    /**
+     * Page of messages the user has not acknowledged yet, oldest first.
+     * @param userId - user's id
+     * @param sequence - last acknowledged sequence
+     * @param pageable - page size
+     * @return undelivered messages
+     */
+    Flux<UndeliveredMessage> findByUserIdAndSequenceGreaterThanOrderBySequenceAsc(String userId, long sequence,
+                                                                                 Pageable pageable);
+}
@@ -0,0 +1,4 @@
+/**
+ * Reactive counterparts of the repositories used on the message path.
+ */
+package com.communicator.repositories.reactive;
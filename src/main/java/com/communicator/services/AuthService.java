@@ -9,8 +9,6 @@ import com.communicator.dto.auth.UserCreationResponse;
 import com.communicator.dto.auth.UserLoginDto;
 import com.communicator.dto.auth.RequestResponse;
 import com.communicator.entity.AppUser;
-import com.communicator.entity.Token;
-import com.communicator.repositories.TokenRepository;
 import com.communicator.repositories.UserRepository;
 import com.communicator.services.utils.EmailService;
 import com.communicator.services.utils.JWTUtils;
@@ -46,9 +44,11 @@ public class AuthService {
     @Autowired
     private AuthenticationManager authenticationManager;
     @Autowired
-    private TokenRepository tokenRepository;
-    @Autowired
     private EmailService emailService;
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
 
 
     /**
@@ -132,20 +132,13 @@ public class AuthService {
         AppUser appUser = request.getEmail() == null
                 ? userRepository.findByPhoneNumber(request.getPhoneNumber()).orElseThrow()
                 : userRepository.findByEmail(request.getEmail()).orElseThrow();
-        String accessToken = jwtUtils.generateAccessToken(appUser);
-        saveUserToken(accessToken, appUser);
+        String accessToken = jwtUtils.generateAccessToken(appUser,
+                tokenRevocationService.currentGeneration(appUser.getPhoneNumber()));
 
         return ResponseEntity.ok().body(new AuthenticationResponse(accessToken, appUser.isValidated(),
                 appUser.getFirstName(), appUser.getLastName()));
     }
 
-    private void saveUserToken(final String jwt, final AppUser appUser) {
-        Token token = new Token();
-        token.setToken(jwt);
-        token.setPhoneNumber(appUser.getPhoneNumber());
-        tokenRepository.save(token);
-    }
-
     /**
      * Method for sending a verification email.
      *
@@ -244,7 +237,7 @@ public class AuthService {
         validationResponse.setMessage("Verification was successful!");
         appUser.setValidated(true);
         appUser.setVerificationCode(null);
-        userRepository.save(appUser);
+        userSearchIndex.add(userRepository.save(appUser));
         return ResponseEntity.ok().body(validationResponse);
     }
 
@@ -0,0 +1,155 @@
+package com.communicator.services;
+
+import com.communicator.entity.TokenRevocation;
+import com.communicator.services.cluster.ClusterEvent;
+import com.communicator.services.cluster.ClusterEventBus;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service revoking access tokens by per-user generation.
+ *
+ * <p>Every access token carries the user's generation from the time it was issued, a counter
+ * stored in Mongo and incremented on every logout. A token is revoked when its generation is
+ * lower than the user's current one, which rejects every token issued before the logout with one
+ * atomic increment instead of loading and deleting token documents, and does not depend on the
+ * clocks of the nodes. Generations are kept in memory, so checking a token on the request path is
+ * a single map lookup; an entry is dropped once every token it could reject has expired, after
+ * which all remaining tokens of the user carry the current generation anyway. A logout is
+ * published on the {@link ClusterEventBus}, so every node rejects the revoked tokens.</p>
+ *
+ * <p>Issuing a token keeps the user's counter until that token expires, and a TTL index deletes
+ * the counter afterwards. By then no valid token carries a generation, so the counter can start
+ * over from 0 without letting an old token through.</p>
+ */
+@Service
+@Slf4j
+public class TokenRevocationService {
+
+    private static final FindAndModifyOptions INCREMENT_OPTIONS =
+            FindAndModifyOptions.options().returnNew(true).upsert(true);
+    private static final FindAndModifyOptions EXTEND_OPTIONS = FindAndModifyOptions.options().returnNew(true);
+
+    private final MongoTemplate mongoTemplate;
+    private final ClusterEventBus clusterEventBus;
+    private final long accessTokenExpiration;
+    private final Map<String, TokenRevocation> revocations = new ConcurrentHashMap<>();
+    private volatile int sizeAfterLastPrune;
+
+    /**
+     * Creates the service.
+     *
+     * @param mongoTemplateBean template holding the generations
+     * @param clusterEventBusBean bus sharing logouts with the other nodes
+     * @param accessTokenExpirationProp lifetime of access tokens in milliseconds
+     */
+    public TokenRevocationService(final MongoTemplate mongoTemplateBean,
+                                  final ClusterEventBus clusterEventBusBean,
+                                  @Value("${application.security.jwt.access-token-expiration}")
+                                  final long accessTokenExpirationProp) {
+        this.mongoTemplate = mongoTemplateBean;
+        this.clusterEventBus = clusterEventBusBean;
+        this.accessTokenExpiration = accessTokenExpirationProp;
+    }
+
+    /**
+     * Loads generations that are still relevant and starts applying logouts of the other nodes.
+     */
+    @PostConstruct
+    public void init() {
+        clusterEventBus.listen(Revoked.class, event ->
+                apply(new TokenRevocation(event.phoneNumber(), event.generation(), event.relevantUntil())));
+        for (TokenRevocation revocation : mongoTemplate.find(
+                Query.query(Criteria.where("relevantUntil").gt(Instant.now())), TokenRevocation.class)) {
+            revocations.put(revocation.getPhoneNumber(), revocation);
+        }
+        sizeAfterLastPrune = revocations.size();
+        log.info("Loaded {} token revocations", revocations.size());
+    }
+
+    /**
+     * Generation to put into a new access token of the user. The user's counter is kept at least
+     * until the token expires.
+     *
+     * @param phoneNumber user's phone number
+     * @return current generation, 0 if the user has no counter
+     */
+    public long currentGeneration(final String phoneNumber) {
+        TokenRevocation revocation = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(phoneNumber)),
+                new Update().max("relevantUntil", Instant.now().plusMillis(accessTokenExpiration)),
+                EXTEND_OPTIONS, TokenRevocation.class);
+        return revocation == null ? 0 : revocation.getGeneration();
+    }
+
+    /**
+     * Checks if a token was revoked.
+     *
+     * @param phoneNumber token subject
+     * @param generation generation of the token, see
+     *                   {@link com.communicator.services.utils.JWTUtils#extractGeneration}
+     * @return true if the user logged out after the token was issued
+     */
+    public boolean isRevoked(final String phoneNumber, final long generation) {
+        TokenRevocation revocation = revocations.get(phoneNumber);
+        return revocation != null && generation < revocation.getGeneration();
+    }
+
+    /**
+     * Revokes all tokens of the user issued until now.
+     *
+     * @param phoneNumber user's phone number
+     * @return the revocation that was stored
+     */
+    public TokenRevocation revokeAll(final String phoneNumber) {
+        Instant relevantUntil = Instant.now().plusMillis(accessTokenExpiration);
+        TokenRevocation revocation = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(phoneNumber)),
+                new Update().inc("generation", 1).set("relevantUntil", relevantUntil),
+                INCREMENT_OPTIONS, TokenRevocation.class);
+        apply(revocation);
+        clusterEventBus.publish(new Revoked(revocation.getPhoneNumber(), revocation.getGeneration(),
+                revocation.getRelevantUntil()));
+        return revocation;
+    }
+
+    /**
+     * Applies a revocation stored by this or another node. Applying an older generation than the
+     * one known has no effect.
+     *
+     * @param revocation stored revocation
+     */
+    public void apply(final TokenRevocation revocation) {
+        revocations.merge(revocation.getPhoneNumber(), revocation,
+                (known, next) -> next.getGeneration() >= known.getGeneration() ? next : known);
+        if (revocations.size() > 2 * sizeAfterLastPrune) {
+            prune(Instant.now());
+        }
+    }
+
+    private void prune(final Instant now) {
+        revocations.values().removeIf(revocation -> !revocation.getRelevantUntil().isAfter(now));
+        sizeAfterLastPrune = Math.max(revocations.size(), 1);
+    }
+
+    /**
+     * Logout published to the other nodes.
+     *
+     * @param phoneNumber user's phone number
+     * @param generation generation after the logout
+     * @param relevantUntil when the last token it rejects expires
+     */
+    public record Revoked(String phoneNumber, long generation, Instant relevantUntil) implements ClusterEvent {
+    }
+}
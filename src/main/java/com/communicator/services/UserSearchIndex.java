@@ -0,0 +1,228 @@
+package com.communicator.services;
+
+import com.communicator.dto.SearchUserResults;
+import com.communicator.entity.AppUser;
+import com.communicator.services.cluster.ClusterEvent;
+import com.communicator.services.cluster.ClusterEventBus;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory typeahead index of validated users.
+ *
+ * <p>Every user is indexed under normalized keys: lowercased, with diacritics folded and
+ * separators collapsed, for each part of their first and last name, both full-name orders and the
+ * digits of their phone number. Keys live in a sorted map, so a prefix lookup is a range scan
+ * that never touches Mongo. Results are ranked by how well the query matches: exact keys before
+ * prefixes, first names before last names, names before phone numbers. The index is built from
+ * the users collection on first use and then kept up to date by {@link AuthService} when a user
+ * gets validated, on this node directly and on the others through the {@link ClusterEventBus}.</p>
+ */
+@Component
+@Slf4j
+public class UserSearchIndex {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final char MAX_CHAR = '\uffff';
+    private static final int MAX_CANDIDATES = 1000;
+
+    private static final int FIRST_NAME = 0;
+    private static final int LAST_NAME = 1;
+    private static final int FULL_NAME = 2;
+    private static final int PHONE_NUMBER = 3;
+    private static final int PREFIX_PENALTY = 4;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[\\s\\-\\u0000\\uffff]+");
+    private static final Pattern PHONE_QUERY = Pattern.compile("^\\+?[\\d\\s().-]*\\d[\\d\\s().-]*$");
+    private static final Pattern NON_DIGITS = Pattern.compile("\\D");
+
+    private final MongoTemplate mongoTemplate;
+    private final ClusterEventBus clusterEventBus;
+    private final NavigableMap<String, Integer> keys = new ConcurrentSkipListMap<>();
+    private final Map<String, SearchUserResults> users = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param mongoTemplateBean template used to load the users on first use
+     * @param clusterEventBusBean bus sharing indexed users with the other nodes
+     */
+    public UserSearchIndex(final MongoTemplate mongoTemplateBean, final ClusterEventBus clusterEventBusBean) {
+        this.mongoTemplate = mongoTemplateBean;
+        this.clusterEventBus = clusterEventBusBean;
+    }
+
+    /**
+     * Starts indexing users validated on other nodes.
+     */
+    @PostConstruct
+    public void listenToCluster() {
+        clusterEventBus.listen(UserIndexed.class, event -> indexIfLoaded(event.user()));
+    }
+
+    /**
+     * Finds users whose name or phone number starts with the query.
+     *
+     * @param query text typed by the client
+     * @param page results page number
+     * @param size page size
+     * @return ranked slice of matching users, without a total count
+     */
+    public Slice<SearchUserResults> search(final String query, final int page, final int size) {
+        ensureLoaded();
+        PageRequest pageable = PageRequest.of(page, size);
+        String prefix = normalizeQuery(query);
+        if (prefix.isEmpty()) {
+            return new SliceImpl<>(List.of(), pageable, false);
+        }
+
+        Map<String, Integer> scores = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : keys.subMap(prefix, true, prefix + MAX_CHAR, false).entrySet()) {
+            String key = entry.getKey();
+            int separator = key.indexOf(KEY_SEPARATOR);
+            int score = entry.getValue() + (separator == prefix.length() ? 0 : PREFIX_PENALTY);
+            scores.merge(key.substring(separator + 1), score, Math::min);
+            if (scores.size() >= MAX_CANDIDATES) {
+                break;
+            }
+        }
+
+        List<SearchUserResults> ranked = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue()
+                        .thenComparing(Map.Entry::getKey, Comparator.comparing(this::sortName)))
+                .skip(pageable.getOffset())
+                .limit(size + 1L)
+                .map(entry -> users.get(entry.getKey()))
+                .toList();
+        boolean hasNext = ranked.size() > size;
+        return new SliceImpl<>(hasNext ? ranked.subList(0, size) : ranked, pageable, hasNext);
+    }
+
+    /**
+     * Adds a validated user to the index or refreshes their keys. Users that are not validated
+     * are not searchable and are ignored.
+     *
+     * @param appUser saved user
+     */
+    public void add(final AppUser appUser) {
+        ensureLoaded();
+        if (appUser.isValidated()) {
+            SearchUserResults user = new SearchUserResults(appUser.getPhoneNumber(), appUser.getFirstName(),
+                    appUser.getLastName(), appUser.getPhoto());
+            index(user);
+            clusterEventBus.publish(new UserIndexed(user));
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        Query query = Query.query(Criteria.where("validated").is(true));
+        query.fields().include("firstName", "lastName", "photo");
+        try (Stream<AppUser> appUsers = mongoTemplate.stream(query, AppUser.class)) {
+            appUsers.forEach(appUser -> index(new SearchUserResults(appUser.getPhoneNumber(),
+                    appUser.getFirstName(), appUser.getLastName(), appUser.getPhoto())));
+        }
+        loaded = true;
+        log.info("User search index built for {} users with {} keys", users.size(), keys.size());
+    }
+
+    private synchronized void indexIfLoaded(final SearchUserResults user) {
+        // An index that is not built yet reads the user from the database when it is.
+        if (loaded) {
+            index(user);
+        }
+    }
+
+    private synchronized void index(final SearchUserResults user) {
+        SearchUserResults previous = users.put(user.userId(), user);
+        if (previous != null) {
+            keysOf(previous).keySet().forEach(keys::remove);
+        }
+        keys.putAll(keysOf(user));
+    }
+
+    private static Map<String, Integer> keysOf(final SearchUserResults user) {
+        Map<String, Integer> userKeys = new HashMap<>();
+        String suffix = KEY_SEPARATOR + user.userId();
+        String firstName = normalizeName(user.firstName());
+        String lastName = normalizeName(user.lastName());
+        for (String part : firstName.split(" ")) {
+            userKeys.merge(part + suffix, FIRST_NAME, Math::min);
+        }
+        for (String part : lastName.split(" ")) {
+            userKeys.merge(part + suffix, LAST_NAME, Math::min);
+        }
+        userKeys.merge(firstName + " " + lastName + suffix, FULL_NAME, Math::min);
+        userKeys.merge(lastName + " " + firstName + suffix, FULL_NAME, Math::min);
+        userKeys.merge(NON_DIGITS.matcher(user.userId()).replaceAll("") + suffix, PHONE_NUMBER, Math::min);
+        userKeys.keySet().removeIf(key -> key.charAt(0) == KEY_SEPARATOR);
+        return userKeys;
+    }
+
+    private String sortName(final String userId) {
+        SearchUserResults user = users.get(userId);
+        return normalizeName(user.lastName()) + " " + normalizeName(user.firstName());
+    }
+
+    private static String normalizeQuery(final String query) {
+        if (query == null) {
+            return "";
+        }
+        if (PHONE_QUERY.matcher(query).matches()) {
+            return NON_DIGITS.matcher(query).replaceAll("");
+        }
+        return normalizeName(query);
+    }
+
+    /**
+     * Lowercases the text, folds diacritics and collapses separators into single spaces.
+     *
+     * @param text name or query
+     * @return normalized text, empty for null
+     */
+    static String normalizeName(final String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        folded = folded.toLowerCase(Locale.ROOT).replace('ł', 'l');
+        return SEPARATORS.matcher(folded).replaceAll(" ").trim();
+    }
+
+    /**
+     * User validated or changed on another node.
+     *
+     * @param user searchable data of the user
+     */
+    public record UserIndexed(SearchUserResults user) implements ClusterEvent {
+    }
+}
@@ -5,10 +5,7 @@ import com.communicator.entity.AppUser;
 import com.communicator.repositories.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -16,7 +13,6 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service class for handling User data.
@@ -31,13 +27,15 @@ public class UserService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
     /**
      * Service method to call repository method that gets user by their's phone number.
      * @param phoneNumber - User's phone number passed from request url variable
      * @return - return User class object
      */
     public AppUser findByPhoneNumber(final String phoneNumber) {
-        log.warn(phoneNumber);
         return userRepository.findByPhoneNumber(phoneNumber).orElse(null);
     }
 
@@ -76,32 +74,14 @@ public class UserService implements UserDetailsService {
     }
 
     /**
-     * Class that gets all matching users from the database.
+     * Finds users whose name or phone number starts with the query.
      * @param query - query from client
      * @param page - results page number
      * @param size - page size
-     * @return - {@link Page} with {@link SearchUserResults} objects
+     * @return - {@link Slice} with ranked {@link SearchUserResults} objects
      */
-    public Page<SearchUserResults> searchUsers(final String query, final int page, final int size) {
-
-        Pageable pageable = PageRequest.of(page, size);
-        Page<AppUser> appUsersPage = userRepository.searchUsers(query, pageable);
-
-        List<SearchUserResults> searchUserResults = appUsersPage.getContent().stream()
-                .map(this::mapToSearchUserResults)
-                .collect(Collectors.toList());
-
-
-        return new PageImpl<>(searchUserResults, pageable, appUsersPage.getTotalElements());
-    }
-
-    private SearchUserResults mapToSearchUserResults(final AppUser appUser) {
-        return new SearchUserResults(
-                appUser.getPhoneNumber(),
-                appUser.getFirstName(),
-                appUser.getLastName(),
-                appUser.getPhoto()
-        );
+    public Slice<SearchUserResults> searchUsers(final String query, final int page, final int size) {
+        return userSearchIndex.search(query, page, size);
     }
 
 }
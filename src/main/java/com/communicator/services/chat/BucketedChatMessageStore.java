@@ -0,0 +1,220 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.chat.MessageCursor;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.entity.chat.ChatMessageBucket;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Packs the messages of a chat into {@link ChatMessageBucket} documents, one or more per time
+ * window.
+ *
+ * <p>New messages are appended with {@code $push} to the open bucket of their window, the newest
+ * one. When it has no room for them it is closed first and the upsert starts the next bucket of
+ * the same window, so messages never go to an older bucket, which the reads below rely on. A
+ * batch becomes one ordered bulk write with one close and one upsert per chat and window, so a
+ * busy chat costs one update per flush instead of one insert per message. Two writers starting
+ * a bucket at once collide on the unique index of open buckets, and the write-behind pipeline
+ * retries the batch.</p>
+ *
+ * <p>Buckets are read newest first until the page is full. The latest page projects only the last
+ * messages of every bucket and is served by one bucket, or two right after a new one was started.
+ * History reads project only the last messages before the cursor out of every bucket that starts
+ * before it, so neither the messages after the cursor nor the older part of a bucket leave the
+ * server.</p>
+ */
+public class BucketedChatMessageStore implements ChatMessageStore {
+
+    private static final Update CLOSE = new Update().set("open", false);
+    private static final Sort BUCKET_ORDER = Sort.by(Sort.Direction.DESC, "start", "minTimestamp");
+
+    private final MongoTemplate mongoTemplate;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final int maxMessages;
+    private final long windowMillis;
+
+    /**
+     * Creates the store.
+     *
+     * @param mongoTemplateBean template used for appends and reads
+     * @param reactiveMongoTemplateBean reactive template used for reads
+     * @param maxMessagesProp maximum number of messages in one bucket
+     * @param windowProp length of the time window of one bucket
+     */
+    public BucketedChatMessageStore(final MongoTemplate mongoTemplateBean,
+                                    final ReactiveMongoTemplate reactiveMongoTemplateBean,
+                                    final int maxMessagesProp,
+                                    final Duration windowProp) {
+        this.mongoTemplate = mongoTemplateBean;
+        this.reactiveMongoTemplate = reactiveMongoTemplateBean;
+        this.maxMessages = maxMessagesProp;
+        this.windowMillis = windowProp.toMillis();
+    }
+
+    @Override
+    public void saveAll(final List<ChatMessage> messages) {
+        Map<BucketKey, List<ChatMessage>> groups = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            groups.computeIfAbsent(new BucketKey(message.getChatId(), windowStart(message.getTimestamp())),
+                    key -> new ArrayList<>()).add(message);
+        }
+
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, ChatMessageBucket.class);
+        groups.forEach((key, group) -> {
+            for (int from = 0; from < group.size(); from += maxMessages) {
+                List<ChatMessage> chunk = group.subList(from, Math.min(group.size(), from + maxMessages));
+                operations.updateOne(fullBucket(key, chunk.size()), CLOSE);
+                operations.upsert(openBucket(key, chunk.size()), append(chunk));
+            }
+        });
+        operations.execute();
+    }
+
+    @Override
+    public void save(final ChatMessage message) {
+        Query stored = Query.query(Criteria.where("messages._id").is(message.getMessageId()));
+        if (!mongoTemplate.exists(stored, ChatMessageBucket.class)) {
+            saveAll(List.of(message));
+        }
+    }
+
+    @Override
+    public Optional<ChatMessage> findById(final String messageId) {
+        Query query = Query.query(Criteria.where("messages._id").is(messageId));
+        query.fields().position("messages", 1);
+        return Optional.ofNullable(mongoTemplate.findOne(query, ChatMessageBucket.class))
+                .flatMap(bucket -> bucket.getMessages().stream().findFirst());
+    }
+
+    @Override
+    public List<ChatMessage> findLastMessages(final String chatId) {
+        return findBefore(chatId, null, LAST_MESSAGES);
+    }
+
+    @Override
+    public Mono<List<ChatMessage>> findLastMessagesReactive(final String chatId) {
+        return Flux.defer(() -> {
+                    AtomicInteger found = new AtomicInteger();
+                    return reactiveMongoTemplate.find(bucketsBefore(chatId, null, LAST_MESSAGES),
+                                    ChatMessageBucket.class)
+                            .takeUntil(bucket -> found.addAndGet(bucket.getMessages().size()) >= LAST_MESSAGES);
+                })
+                .flatMapIterable(ChatMessageBucket::getMessages)
+                .collectSortedList(NEWEST_FIRST)
+                .map(messages -> firstPage(messages, LAST_MESSAGES));
+    }
+
+    @Override
+    public List<ChatMessage> findBefore(final String chatId, final MessageCursor position, final int limit) {
+        List<ChatMessage> page = new ArrayList<>();
+        try (Stream<ChatMessageBucket> buckets = mongoTemplate.stream(bucketsBefore(chatId, position, limit),
+                ChatMessageBucket.class)) {
+            Iterator<ChatMessageBucket> iterator = buckets.iterator();
+            while (page.size() < limit && iterator.hasNext()) {
+                page.addAll(iterator.next().getMessages());
+            }
+        }
+        page.sort(NEWEST_FIRST);
+        return firstPage(page, limit);
+    }
+
+    /**
+     * Start of the time window a message sent at the given time belongs to.
+     *
+     * @param timestamp message timestamp
+     * @return window start
+     */
+    public Instant windowStart(final Instant timestamp) {
+        return Instant.ofEpochMilli(Math.floorDiv(timestamp.toEpochMilli(), windowMillis) * windowMillis);
+    }
+
+    /**
+     * Maximum number of messages in one bucket.
+     *
+     * @return bucket size limit
+     */
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    private Query openBucket(final BucketKey key, final int incoming) {
+        return Query.query(Criteria.where("chatId").is(key.chatId())
+                .and("start").is(key.start())
+                .and("open").is(true)
+                .and("count").lte(maxMessages - incoming));
+    }
+
+    private Query fullBucket(final BucketKey key, final int incoming) {
+        return Query.query(Criteria.where("chatId").is(key.chatId())
+                .and("start").is(key.start())
+                .and("open").is(true)
+                .and("count").gt(maxMessages - incoming));
+    }
+
+    private static Update append(final List<ChatMessage> chunk) {
+        Instant min = chunk.stream().map(ChatMessage::getTimestamp).min(Comparator.naturalOrder()).orElseThrow();
+        Instant max = chunk.stream().map(ChatMessage::getTimestamp).max(Comparator.naturalOrder()).orElseThrow();
+        return new Update()
+                .push("messages").each(chunk.toArray())
+                .inc("count", chunk.size())
+                .min("minTimestamp", min)
+                .max("maxTimestamp", max);
+    }
+
+    private static Query bucketsBefore(final String chatId, final MessageCursor position, final int limit) {
+        Criteria criteria = Criteria.where("chatId").is(chatId);
+        if (position != null) {
+            criteria.and("minTimestamp").lte(position.timestamp());
+        }
+        Query query = Query.query(criteria).with(BUCKET_ORDER).cursorBatchSize(2);
+        // Messages are appended in order, so the newest ones of a bucket are at its end.
+        if (position == null) {
+            query.fields().slice("messages", -limit);
+        } else {
+            AggregationExpression newestBefore = context -> new Document("$slice",
+                    List.of(new Document("$filter", new Document("input", "$messages")
+                            .append("cond", isBefore(position))), -limit));
+            query.fields().project(newestBefore).as("messages");
+        }
+        return query;
+    }
+
+    private static Document isBefore(final MessageCursor position) {
+        Date timestamp = Date.from(position.timestamp());
+        return new Document("$or", List.of(
+                new Document("$lt", List.of("$$this.timestamp", timestamp)),
+                new Document("$and", List.of(
+                        new Document("$eq", List.of("$$this.timestamp", timestamp)),
+                        new Document("$lt", List.of("$$this._id", position.messageId()))))));
+    }
+
+    private static List<ChatMessage> firstPage(final List<ChatMessage> messages, final int limit) {
+        return messages.size() > limit ? new ArrayList<>(messages.subList(0, limit)) : messages;
+    }
+
+    private record BucketKey(String chatId, Instant start) {
+    }
+}
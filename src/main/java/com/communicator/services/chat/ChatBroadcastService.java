@@ -6,12 +6,10 @@ import com.communicator.dto.MessageType;
 import com.communicator.dto.UserDto;
 import com.communicator.entity.AppUser;
 import com.communicator.entity.chat.ChatRoom;
-import com.communicator.entity.chat.UndeliveredMessage;
-import com.communicator.repositories.ChatRepository;
-import com.communicator.repositories.UndeliveredMessageRepository;
+import com.communicator.services.cluster.ClusterMessagingService;
+import com.communicator.services.cluster.SerializedMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.HashSet;
@@ -23,9 +21,8 @@ import java.util.stream.Collectors;
 @Service
 @Slf4j
 public class ChatBroadcastService {
-    private final SimpMessagingTemplate messagingTemplate;
-    private final UndeliveredMessageRepository undeliveredMessageRepository;
-    private final ChatRepository chatRepository;
+    private final ClusterMessagingService clusterMessagingService;
+    private final OfflineOutboxService offlineOutboxService;
 
     /**
      * Method to broadcast info about being in new chat.
@@ -34,52 +31,31 @@ public class ChatBroadcastService {
      * @param users - list of users in chat room
      */
     public void broadcastNewChat(final ChatRoom chatRoom, final List<AppUser> users) {
-        if (log.isInfoEnabled()) {
-            log.warn("In broadcastNewChat");
-        }
-        TypedWebSocketMessage message = new TypedWebSocketMessage(MessageType.NEW_CHAT, chatRoom);
+        SerializedMessage message = clusterMessagingService.serialize(
+                new TypedWebSocketMessage(MessageType.NEW_CHAT, chatRoom));
         users.forEach(user -> {
             if (user.isActive()) {
-                messagingTemplate.convertAndSendToUser(
-                        user.getPhoneNumber(),
-                        "/" + user.getPhoneNumber(),
-                        message
-                );
-                if (log.isInfoEnabled()) {
-                    log.warn("Message send to chat room: {}", chatRoom);
-                }
-
+                clusterMessagingService.sendToUser(user.getPhoneNumber(), message);
             } else {
-                saveUndeliveredMessage(user.getPhoneNumber(), chatRoom);
-                if (log.isInfoEnabled()) {
-                    log.warn("In else");
-                }
+                offlineOutboxService.enqueue(user.getPhoneNumber(), MessageType.NEW_CHAT, chatRoom);
             }
         });
+        log.debug("New chat {} broadcast to {} users", chatRoom.getChatId(), users.size());
     }
 
     /**
-     * Broadcasting activity status change.
-     * @param userId user id
-     * @param isActive user activity status
+     * Sends activity status changes to one recipient in a single frame. A single change is sent as
+     * an {@code ACTIVITY_STATUS_UPDATE} holding one {@link ActivityStatusUpdate}, several changes as
+     * an {@code ACTIVITY_STATUS_UPDATES} holding a list of them, so the content of a type always
+     * has the same shape.
+     * @param recipientUserId recipient id
+     * @param updates status changes of recipient's chat partners
      */
-    public void broadcastStatusToChatPartners(final String userId, final boolean isActive) {
-        // Find all the chat rooms the user is part of
-        List<ChatRoom> chatRooms = chatRepository.findByUserId(userId);
-
-        TypedWebSocketMessage webSocketMessage = new TypedWebSocketMessage(MessageType.ACTIVITY_STATUS_UPDATE,
-                new ActivityStatusUpdate(userId, isActive));
-
-        Set<String> uniqueUserIds = getFriendsIds(userId, chatRooms);
-
-        // Now send the activity status update to each unique user
-        for (String recipientUserId : uniqueUserIds) {
-            messagingTemplate.convertAndSendToUser(
-                    recipientUserId,
-                    "/" + recipientUserId, // Or any other topic
-                    webSocketMessage
-            );
-        }
+    public void sendStatusUpdates(final String recipientUserId, final List<ActivityStatusUpdate> updates) {
+        TypedWebSocketMessage webSocketMessage = updates.size() == 1
+                ? new TypedWebSocketMessage(MessageType.ACTIVITY_STATUS_UPDATE, updates.get(0))
+                : new TypedWebSocketMessage(MessageType.ACTIVITY_STATUS_UPDATES, updates);
+        clusterMessagingService.sendToUser(recipientUserId, webSocketMessage);
     }
 
     /**
@@ -106,17 +82,5 @@ public class ChatBroadcastService {
         return uniqueUserIds;
     }
 
-
-    private void saveUndeliveredMessage(final String userId, final ChatRoom chatDto) {
-        UndeliveredMessage undeliveredMessage = UndeliveredMessage.builder()
-                .userId(userId)
-                .payload(chatDto)
-                .type("NEW_CHAT")
-                .build();
-        undeliveredMessageRepository.save(undeliveredMessage);
-        if (log.isInfoEnabled()) {
-            log.warn("Message saved to chat room: {}", undeliveredMessage);
-        }
-    }
 }
 
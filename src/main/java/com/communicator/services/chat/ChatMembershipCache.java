@@ -0,0 +1,156 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.UserDto;
+import com.communicator.entity.chat.ChatRoom;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache mapping a chat id to the ids of its members.
+ *
+ * <p>Used by the message fan-out path so that resolving recipients does not load the whole
+ * {@link ChatRoom} document for every message. Entries are replaced whenever a room is saved
+ * and the least recently used chat is evicted once the cache is full. Hit, miss and eviction
+ * counts are published as {@code chat.membership.cache.*} meters.</p>
+ *
+ * <p>Rooms read from the database on a miss are stored with {@link #putLoaded}, which takes the
+ * {@link #stamp()} read before the load and keeps the cache unchanged if a room was saved or
+ * invalidated in the meantime, so a slow load never replaces a newer member list. Member lists
+ * are immutable and handed out as they are.</p>
+ */
+@Component
+public class ChatMembershipCache {
+
+    private final int maxSize;
+    private final Map<String, List<String>> members;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long writes;
+
+    /**
+     * Creates the cache and registers its meters.
+     *
+     * @param maxSizeProp maximum number of chats kept in memory
+     * @param meterRegistry registry the cache statistics are published to
+     */
+    public ChatMembershipCache(@Value("${application.chat.membership-cache.max-size}") final int maxSizeProp,
+                               final MeterRegistry meterRegistry) {
+        this.maxSize = maxSizeProp;
+        final int initialCapacity = 16;
+        final float loadFactor = 0.75f;
+        this.members = new LinkedHashMap<>(initialCapacity, loadFactor, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, List<String>> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        FunctionCounter.builder("chat.membership.cache.hits", hits, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.membership.cache.misses", misses, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.membership.cache.evictions", evictions, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("chat.membership.cache.size", this, ChatMembershipCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the member ids of a chat.
+     *
+     * @param chatId chat id
+     * @return unmodifiable member ids or null if the chat is not cached
+     */
+    public synchronized List<String> get(final String chatId) {
+        List<String> ids = members.get(chatId);
+        if (ids == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return ids;
+    }
+
+    /**
+     * Stamp to read before loading a room on a miss, see {@link #putLoaded}.
+     *
+     * @return number of saves and invalidations so far
+     */
+    public synchronized long stamp() {
+        return writes;
+    }
+
+    /**
+     * Stores the current member list of a chat that was just saved, replacing any previous entry.
+     *
+     * @param chatRoom saved chat room
+     * @return member ids that were stored
+     */
+    public List<String> put(final ChatRoom chatRoom) {
+        List<String> ids = memberIds(chatRoom);
+        synchronized (this) {
+            writes++;
+            members.put(chatRoom.getChatId(), ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Stores the member list of a chat read from the database, unless the chat was cached or any
+     * chat was saved or invalidated since the stamp was taken.
+     *
+     * @param chatRoom loaded chat room
+     * @param stamp value of {@link #stamp()} read before the room was loaded
+     * @return cached member ids if there are any, otherwise those of the loaded room
+     */
+    public List<String> putLoaded(final ChatRoom chatRoom, final long stamp) {
+        List<String> ids = memberIds(chatRoom);
+        synchronized (this) {
+            List<String> cached = members.get(chatRoom.getChatId());
+            if (cached != null) {
+                return cached;
+            }
+            if (writes == stamp) {
+                members.put(chatRoom.getChatId(), ids);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Removes a chat from the cache.
+     *
+     * @param chatId chat id
+     */
+    public synchronized void invalidate(final String chatId) {
+        writes++;
+        members.remove(chatId);
+    }
+
+    /**
+     * Number of cached chats.
+     *
+     * @return cache size
+     */
+    public synchronized int size() {
+        return members.size();
+    }
+
+    private static List<String> memberIds(final ChatRoom chatRoom) {
+        List<UserDto> users = chatRoom.getUsers();
+        return users == null ? List.of() : users.stream().map(UserDto::getUserId).toList();
+    }
+}
@@ -1,34 +1,51 @@
 package com.communicator.services.chat;
 
+import com.communicator.dto.chat.ChatMessageSliceDto;
+import com.communicator.dto.chat.MessageCursor;
 import com.communicator.entity.chat.ChatMessage;
-import com.communicator.repositories.ChatMessageRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 
 
 @Service
 @RequiredArgsConstructor
 public class ChatMessageService {
 
-    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageWriteBehindService chatMessageWriteBehindService;
+    private final ChatMessageStore chatMessageStore;
+    private final ChatTailCache chatTailCache;
 
     /**
      * Method that saves chatroom to the database.
      * @param chatMessage chat message
      */
     public void saveChatMessage(final ChatMessage chatMessage) {
-        chatMessageRepository.save(chatMessage);
+        chatMessageStore.save(chatMessage);
+    }
+
+    /**
+     * Hands the message over to the write-behind pipeline. The message and the chat's last message
+     * are persisted in the background, the message gets its id and timestamp immediately and is
+     * appended to the chat's {@link ChatTailCache} entry.
+     * @param chatMessage chat message
+     */
+    public void queueChatMessage(final ChatMessage chatMessage) {
+        chatMessageWriteBehindService.enqueue(chatMessage);
+        chatTailCache.append(chatMessage);
     }
 
     /**
      * Retrieves a paginated list of chat messages that match the given query.
-     * The results are returned as a {@link Page} object, maintaining the order
-     * provided by the repository.
+     * The message is looked up in the {@link ChatMessageStore}, so it is found whichever storage
+     * engine is active.
      *
      * @param query the query string used to filter chat messages by their message ID
      * @param page the zero-based page index to retrieve
@@ -37,24 +54,69 @@ public class ChatMessageService {
      */
     public Page<ChatMessage> getChatMessages(final String query, final int page, final int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<ChatMessage> chatMessagesPage = chatMessageRepository.findByMessageId(query, pageable);
+        List<ChatMessage> found = chatMessageStore.findById(query).stream().toList();
 
-        return new PageImpl<>(chatMessagesPage.getContent(), pageable, chatMessagesPage.getTotalElements());
+        return new PageImpl<>(page == 0 ? found : List.of(), pageable, found.size());
     }
 
     /**
      * Message that retrieves all messages before the last one loaded on the client side.
+     * Reads the {@link ChatMessageStore} like {@link #getChatHistory}, skipping the earlier pages, and
+     * reports the total only as far as it was read: exact on the last page, one more than the
+     * current page otherwise.
      * @param chatId chat id
      * @param messageId last message id
      * @param page number of page
      * @param size page size
      * @return page of chat messages
+     * @throws IllegalArgumentException if there is no message with the given id
      */
     public Page<ChatMessage> getChatMessagesBefore(final String chatId, final String messageId, final int page,
                                                    final int size) {
         Pageable pageable = PageRequest.of(page, size);
+        MessageCursor position = chatMessageStore.findById(messageId)
+                .map(message -> new MessageCursor(message.getTimestamp(), message.getMessageId()))
+                .orElseThrow(() -> new IllegalArgumentException("Message not found: " + messageId));
+
+        int offset = (int) pageable.getOffset();
+        List<ChatMessage> messages = chatMessageStore.findBefore(chatId, position, offset + size + 1);
+        List<ChatMessage> content = messages.subList(Math.min(offset, messages.size()),
+                Math.min(offset + size, messages.size()));
+        return new PageImpl<>(content, pageable, messages.size());
+    }
+
+    /**
+     * Retrieves a slice of the chat's history older than the given position, newest first.
+     * Uses keyset pagination in the {@link ChatMessageStore}, so the cost does not depend on how
+     * deep the client scrolled and no count query is issued.
+     * @param chatId chat id
+     * @param cursor cursor returned with the previous slice, may be null
+     * @param beforeMessageId id of the oldest message the client has, used when there is no cursor
+     * @param size slice size
+     * @return slice of messages with the cursor of the next slice
+     */
+    public ChatMessageSliceDto getChatHistory(final String chatId, final String cursor, final String beforeMessageId,
+                                              final int size) {
+        MessageCursor position = null;
+        if (cursor != null) {
+            position = MessageCursor.decode(cursor);
+        } else if (beforeMessageId != null) {
+            position = chatMessageStore.findById(beforeMessageId)
+                    .map(message -> new MessageCursor(message.getTimestamp(), message.getMessageId()))
+                    .orElseThrow(() -> new IllegalArgumentException("Message not found: " + beforeMessageId));
+        }
+
+        List<ChatMessage> messages = chatMessageStore.findBefore(chatId, position, size + 1);
+        boolean hasNext = messages.size() > size;
+        if (hasNext) {
+            messages = messages.subList(0, size);
+        }
 
-        Page<ChatMessage> chatMessagesPage = chatMessageRepository.findMessagesBefore(chatId, messageId, pageable);
-        return new PageImpl<>(chatMessagesPage.getContent(), pageable, chatMessagesPage.getTotalElements());
+        String nextCursor = null;
+        if (hasNext) {
+            ChatMessage last = messages.get(messages.size() - 1);
+            nextCursor = new MessageCursor(last.getTimestamp(), last.getMessageId()).encode();
+        }
+        return new ChatMessageSliceDto(new SliceImpl<>(messages, PageRequest.ofSize(size), hasNext), nextCursor);
     }
 }
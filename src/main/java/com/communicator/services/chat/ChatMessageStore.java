@@ -0,0 +1,82 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.chat.MessageCursor;
+import com.communicator.entity.chat.ChatMessage;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage engine for chat messages.
+ *
+ * <p>{@link DocumentChatMessageStore} keeps one document per message and is the default.
+ * {@link BucketedChatMessageStore} packs the messages of a chat into time-window buckets, which
+ * keeps the latest page of a long-lived chat one or two documents away. The engine is selected
+ * with {@code application.chat.storage.engine}.</p>
+ */
+public interface ChatMessageStore {
+
+    /**
+     * Number of messages sent to a client that opens a chat.
+     */
+    int LAST_MESSAGES = 20;
+
+    /**
+     * Newest first, ties broken by id like the keyset of the history.
+     */
+    Comparator<ChatMessage> NEWEST_FIRST = Comparator
+            .comparing(ChatMessage::getTimestamp, Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+            .thenComparing(ChatMessage::getMessageId, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .reversed();
+
+    /**
+     * Stores a batch of new messages.
+     *
+     * @param messages messages with id and timestamp assigned
+     */
+    void saveAll(List<ChatMessage> messages);
+
+    /**
+     * Stores a message unless a message with the same id is stored already.
+     *
+     * @param message message with id and timestamp assigned
+     */
+    void save(ChatMessage message);
+
+    /**
+     * Finds a message by id.
+     *
+     * @param messageId message id
+     * @return message, empty if there is none
+     */
+    Optional<ChatMessage> findById(String messageId);
+
+    /**
+     * Finds the {@value #LAST_MESSAGES} newest messages of a chat.
+     *
+     * @param chatId chat id
+     * @return messages, newest first
+     */
+    List<ChatMessage> findLastMessages(String chatId);
+
+    /**
+     * Non-blocking variant of {@link #findLastMessages}.
+     *
+     * @param chatId chat id
+     * @return messages, newest first
+     */
+    Mono<List<ChatMessage>> findLastMessagesReactive(String chatId);
+
+    /**
+     * Finds messages of a chat older than a position in its history.
+     *
+     * @param chatId chat id
+     * @param position keyset position, null for the newest messages
+     * @param limit maximum number of messages
+     * @return messages, newest first
+     */
+    List<ChatMessage> findBefore(String chatId, MessageCursor position, int limit);
+}
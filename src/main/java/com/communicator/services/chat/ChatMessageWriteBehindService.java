@@ -0,0 +1,345 @@
+package com.communicator.services.chat;
+
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.entity.chat.ChatRoom;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind pipeline for chat messages.
+ *
+ * <p>Messages are accepted into a bounded queue and group-committed by a single flusher thread:
+ * every batch becomes one bulk write to the {@link ChatMessageStore} and one bulk update of
+ * {@link ChatRoom#getLastMessage()} holding only the newest message per chat. A batch is closed
+ * when it reaches the configured size or when the configured delay after its first message
+ * has passed.</p>
+ *
+ * <p>When the queue is full the caller waits for the flusher, which throttles producers to the
+ * speed of the database; only the flusher writes, so batches are stored in the order they were
+ * accepted. A batch that fails is retried with a capped backoff, inserting its messages one by
+ * one with idempotent saves after the first failure, up to the configured number of attempts.
+ * Messages still unstored then, say one the database rejects, are moved to the
+ * {@value #DEAD_LETTER_COLLECTION} collection and the flusher goes on with the next batch, so one
+ * bad message never blocks the producers. A chat's last message is only replaced by a newer one,
+ * so a late retry never moves it back. Shutdown first waits for the messages being queued, then
+ * the flusher drains the queue before the Mongo client goes away; messages accepted after that are
+ * stored by their caller, and only messages still unstored when the shutdown timeout ends are
+ * logged as lost.</p>
+ *
+ * <p>Each flushed batch is timed in the {@code chat.message.persist} timer and the number of
+ * waiting messages is published as the {@code chat.message.persist.queue} gauge.</p>
+ */
+@Service
+@Slf4j
+public class ChatMessageWriteBehindService {
+
+    /**
+     * Collection receiving the messages that could not be stored.
+     */
+    public static final String DEAD_LETTER_COLLECTION = "chat_message_dead_letters";
+
+    private final MongoTemplate mongoTemplate;
+    private final ChatMessageStore chatMessageStore;
+    private final BlockingQueue<ChatMessage> queue;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final long retryBackoffMillis;
+    private final long maxRetryBackoffMillis;
+    private final int maxAttempts;
+    private final Timer persistTimer;
+    // Held shared while a message is queued and exclusively while shutdown stops accepting them.
+    private final ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * Creates the pipeline.
+     *
+     * @param mongoTemplateBean template used for the bulk updates of the chats
+     * @param chatMessageStoreBean store the messages are written to
+     * @param queueCapacity maximum number of messages waiting to be persisted
+     * @param batchSizeProp maximum number of messages written in one bulk operation
+     * @param maxDelayMillisProp maximum time a message waits for its batch to fill up
+     * @param retryBackoffMillisProp first delay before a failed batch is written again
+     * @param maxRetryBackoffMillisProp longest delay between two attempts to write a failed batch
+     * @param maxAttemptsProp attempts to write a batch before its unstored messages are dead-lettered
+     * @param meterRegistry registry the persistence metrics are published to
+     */
+    public ChatMessageWriteBehindService(
+            final MongoTemplate mongoTemplateBean,
+            final ChatMessageStore chatMessageStoreBean,
+            @Value("${application.chat.write-behind.queue-capacity}") final int queueCapacity,
+            @Value("${application.chat.write-behind.batch-size}") final int batchSizeProp,
+            @Value("${application.chat.write-behind.max-delay-ms}") final long maxDelayMillisProp,
+            @Value("${application.chat.write-behind.retry-backoff-ms}") final long retryBackoffMillisProp,
+            @Value("${application.chat.write-behind.max-retry-backoff-ms}") final long maxRetryBackoffMillisProp,
+            @Value("${application.chat.write-behind.max-attempts}") final int maxAttemptsProp,
+            final MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplateBean;
+        this.chatMessageStore = chatMessageStoreBean;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSizeProp;
+        this.maxDelayMillis = maxDelayMillisProp;
+        this.retryBackoffMillis = retryBackoffMillisProp;
+        this.maxRetryBackoffMillis = maxRetryBackoffMillisProp;
+        this.maxAttempts = Math.max(1, maxAttemptsProp);
+        this.persistTimer = Timer.builder("chat.message.persist")
+                .description("Time to persist one batch of chat messages and their chats' last messages")
+                .register(meterRegistry);
+        Gauge.builder("chat.message.persist.queue", queue, BlockingQueue::size)
+                .description("Chat messages waiting to be persisted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the flusher thread.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = Thread.ofPlatform()
+                .name("chat-write-behind")
+                .daemon(false)
+                .start(this::runFlushLoop);
+    }
+
+    /**
+     * Stops accepting new work and waits until the flusher has stored everything that is queued.
+     */
+    @PreDestroy
+    public void stop() {
+        final long joinTimeoutMillis = 30_000;
+        acceptLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            acceptLock.writeLock().unlock();
+        }
+        try {
+            flusher.join(joinTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            // The flusher is still retrying a batch the database rejects; give up on it.
+            flusher.interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.error("Shutting down with {} chat messages not persisted", queue.size());
+        }
+    }
+
+    /**
+     * Assigns an id and timestamp to the message and queues it for persistence, waiting for queue
+     * space if needed. The message is ready to be sent to recipients once this method returns.
+     *
+     * @param chatMessage chat message
+     */
+    public void enqueue(final ChatMessage chatMessage) {
+        if (chatMessage.getMessageId() == null) {
+            chatMessage.setMessageId(new ObjectId().toHexString());
+        }
+        if (chatMessage.getTimestamp() == null) {
+            chatMessage.setTimestamp(Instant.now());
+        }
+
+        acceptLock.readLock().lock();
+        try {
+            if (running) {
+                queue.put(chatMessage);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            acceptLock.readLock().unlock();
+        }
+        // Shutting down or interrupted: the flusher may be gone, so store the message here.
+        flush(List.of(chatMessage));
+    }
+
+    /**
+     * Number of messages waiting to be persisted.
+     *
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void runFlushLoop() {
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ChatMessage first = queue.poll(maxDelayMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0) {
+                        break;
+                    }
+                    ChatMessage next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(final List<ChatMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        persistTimer.record(() -> persist(batch));
+    }
+
+    private void persist(final List<ChatMessage> batch) {
+        List<ChatMessage> unstored = store(batch);
+        if (!unstored.isEmpty()) {
+            deadLetter(unstored);
+        }
+
+        Map<String, ChatMessage> lastMessages = new LinkedHashMap<>();
+        for (ChatMessage message : batch) {
+            if (!unstored.contains(message)) {
+                lastMessages.merge(message.getChatId(), message,
+                        (stored, next) -> isNewer(next, stored) ? next : stored);
+            }
+        }
+        if (lastMessages.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0 && !backOff(attempt - 1)) {
+                break;
+            }
+            BulkOperations chatUpdates = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatRoom.class);
+            lastMessages.forEach((chatId, message) -> chatUpdates.updateOne(olderLastMessage(chatId, message),
+                    new Update().set("lastMessage", message)));
+            try {
+                chatUpdates.execute();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Failed to update last message of {} chats, attempt {}", lastMessages.size(),
+                        attempt + 1, e);
+            }
+        }
+        log.error("Last message of chats {} not updated", lastMessages.keySet());
+    }
+
+    /**
+     * Stores a batch, retrying the messages that fail.
+     *
+     * @param batch messages to store
+     * @return messages still not stored after the last attempt
+     */
+    private List<ChatMessage> store(final List<ChatMessage> batch) {
+        try {
+            chatMessageStore.saveAll(batch);
+            return List.of();
+        } catch (RuntimeException e) {
+            log.warn("Failed to persist {} chat messages, attempt 1", batch.size(), e);
+        }
+        List<ChatMessage> unstored = new ArrayList<>(batch);
+        for (int attempt = 1; attempt < maxAttempts && backOff(attempt - 1); attempt++) {
+            RuntimeException failure = null;
+            // Part of the batch may already be stored, so fall back to idempotent saves by id.
+            Iterator<ChatMessage> messages = unstored.iterator();
+            while (messages.hasNext()) {
+                try {
+                    chatMessageStore.save(messages.next());
+                    messages.remove();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            if (unstored.isEmpty()) {
+                break;
+            }
+            log.warn("Failed to persist {} of {} chat messages, attempt {}", unstored.size(), batch.size(),
+                    attempt + 1, failure);
+        }
+        return unstored;
+    }
+
+    private void deadLetter(final List<ChatMessage> messages) {
+        List<String> messageIds = messages.stream().map(ChatMessage::getMessageId).toList();
+        log.error("Chat messages {} not persisted, moving them to {}", messageIds, DEAD_LETTER_COLLECTION);
+        try {
+            mongoTemplate.insert(messages, DEAD_LETTER_COLLECTION);
+        } catch (RuntimeException e) {
+            log.error("Failed to dead-letter chat messages {}", messageIds, e);
+        }
+    }
+
+    // Matches the chat if its last message is older than the given one, or if it has none.
+    private static Query olderLastMessage(final String chatId, final ChatMessage message) {
+        return Query.query(Criteria.where("_id").is(chatId).orOperator(
+                Criteria.where("lastMessage.timestamp").exists(false),
+                Criteria.where("lastMessage.timestamp").lt(message.getTimestamp()),
+                Criteria.where("lastMessage.timestamp").is(message.getTimestamp())
+                        .and("lastMessage.messageId").lt(message.getMessageId())));
+    }
+
+    private static boolean isNewer(final ChatMessage message, final ChatMessage than) {
+        int byTime = message.getTimestamp().compareTo(than.getTimestamp());
+        return byTime > 0 || byTime == 0 && message.getMessageId().compareTo(than.getMessageId()) > 0;
+    }
+
+    /**
+     * Waits before the next attempt.
+     *
+     * @param attempt number of failed attempts so far, minus one
+     * @return false if the thread was interrupted and should stop retrying
+     */
+    private boolean backOff(final int attempt) {
+        final int maxShift = 20;
+        long delay = Math.min(maxRetryBackoffMillis, retryBackoffMillis << Math.min(attempt, maxShift));
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
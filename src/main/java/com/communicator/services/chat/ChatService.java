@@ -7,6 +7,10 @@ import com.communicator.entity.AppUser;
 import com.communicator.entity.chat.ChatRoom;
 import com.communicator.repositories.ChatRepository;
 import com.communicator.repositories.UserRepository;
+import com.communicator.repositories.reactive.ReactiveChatRepository;
+import com.communicator.services.cluster.ClusterEvent;
+import com.communicator.services.cluster.ClusterEventBus;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -15,12 +19,14 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 import com.communicator.dto.UserDto;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,6 +37,22 @@ public class ChatService {
     private final ChatRepository chatRepository;
     private final UserRepository userRepository;
     private final ChatBroadcastService chatBroadcastService;
+    private final ChatMembershipCache chatMembershipCache;
+    private final PresenceService presenceService;
+    private final ContactGraph contactGraph;
+    private final ReactiveChatRepository reactiveChatRepository;
+    private final ClusterEventBus clusterEventBus;
+
+    /**
+     * Starts applying chats saved on other nodes to the membership cache and the contact graph.
+     */
+    @PostConstruct
+    public void listenToCluster() {
+        clusterEventBus.listen(ChatSaved.class, event -> {
+            chatMembershipCache.invalidate(event.chatId());
+            contactGraph.updateChat(event.chatId(), event.memberIds());
+        });
+    }
 
     /**
      * Method that creates new chat.
@@ -40,36 +62,27 @@ public class ChatService {
      */
     public ResponseEntity<CreateChatResponse> createChat(final CreateChatRequest request) {
         List<String> userIds = Arrays.asList(request.usersIds());
-        log.info("Creating chat with users: {}", userIds);
+        log.debug("Creating chat with users: {}", userIds);
 
         if (userIds.size() == 2) {
-            if (log.isInfoEnabled()) {
-                log.info("in chat check");
-            }
             List<ChatRoom> existingChats = chatRepository.findByExactUsersPhoneNumber(userIds);
-            if (log.isInfoEnabled()) {
-                log.info("Found existing chats: {}", existingChats);
-            }
             if (!existingChats.isEmpty()) {
                 return ResponseEntity.status(405).body(null);
             }
         }
 
         List<AppUser> users = userRepository.findByPhoneNumberIn(userIds);
-        if (log.isInfoEnabled()) {
-            log.info("Found {} users", users.size());
-        }
-        for (AppUser user : users) {
-            if (log.isInfoEnabled()) {
-                log.info(user.toString());
-            }
-        }
 
         ChatRoom chatRoom = new ChatRoom();
         List<UserDto> usersDtos = mapUsersToDTO(users);
         chatRoom.setUsers(usersDtos);
 
         ChatRoom result = chatRepository.save(chatRoom);
+        chatMembershipCache.put(result);
+        contactGraph.updateChat(result);
+        publishSaved(result);
+        // The persisted flag lags behind by the presence debounce window.
+        users.forEach(user -> user.setActive(presenceService.isOnline(user.getPhoneNumber())));
         chatBroadcastService.broadcastNewChat(result, users);
 
         CreateChatResponse response = new CreateChatResponse(result);
@@ -83,8 +96,13 @@ public class ChatService {
      * @return list of users
      */
     public List<UserDto> findUsersFromChatById(final String chatId) {
-        return chatRepository.findByChatId(chatId)
-                .map(chatRoom -> chatRoom.getUsers()) // Assuming getUsers() already returns List<UserDto>
+        long stamp = chatMembershipCache.stamp();
+        return chatRepository.findUsersById(chatId)
+                .map(chatRoom -> {
+                    chatMembershipCache.putLoaded(chatRoom, stamp);
+                    contactGraph.addChat(chatRoom);
+                    return chatRoom.getUsers();
+                })
                 .orElseThrow(() -> new IllegalArgumentException("ChatRoom not found with id: " + chatId));
     }
 
@@ -104,41 +122,75 @@ public class ChatService {
      * @param chatRoom chatroom
      */
     public void saveChat(final ChatRoom chatRoom) {
-        chatRepository.save(chatRoom);
+        ChatRoom saved = chatRepository.save(chatRoom);
+        chatMembershipCache.put(saved);
+        contactGraph.updateChat(saved);
+        publishSaved(saved);
     }
 
     /**
-     * Get all friended users.
+     * Get all friended users. Partners are taken from {@link ContactGraph}, only their profiles
+     * are loaded from the database.
      * @param userId user id
-     * @return list of friended users
+     * @return list of friended users, each listed once
      */
     public List<UserDto> getUsersInCommonChats(final String userId) {
-        // Find all chats that include the user
-        List<ChatRoom> chatRooms = chatRepository.findByUserId(userId);
-
-        // Get the users in those chats, excluding the provided user
-        return chatRooms.stream()
-                .flatMap(chat -> chat.getUsers().stream())
-                .filter(user -> !user.getUserId().equals(userId))  // Exclude the current user
-                .collect(Collectors.toList());
+        Set<String> contactIds = contactGraph.getContacts(userId);
+        if (contactIds.isEmpty()) {
+            return List.of();
+        }
+        return mapUsersToDTO(userRepository.findByPhoneNumberIn(contactIds));
     }
 
     /**
-     * Getting users ids.
+     * Getting users ids. Served from {@link ChatMembershipCache}, the chat is loaded from the
+     * database only on a cache miss.
      * @param chatId
      * @return list of user ids
      */
     public List<String> getUserIdsByChatId(final String chatId) {
-        Optional<ChatRoom> chatRoom = chatRepository.findById(chatId);
+        return getMemberIds(chatId);
+    }
+
+    /**
+     * Getting users ids, used by the message fan-out path.
+     * @param chatId chat id
+     * @return unmodifiable ids of chat members
+     */
+    public List<String> getMemberIds(final String chatId) {
+        List<String> memberIds = chatMembershipCache.get(chatId);
+        if (memberIds != null) {
+            return memberIds;
+        }
+        long stamp = chatMembershipCache.stamp();
+        Optional<ChatRoom> chatRoom = chatRepository.findMembersById(chatId);
         if (chatRoom.isPresent()) {
-            return chatRoom.get().getUsers()
-                    .stream()
-                    .map(UserDto::getUserId)
-                    .collect(Collectors.toList());
+            contactGraph.addChat(chatRoom.get());
+            return chatMembershipCache.putLoaded(chatRoom.get(), stamp);
         }
         throw new IllegalArgumentException("ChatRoom not found with chatId: " + chatId);
     }
 
+    /**
+     * Non-blocking variant of {@link #getMemberIds}. A cache hit completes immediately.
+     * @param chatId chat id
+     * @return unmodifiable ids of chat members, or an error if the chat does not exist
+     */
+    public Mono<List<String>> getMemberIdsReactive(final String chatId) {
+        List<String> memberIds = chatMembershipCache.get(chatId);
+        if (memberIds != null) {
+            return Mono.just(memberIds);
+        }
+        long stamp = chatMembershipCache.stamp();
+        return reactiveChatRepository.findMembersById(chatId)
+                .map(chatRoom -> {
+                    contactGraph.addChat(chatRoom);
+                    return chatMembershipCache.putLoaded(chatRoom, stamp);
+                })
+                .switchIfEmpty(Mono.error(() ->
+                        new IllegalArgumentException("ChatRoom not found with chatId: " + chatId)));
+    }
+
     /**
      * Maps chats to previews.
      * @param chatRooms chat rooms
@@ -169,6 +221,14 @@ public class ChatService {
         );
     }
 
+    private void publishSaved(final ChatRoom chatRoom) {
+        if (chatRoom.getUsers() == null) {
+            return;
+        }
+        clusterEventBus.publish(new ChatSaved(chatRoom.getChatId(),
+                chatRoom.getUsers().stream().map(UserDto::getUserId).toList()));
+    }
+
     /**
      * Mapper.
      *
@@ -203,5 +263,12 @@ public class ChatService {
         return new PageImpl<>(chatRoomResults, pageable, chatRoomsPage.getTotalElements());
     }
 
-
+    /**
+     * Chat created or changed on another node.
+     *
+     * @param chatId chat id
+     * @param memberIds ids of all members of the chat
+     */
+    public record ChatSaved(String chatId, List<String> memberIds) implements ClusterEvent {
+    }
 }
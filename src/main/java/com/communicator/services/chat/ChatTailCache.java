@@ -0,0 +1,285 @@
+package com.communicator.services.chat;
+
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.services.cluster.ClusterEvent;
+import com.communicator.services.cluster.ClusterEventBus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory ring buffer of the {@value ChatMessageStore#LAST_MESSAGES} newest messages of every
+ * active chat, serving {@code LAST_MESSAGES} without a database read.
+ *
+ * <p>Sent messages are appended as soon as they are queued for persistence. A chat that was not
+ * read yet only holds what was sent since it entered the cache; its first read loads the newest
+ * messages from the {@link ChatMessageStore}, merges them with the buffer by id and marks the
+ * buffer complete, so messages that were still waiting for the write-behind flush are not lost
+ * either way. Later reads are served from memory. Messages sent on other nodes arrive through the
+ * {@link ClusterEventBus} and are appended the same way, so a complete tail stays complete in a
+ * cluster too.</p>
+ *
+ * <p>Chats are kept in least recently used order. Chats idle for longer than the idle timeout
+ * and, while the number of chats or the estimated size of their messages is over its cap, the
+ * least recently used chats are evicted. Hit, miss and eviction counts are published as
+ * {@code chat.tail.cache.*} meters.</p>
+ */
+@Component
+public class ChatTailCache {
+
+    private static final int MESSAGE_OVERHEAD_BYTES = 256;
+
+    private final ChatMessageStore chatMessageStore;
+    private final ClusterEventBus clusterEventBus;
+    private final int maxChats;
+    private final long maxBytes;
+    private final long idleTimeoutNanos;
+    private final Map<String, Tail> tails;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long bytes;
+
+    /**
+     * Creates the cache and registers its meters.
+     *
+     * @param chatMessageStoreBean store the tails are loaded from on first read
+     * @param clusterEventBusBean bus sharing sent messages with the other nodes
+     * @param maxChatsProp maximum number of chats kept in memory
+     * @param maxBytesProp maximum estimated size of all cached messages
+     * @param idleTimeoutProp time after which a chat that is neither read nor written is evicted
+     * @param meterRegistry registry the cache statistics are published to
+     */
+    public ChatTailCache(final ChatMessageStore chatMessageStoreBean,
+                         final ClusterEventBus clusterEventBusBean,
+                         @Value("${application.chat.tail-cache.max-chats}") final int maxChatsProp,
+                         @Value("${application.chat.tail-cache.max-bytes}") final long maxBytesProp,
+                         @Value("${application.chat.tail-cache.idle-timeout}") final Duration idleTimeoutProp,
+                         final MeterRegistry meterRegistry) {
+        this.chatMessageStore = chatMessageStoreBean;
+        this.clusterEventBus = clusterEventBusBean;
+        this.maxChats = maxChatsProp;
+        this.maxBytes = maxBytesProp;
+        this.idleTimeoutNanos = idleTimeoutProp.toNanos();
+        final int initialCapacity = 16;
+        final float loadFactor = 0.75f;
+        this.tails = new LinkedHashMap<>(initialCapacity, loadFactor, true);
+
+        FunctionCounter.builder("chat.tail.cache.hits", hits, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.tail.cache.misses", misses, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.tail.cache.evictions", evictions, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("chat.tail.cache.size", this, ChatTailCache::size)
+                .register(meterRegistry);
+        Gauge.builder("chat.tail.cache.bytes", this, ChatTailCache::estimatedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts appending messages sent on other nodes.
+     */
+    @PostConstruct
+    public void listenToCluster() {
+        clusterEventBus.listen(MessageSent.class, event -> appendLocally(event.message()));
+    }
+
+    /**
+     * Appends a message that was just sent on this node and shares it with the other nodes. The
+     * message must have its id and timestamp.
+     *
+     * @param chatMessage sent message
+     */
+    public void append(final ChatMessage chatMessage) {
+        appendLocally(chatMessage);
+        clusterEventBus.publish(new MessageSent(chatMessage));
+    }
+
+    private synchronized void appendLocally(final ChatMessage chatMessage) {
+        Tail tail = tails.computeIfAbsent(chatMessage.getChatId(), chatId -> new Tail());
+        List<ChatMessage> newest = tail.newestFirst();
+        if (newest.isEmpty() || ChatMessageStore.NEWEST_FIRST.compare(chatMessage, newest.get(0)) < 0) {
+            bytes += tail.add(chatMessage);
+        } else if (newest.stream().noneMatch(message -> message.getMessageId().equals(chatMessage.getMessageId()))) {
+            // A message of another node may arrive after newer ones, or after a read loaded it.
+            newest.add(chatMessage);
+            refill(tail, newest);
+        }
+        tail.touch();
+        evict();
+    }
+
+    /**
+     * Returns the newest messages of a chat, loading them from the store if the chat was not
+     * read since it entered the cache.
+     *
+     * @param chatId chat id
+     * @return messages, newest first
+     */
+    public List<ChatMessage> getLastMessages(final String chatId) {
+        List<ChatMessage> cached = getIfComplete(chatId);
+        return cached != null ? cached : complete(chatId, chatMessageStore.findLastMessages(chatId));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getLastMessages}.
+     *
+     * @param chatId chat id
+     * @return messages, newest first
+     */
+    public Mono<List<ChatMessage>> getLastMessagesReactive(final String chatId) {
+        return Mono.defer(() -> {
+            List<ChatMessage> cached = getIfComplete(chatId);
+            return cached != null ? Mono.just(cached)
+                    : chatMessageStore.findLastMessagesReactive(chatId).map(stored -> complete(chatId, stored));
+        });
+    }
+
+    /**
+     * Number of cached chats.
+     *
+     * @return cache size
+     */
+    public synchronized int size() {
+        return tails.size();
+    }
+
+    /**
+     * Estimated size of the cached messages.
+     *
+     * @return size in bytes
+     */
+    public synchronized long estimatedBytes() {
+        return bytes;
+    }
+
+    private synchronized List<ChatMessage> getIfComplete(final String chatId) {
+        Tail tail = tails.get(chatId);
+        if (tail == null || !tail.complete) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        tail.touch();
+        return tail.newestFirst();
+    }
+
+    private synchronized List<ChatMessage> complete(final String chatId, final List<ChatMessage> stored) {
+        Tail tail = tails.computeIfAbsent(chatId, id -> new Tail());
+        if (!tail.complete) {
+            Set<String> buffered = new HashSet<>();
+            for (ChatMessage message : tail.newestFirst()) {
+                buffered.add(message.getMessageId());
+            }
+            List<ChatMessage> merged = new ArrayList<>(stored);
+            merged.removeIf(message -> buffered.contains(message.getMessageId()));
+            merged.addAll(tail.newestFirst());
+            refill(tail, merged);
+            tail.complete = true;
+        }
+        tail.touch();
+        List<ChatMessage> lastMessages = tail.newestFirst();
+        evict();
+        return lastMessages;
+    }
+
+    private void refill(final Tail tail, final List<ChatMessage> messages) {
+        messages.sort(ChatMessageStore.NEWEST_FIRST.reversed());
+        bytes -= tail.clear();
+        for (ChatMessage message : messages) {
+            bytes += tail.add(message);
+        }
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        Iterator<Tail> eldest = tails.values().iterator();
+        while (eldest.hasNext()) {
+            Tail tail = eldest.next();
+            boolean idle = now - tail.lastAccessNanos > idleTimeoutNanos;
+            if (!idle && tails.size() <= maxChats && bytes <= maxBytes) {
+                return;
+            }
+            bytes -= tail.clear();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Message sent on another node.
+     *
+     * @param message sent message with its id and timestamp
+     */
+    public record MessageSent(ChatMessage message) implements ClusterEvent {
+    }
+
+    private static long sizeOf(final ChatMessage message) {
+        String content = message.getContent();
+        return MESSAGE_OVERHEAD_BYTES + (content == null ? 0 : 2L * content.length());
+    }
+
+    /**
+     * Ring buffer of the newest messages of one chat, guarded by the cache's lock.
+     */
+    private static final class Tail {
+
+        private final ChatMessage[] ring = new ChatMessage[ChatMessageStore.LAST_MESSAGES];
+        private int next;
+        private int size;
+        private boolean complete;
+        private long lastAccessNanos;
+
+        private long add(final ChatMessage message) {
+            long delta = sizeOf(message);
+            if (ring[next] != null) {
+                delta -= sizeOf(ring[next]);
+            }
+            ring[next] = message;
+            next = (next + 1) % ring.length;
+            size = Math.min(size + 1, ring.length);
+            return delta;
+        }
+
+        private long clear() {
+            long freed = 0;
+            for (int i = 0; i < ring.length; i++) {
+                if (ring[i] != null) {
+                    freed += sizeOf(ring[i]);
+                    ring[i] = null;
+                }
+            }
+            next = 0;
+            size = 0;
+            return freed;
+        }
+
+        private List<ChatMessage> newestFirst() {
+            List<ChatMessage> messages = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                messages.add(ring[Math.floorMod(next - i, ring.length)]);
+            }
+            return messages;
+        }
+
+        private void touch() {
+            lastAccessNanos = System.nanoTime();
+        }
+    }
+}
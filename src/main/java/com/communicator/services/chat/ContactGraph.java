@@ -0,0 +1,209 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.UserDto;
+import com.communicator.entity.chat.ChatRoom;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory graph of users who share at least one chat.
+ *
+ * <p>Every user maps to their chat partners together with the number of chats they share, so the
+ * graph can be maintained incrementally as chats are created, change members or are removed. The
+ * members of every known chat are kept as well, which is what lets a chat be replaced or removed
+ * without reloading. Ids are interned, which keeps one copy of every phone number no matter in how
+ * many adjacency sets it appears. The graph is built from the chats collection on first use and
+ * then kept up to date by {@link ChatService}, which also applies the chats saved on other nodes
+ * and adds every chat it loads from the database.
+ * {@link #invalidate} drops the graph, which is rebuilt on the next use.</p>
+ */
+@Component
+@Slf4j
+public class ContactGraph {
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, Map<String, Integer>> partners = new HashMap<>();
+    private final Map<String, List<String>> membersByChat = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    /**
+     * Creates an empty graph.
+     *
+     * @param mongoTemplateBean template used to load the chats on first use
+     */
+    public ContactGraph(final MongoTemplate mongoTemplateBean) {
+        this.mongoTemplate = mongoTemplateBean;
+    }
+
+    /**
+     * Returns ids of all users sharing a chat with the given user.
+     *
+     * @param userId user id
+     * @return chat partners' ids, never containing the user
+     */
+    public Set<String> getContacts(final String userId) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> contacts = partners.get(userId);
+            return contacts == null ? Set.of() : Set.copyOf(contacts.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the members of a chat to each other's contacts unless the chat is known already, so a
+     * chat loaded before its members changed cannot undo {@link #updateChat}. Never reads the
+     * database, so it may be called from reactive pipelines.
+     *
+     * @param chatRoom saved or loaded chat room, only the chat id and the member ids are read
+     */
+    public void addChat(final ChatRoom chatRoom) {
+        putChat(chatRoom, false);
+    }
+
+    /**
+     * Replaces the members of a saved chat, so members who left it lose the contacts they had
+     * only through this chat.
+     *
+     * @param chatRoom saved chat room, only the chat id and the member ids are read
+     */
+    public void updateChat(final ChatRoom chatRoom) {
+        putChat(chatRoom, true);
+    }
+
+    /**
+     * Replaces the members of a chat saved on another node.
+     *
+     * @param chatId chat id
+     * @param memberIds ids of all members of the chat
+     */
+    public void updateChat(final String chatId, final List<String> memberIds) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                putMembersLocked(chatId, memberIds);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a chat, so its members lose the contacts they had only through it.
+     *
+     * @param chatId id of the removed chat
+     */
+    public void removeChat(final String chatId) {
+        lock.writeLock().lock();
+        try {
+            removeChatLocked(chatId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the whole graph, for chats changed without going through {@link #updateChat} or
+     * {@link #removeChat}. It is rebuilt from the database on the next use.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            partners.clear();
+            membersByChat.clear();
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putChat(final ChatRoom chatRoom, final boolean replace) {
+        if (chatRoom.getUsers() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // A graph that is not built yet reads the chat from the database when it is.
+            if (loaded && (replace || !membersByChat.containsKey(chatRoom.getChatId()))) {
+                addChatLocked(chatRoom);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            Query query = new Query();
+            query.fields().include("users.userId");
+            try (Stream<ChatRoom> chatRooms = mongoTemplate.stream(query, ChatRoom.class)) {
+                chatRooms.filter(chatRoom -> chatRoom.getUsers() != null).forEach(this::addChatLocked);
+            }
+            loaded = true;
+            log.info("Contact graph built from {} chats for {} users", membersByChat.size(), partners.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addChatLocked(final ChatRoom chatRoom) {
+        putMembersLocked(chatRoom.getChatId(), chatRoom.getUsers().stream().map(UserDto::getUserId).toList());
+    }
+
+    private void putMembersLocked(final String chatId, final List<String> memberIds) {
+        List<String> members = memberIds.stream()
+                .map(String::intern)
+                .distinct()
+                .toList();
+        List<String> previous = membersByChat.get(chatId);
+        if (members.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            removeChatLocked(chatId);
+        }
+        membersByChat.put(chatId, members);
+        link(members, 1);
+    }
+
+    private void removeChatLocked(final String chatId) {
+        List<String> members = membersByChat.remove(chatId);
+        if (members != null) {
+            link(members, -1);
+        }
+    }
+
+    private void link(final List<String> members, final int delta) {
+        for (String userId : members) {
+            Map<String, Integer> contacts = partners.computeIfAbsent(userId, key -> new HashMap<>());
+            for (String partnerId : members) {
+                if (!partnerId.equals(userId)) {
+                    contacts.merge(partnerId, delta, (count, change) -> count + change == 0 ? null : count + change);
+                }
+            }
+            if (contacts.isEmpty()) {
+                partners.remove(userId);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.chat.MessageCursor;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.repositories.ChatMessageRepository;
+import com.communicator.repositories.reactive.ReactiveChatMessageRepository;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores every chat message as its own document, read through the (chatId, timestamp, _id) index.
+ */
+public class DocumentChatMessageStore implements ChatMessageStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ReactiveChatMessageRepository reactiveChatMessageRepository;
+
+    /**
+     * Creates the store.
+     *
+     * @param mongoTemplateBean template used for bulk inserts and history queries
+     * @param chatMessageRepo repository with chat messages
+     * @param reactiveChatMessageRepo reactive repository with chat messages
+     */
+    public DocumentChatMessageStore(final MongoTemplate mongoTemplateBean,
+                                    final ChatMessageRepository chatMessageRepo,
+                                    final ReactiveChatMessageRepository reactiveChatMessageRepo) {
+        this.mongoTemplate = mongoTemplateBean;
+        this.chatMessageRepository = chatMessageRepo;
+        this.reactiveChatMessageRepository = reactiveChatMessageRepo;
+    }
+
+    @Override
+    public void saveAll(final List<ChatMessage> messages) {
+        mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessage.class)
+                .insert(messages)
+                .execute();
+    }
+
+    @Override
+    public void save(final ChatMessage message) {
+        mongoTemplate.save(message);
+    }
+
+    @Override
+    public Optional<ChatMessage> findById(final String messageId) {
+        return chatMessageRepository.findById(messageId);
+    }
+
+    @Override
+    public List<ChatMessage> findLastMessages(final String chatId) {
+        return chatMessageRepository.findTop20ByChatIdOrderByTimestampDesc(chatId);
+    }
+
+    @Override
+    public Mono<List<ChatMessage>> findLastMessagesReactive(final String chatId) {
+        return reactiveChatMessageRepository.findTop20ByChatIdOrderByTimestampDesc(chatId).collectList();
+    }
+
+    @Override
+    public List<ChatMessage> findBefore(final String chatId, final MessageCursor position, final int limit) {
+        Criteria criteria = Criteria.where("chatId").is(chatId);
+        if (position != null) {
+            criteria.orOperator(
+                    Criteria.where("timestamp").lt(position.timestamp()),
+                    Criteria.where("timestamp").is(position.timestamp()).and("messageId").lt(position.messageId()));
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "messageId"))
+                .limit(limit);
+        return mongoTemplate.find(query, ChatMessage.class);
+    }
+}
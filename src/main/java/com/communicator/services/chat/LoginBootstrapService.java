@@ -0,0 +1,135 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.chat.MessagesAfterLoginDto;
+import com.communicator.entity.chat.ChatRoom;
+import com.communicator.entity.chat.UndeliveredMessage;
+import com.communicator.repositories.ChatRepository;
+import com.communicator.repositories.reactive.ReactiveChatRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the {@code ALL_CHATS} payload a client receives after acknowledging its subscription.
+ *
+ * <p>The first page of undelivered messages and the most recent chats are loaded concurrently on
+ * virtual threads, while friends' activity comes from {@link ContactGraph} and
+ * {@link PresenceService} without touching the database. The time spent is recorded in the
+ * {@code chat.login.bootstrap} timer, which publishes the 50th, 95th and 99th percentiles so
+ * reconnect storms are visible.</p>
+ *
+ * <p>{@link #bootstrapReactive} builds the same payload with the reactive driver for
+ * {@link ReactiveChatPipeline}.</p>
+ */
+@Service
+public class LoginBootstrapService {
+
+    private static final int RECENT_CHATS = 10;
+
+    private final OfflineOutboxService offlineOutboxService;
+    private final ChatRepository chatRepository;
+    private final ReactiveChatRepository reactiveChatRepository;
+    private final ChatService chatService;
+    private final ContactGraph contactGraph;
+    private final PresenceService presenceService;
+    private final Timer bootstrapTimer;
+
+    /**
+     * Creates the service.
+     *
+     * @param offlineOutboxServiceBean outbox with undelivered messages
+     * @param chatRepo repository used to load recent chats
+     * @param reactiveChatRepo reactive repository used to load recent chats
+     * @param chatServiceBean service mapping chats to previews
+     * @param contactGraphBean graph of chat partners
+     * @param presenceServiceBean in-memory presence
+     * @param meterRegistry registry the bootstrap timer is published to
+     */
+    public LoginBootstrapService(final OfflineOutboxService offlineOutboxServiceBean,
+                                 final ChatRepository chatRepo,
+                                 final ReactiveChatRepository reactiveChatRepo,
+                                 final ChatService chatServiceBean,
+                                 final ContactGraph contactGraphBean,
+                                 final PresenceService presenceServiceBean,
+                                 final MeterRegistry meterRegistry) {
+        this.offlineOutboxService = offlineOutboxServiceBean;
+        this.chatRepository = chatRepo;
+        this.reactiveChatRepository = reactiveChatRepo;
+        this.chatService = chatServiceBean;
+        this.contactGraph = contactGraphBean;
+        this.presenceService = presenceServiceBean;
+        this.bootstrapTimer = Timer.builder("chat.login.bootstrap")
+                .description("Time to build the ALL_CHATS payload after a client acknowledges its subscription")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads everything a client needs after connecting.
+     *
+     * @param userId user's phone number
+     * @return payload of the {@code ALL_CHATS} message
+     */
+    public MessagesAfterLoginDto bootstrap(final String userId) {
+        return bootstrapTimer.record(() -> {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                Future<List<UndeliveredMessage>> undeliveredMessages =
+                        executor.submit(() -> offlineOutboxService.nextPage(userId));
+                Future<List<ChatRoom>> chatRooms = executor.submit(() ->
+                        chatRepository.findRecentByUserId(userId, PageRequest.ofSize(RECENT_CHATS)));
+                Map<String, Boolean> friendsActivity = getFriendsActivity(userId);
+
+                return new MessagesAfterLoginDto(chatService.toChatPreviewList(chatRooms.get()),
+                        undeliveredMessages.get(), friendsActivity);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading chats of " + userId, e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to load chats of " + userId, e.getCause());
+            }
+        });
+    }
+
+    /**
+     * Non-blocking variant of {@link #bootstrap}: both queries run concurrently on the reactive
+     * driver and no thread waits for them.
+     *
+     * @param userId user's phone number
+     * @return payload of the {@code ALL_CHATS} message
+     */
+    public Mono<MessagesAfterLoginDto> bootstrapReactive(final String userId) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return Mono.zip(offlineOutboxService.nextPageReactive(userId),
+                            reactiveChatRepository.findRecentByUserId(userId, PageRequest.ofSize(RECENT_CHATS))
+                                    .collectList())
+                    .map(results -> new MessagesAfterLoginDto(chatService.toChatPreviewList(results.getT2()),
+                            results.getT1(), getFriendsActivity(userId)))
+                    .doFinally(signal -> sample.stop(bootstrapTimer));
+        });
+    }
+
+    /**
+     * Activity status of every chat partner of the user.
+     *
+     * @param userId user's phone number
+     * @return map of partner id to online status
+     */
+    public Map<String, Boolean> getFriendsActivity(final String userId) {
+        Map<String, Boolean> friendsActivity = new HashMap<>();
+        for (String friendId : contactGraph.getContacts(userId)) {
+            friendsActivity.put(friendId, presenceService.isOnline(friendId));
+        }
+        return friendsActivity;
+    }
+}
@@ -0,0 +1,240 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.MessageType;
+import com.communicator.entity.chat.OutboxSequence;
+import com.communicator.entity.chat.UndeliveredMessage;
+import com.communicator.repositories.UndeliveredMessageRepository;
+import com.communicator.repositories.reactive.ReactiveUndeliveredMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable per-user outbox for messages that could not be delivered live.
+ *
+ * <p>Each entry gets the next value of its recipient's sequence. Clients acknowledge the highest
+ * sequence they processed and receive the next page right away; acknowledged entries are hidden
+ * from replay immediately and deleted in batches by the trim thread. Reconnecting therefore only
+ * costs as much as the client actually missed.</p>
+ *
+ * <p>The {@code chat.outbox.depth} gauge is refreshed from the collection's estimated count on the
+ * trim thread, so scraping it never queries Mongo; {@code chat.outbox.enqueued} counts new entries.</p>
+ *
+ * <p>{@link #enqueueReactive} and {@link #nextPageReactive} are the non-blocking counterparts used
+ * by {@link ReactiveChatPipeline}.</p>
+ */
+@Service
+@Slf4j
+public class OfflineOutboxService {
+
+    private static final Update SEQUENCE_UPDATE = new Update().inc("sequence", 1);
+    private static final FindAndModifyOptions SEQUENCE_OPTIONS =
+            FindAndModifyOptions.options().returnNew(true).upsert(true);
+
+    private final UndeliveredMessageRepository undeliveredMessageRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ReactiveUndeliveredMessageRepository reactiveUndeliveredMessageRepository;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final int pageSize;
+    private final long trimIntervalMillis;
+    private final Map<String, Long> acknowledged = new ConcurrentHashMap<>();
+    private final AtomicLong depth = new AtomicLong();
+    private final Counter enqueuedCounter;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates the outbox.
+     *
+     * @param undeliveredMessageRepo repository with undelivered messages
+     * @param mongoTemplateBean template used for sequences and trimming
+     * @param reactiveUndeliveredMessageRepo reactive repository with undelivered messages
+     * @param reactiveMongoTemplateBean reactive template used for sequences
+     * @param pageSizeProp number of entries replayed at once
+     * @param trimIntervalMillisProp how often acknowledged entries are deleted
+     * @param meterRegistry registry the outbox metrics are published to
+     */
+    public OfflineOutboxService(final UndeliveredMessageRepository undeliveredMessageRepo,
+                                final MongoTemplate mongoTemplateBean,
+                                final ReactiveUndeliveredMessageRepository reactiveUndeliveredMessageRepo,
+                                final ReactiveMongoTemplate reactiveMongoTemplateBean,
+                                @Value("${application.outbox.page-size}") final int pageSizeProp,
+                                @Value("${application.outbox.trim-interval-ms}") final long trimIntervalMillisProp,
+                                final MeterRegistry meterRegistry) {
+        this.undeliveredMessageRepository = undeliveredMessageRepo;
+        this.mongoTemplate = mongoTemplateBean;
+        this.reactiveUndeliveredMessageRepository = reactiveUndeliveredMessageRepo;
+        this.reactiveMongoTemplate = reactiveMongoTemplateBean;
+        this.pageSize = pageSizeProp;
+        this.trimIntervalMillis = trimIntervalMillisProp;
+
+        Gauge.builder("chat.outbox.depth", depth, AtomicLong::get)
+                .description("Stored undelivered messages, including acknowledged ones not trimmed yet")
+                .register(meterRegistry);
+        this.enqueuedCounter = Counter.builder("chat.outbox.enqueued")
+                .description("Messages stored for offline users")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the trim thread.
+     */
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("outbox-trim").factory());
+        scheduler.scheduleWithFixedDelay(() -> {
+            trimSafely();
+            measureDepth();
+        }, trimIntervalMillis, trimIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the trim thread and deletes everything acknowledged so far.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(trimIntervalMillis * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        trimSafely();
+    }
+
+    /**
+     * Stores a message for a user who is not connected.
+     *
+     * @param userId recipient id
+     * @param type message type
+     * @param payload message content
+     * @return stored entry
+     */
+    public UndeliveredMessage enqueue(final String userId, final MessageType type, final Object payload) {
+        UndeliveredMessage saved = undeliveredMessageRepository.save(
+                entry(userId, nextSequence(userId), type, payload));
+        enqueuedCounter.increment();
+        return saved;
+    }
+
+    /**
+     * Non-blocking variant of {@link #enqueue}.
+     *
+     * @param userId recipient id
+     * @param type message type
+     * @param payload message content
+     * @return stored entry
+     */
+    public Mono<UndeliveredMessage> enqueueReactive(final String userId, final MessageType type,
+                                                    final Object payload) {
+        return reactiveMongoTemplate.findAndModify(sequenceQuery(userId), SEQUENCE_UPDATE, SEQUENCE_OPTIONS,
+                        OutboxSequence.class)
+                .flatMap(outboxSequence -> reactiveUndeliveredMessageRepository.save(
+                        entry(userId, outboxSequence.getSequence(), type, payload)))
+                .doOnNext(saved -> enqueuedCounter.increment());
+    }
+
+    /**
+     * Returns the oldest entries the user has not acknowledged yet.
+     *
+     * @param userId user id
+     * @return at most one page of entries, ordered by sequence
+     */
+    public List<UndeliveredMessage> nextPage(final String userId) {
+        long lastAcknowledged = acknowledged.getOrDefault(userId, 0L);
+        return undeliveredMessageRepository.findByUserIdAndSequenceGreaterThanOrderBySequenceAsc(userId,
+                lastAcknowledged, Pageable.ofSize(pageSize));
+    }
+
+    /**
+     * Non-blocking variant of {@link #nextPage}.
+     *
+     * @param userId user id
+     * @return at most one page of entries, ordered by sequence
+     */
+    public Mono<List<UndeliveredMessage>> nextPageReactive(final String userId) {
+        long lastAcknowledged = acknowledged.getOrDefault(userId, 0L);
+        return reactiveUndeliveredMessageRepository.findByUserIdAndSequenceGreaterThanOrderBySequenceAsc(userId,
+                lastAcknowledged, Pageable.ofSize(pageSize)).collectList();
+    }
+
+    /**
+     * Marks all entries up to the given sequence as delivered. They are deleted with the next trim.
+     *
+     * @param userId user id
+     * @param sequence highest sequence processed by the client
+     */
+    public void acknowledge(final String userId, final long sequence) {
+        acknowledged.merge(userId, sequence, Math::max);
+    }
+
+    private long nextSequence(final String userId) {
+        OutboxSequence outboxSequence = mongoTemplate.findAndModify(sequenceQuery(userId), SEQUENCE_UPDATE,
+                SEQUENCE_OPTIONS, OutboxSequence.class);
+        return outboxSequence.getSequence();
+    }
+
+    private static Query sequenceQuery(final String userId) {
+        return Query.query(Criteria.where("_id").is(userId));
+    }
+
+    private static UndeliveredMessage entry(final String userId, final long sequence, final MessageType type,
+                                            final Object payload) {
+        return UndeliveredMessage.builder()
+                .userId(userId)
+                .sequence(sequence)
+                .payload(payload)
+                .type(type.name())
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    private void measureDepth() {
+        try {
+            depth.set(mongoTemplate.estimatedCount(UndeliveredMessage.class));
+        } catch (RuntimeException e) {
+            log.debug("Failed to measure outbox depth", e);
+        }
+    }
+
+    private void trimSafely() {
+        if (acknowledged.isEmpty()) {
+            return;
+        }
+        Map<String, Long> batch = new HashMap<>(acknowledged);
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                UndeliveredMessage.class);
+        batch.forEach((userId, sequence) -> operations.remove(
+                Query.query(Criteria.where("userId").is(userId).and("sequence").lte(sequence))));
+        try {
+            operations.execute();
+            // Keep acknowledgements that arrived while trimming for the next round.
+            batch.forEach(acknowledged::remove);
+        } catch (RuntimeException e) {
+            log.warn("Failed to trim outbox of {} users", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.communicator.services.chat;
+
+import com.communicator.entity.AppUser;
+import com.communicator.entity.chat.ActivityStatusUpdate;
+import com.communicator.services.cluster.ClusterMessagingService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * In-memory presence of connected users.
+ *
+ * <p>A user is online while at least one of their WebSocket sessions is open. Status changes are
+ * not broadcast right away: a change is published only after the user's status has been stable
+ * for the debounce window, so a client that reconnects within the window causes no traffic at all.
+ * Session counts are kept per node; whether a user is online anywhere in the cluster is answered
+ * by {@link ClusterMessagingService}.
+ * Changes that are due are coalesced into one frame per online recipient, see
+ * {@link ChatBroadcastService#sendStatusUpdates}, and the {@code active} flag and last-seen time
+ * are then written to Mongo in a single bulk operation on the presence thread.</p>
+ *
+ * <p>Published metrics: {@code websocket.sessions.active} and {@code presence.online.users}
+ * gauges, the {@code presence.sessions.per.user} summary of a user's session count whenever a
+ * session opens, and the {@code presence.broadcast.fanout} summary of recipients per flush.</p>
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    private static final int RESET_BATCH = 1000;
+
+    private final ChatBroadcastService chatBroadcastService;
+    private final ClusterMessagingService clusterMessagingService;
+    private final ContactGraph contactGraph;
+    private final MongoTemplate mongoTemplate;
+    private final long debounceNanos;
+    private final long flushIntervalMillis;
+
+    private final Map<String, Integer> sessionCounts = new ConcurrentHashMap<>();
+    private final Map<String, Long> changedAt = new ConcurrentHashMap<>();
+    private final Set<String> publishedOnline = ConcurrentHashMap.newKeySet();
+    private final DistributionSummary sessionsPerUser;
+    private final DistributionSummary broadcastFanOut;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates the service.
+     *
+     * @param chatBroadcastServiceBean service sending the status frames
+     * @param clusterMessagingServiceBean service tracking on which nodes users are connected
+     * @param contactGraphBean graph used to find chat partners
+     * @param mongoTemplateBean template used to persist last-seen times
+     * @param debounceMillis time a status has to be stable before it is broadcast
+     * @param flushIntervalMillisProp how often due status changes are published
+     * @param meterRegistry registry the presence metrics are published to
+     */
+    public PresenceService(final ChatBroadcastService chatBroadcastServiceBean,
+                           final ClusterMessagingService clusterMessagingServiceBean,
+                           final ContactGraph contactGraphBean,
+                           final MongoTemplate mongoTemplateBean,
+                           @Value("${application.presence.debounce-ms}") final long debounceMillis,
+                           @Value("${application.presence.flush-interval-ms}") final long flushIntervalMillisProp,
+                           final MeterRegistry meterRegistry) {
+        this.chatBroadcastService = chatBroadcastServiceBean;
+        this.clusterMessagingService = clusterMessagingServiceBean;
+        this.contactGraph = contactGraphBean;
+        this.mongoTemplate = mongoTemplateBean;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.flushIntervalMillis = flushIntervalMillisProp;
+
+        Gauge.builder("websocket.sessions.active", this, PresenceService::getTotalSessionCount)
+                .description("Open WebSocket sessions on this node")
+                .register(meterRegistry);
+        Gauge.builder("presence.online.users", this, PresenceService::getOnlineUserCount)
+                .description("Users with at least one open session on this node")
+                .register(meterRegistry);
+        this.sessionsPerUser = DistributionSummary.builder("presence.sessions.per.user")
+                .description("Open sessions of a user, recorded whenever one of their sessions opens")
+                .register(meterRegistry);
+        this.broadcastFanOut = DistributionSummary.builder("presence.broadcast.fanout")
+                .description("Recipients of one presence flush")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resets persisted activity flags and starts the presence thread.
+     */
+    @PostConstruct
+    public void start() {
+        resetStaleActivity();
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("presence").factory());
+        scheduler.scheduleWithFixedDelay(this::publishSafely, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Clears activity flags left behind by an unclean shutdown. Users connected to another node of
+     * the cluster keep theirs, so a node joining the cluster does not mark them offline.
+     */
+    void resetStaleActivity() {
+        Query active = Query.query(Criteria.where("active").is(true));
+        active.fields().include("_id");
+        List<String> stale = new ArrayList<>(RESET_BATCH);
+        long reset = 0;
+        try (Stream<AppUser> activeUsers = mongoTemplate.stream(active, AppUser.class)) {
+            for (AppUser appUser : (Iterable<AppUser>) activeUsers::iterator) {
+                if (!clusterMessagingService.isConnected(appUser.getPhoneNumber())) {
+                    stale.add(appUser.getPhoneNumber());
+                }
+                if (stale.size() == RESET_BATCH) {
+                    reset += markInactive(stale);
+                    stale.clear();
+                }
+            }
+        }
+        reset += markInactive(stale);
+        if (reset > 0) {
+            log.info("Cleared stale activity flags of {} users", reset);
+        }
+    }
+
+    private long markInactive(final List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        return mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(userIds).and("active").is(true)),
+                new Update().set("active", false), AppUser.class).getModifiedCount();
+    }
+
+    /**
+     * Stops the presence thread and publishes everything that changed, debounced or not.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushIntervalMillis * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            publish(Long.MAX_VALUE);
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish presence changes on shutdown", e);
+        }
+    }
+
+    /**
+     * Registers a new WebSocket session of the user.
+     *
+     * @param userId user's phone number
+     */
+    public void sessionOpened(final String userId) {
+        int sessions = sessionCounts.merge(userId, 1, Integer::sum);
+        sessionsPerUser.record(sessions);
+        if (sessions == 1) {
+            clusterMessagingService.userConnected(userId);
+            changedAt.put(userId, System.nanoTime());
+        }
+    }
+
+    /**
+     * Unregisters a closed WebSocket session of the user.
+     *
+     * @param userId user's phone number
+     */
+    public void sessionClosed(final String userId) {
+        Integer sessions = sessionCounts.computeIfPresent(userId, (key, count) -> count > 1 ? count - 1 : null);
+        if (sessions == null) {
+            clusterMessagingService.userDisconnected(userId);
+            changedAt.put(userId, System.nanoTime());
+        }
+    }
+
+    /**
+     * Checks if the user has at least one open session on any node.
+     *
+     * @param userId user's phone number
+     * @return true if the user is online
+     */
+    public boolean isOnline(final String userId) {
+        return sessionCounts.containsKey(userId) || clusterMessagingService.isConnected(userId);
+    }
+
+    /**
+     * Number of open sessions of the user on this node.
+     *
+     * @param userId user's phone number
+     * @return session count
+     */
+    public int getSessionCount(final String userId) {
+        return sessionCounts.getOrDefault(userId, 0);
+    }
+
+    /**
+     * Number of users with at least one open session on this node.
+     *
+     * @return online user count
+     */
+    public int getOnlineUserCount() {
+        return sessionCounts.size();
+    }
+
+    /**
+     * Number of open sessions on this node. Walks all online users, so it is meant for metrics only.
+     *
+     * @return session count
+     */
+    public int getTotalSessionCount() {
+        return sessionCounts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private void publishSafely() {
+        try {
+            publish(System.nanoTime() - debounceNanos);
+        } catch (RuntimeException e) {
+            log.error("Failed to publish presence changes", e);
+        }
+    }
+
+    private void publish(final long changedBefore) {
+        List<ActivityStatusUpdate> changes = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : changedAt.entrySet()) {
+            String userId = entry.getKey();
+            if (entry.getValue() > changedBefore || !changedAt.remove(userId, entry.getValue())) {
+                continue;
+            }
+            boolean online = isOnline(userId);
+            boolean changed = online ? publishedOnline.add(userId) : publishedOnline.remove(userId);
+            if (changed) {
+                changes.add(new ActivityStatusUpdate(userId, online));
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<ActivityStatusUpdate>> updatesByRecipient = new HashMap<>();
+        for (ActivityStatusUpdate change : changes) {
+            for (String friendId : contactGraph.getContacts(change.userId())) {
+                if (isOnline(friendId)) {
+                    updatesByRecipient.computeIfAbsent(friendId, key -> new ArrayList<>()).add(change);
+                }
+            }
+        }
+        updatesByRecipient.forEach(chatBroadcastService::sendStatusUpdates);
+        broadcastFanOut.record(updatesByRecipient.size());
+
+        persistLastSeen(changes);
+    }
+
+    private void persistLastSeen(final List<ActivityStatusUpdate> changes) {
+        Instant now = Instant.now();
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AppUser.class);
+        for (ActivityStatusUpdate change : changes) {
+            operations.updateOne(Query.query(Criteria.where("_id").is(change.userId())),
+                    new Update().set("active", change.active()).set("lastSeen", now));
+        }
+        try {
+            operations.execute();
+        } catch (RuntimeException e) {
+            log.warn("Failed to persist presence of {} users", changes.size(), e);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.MessageType;
+import com.communicator.entity.TypedWebSocketMessage;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.services.cluster.ClusterMessagingService;
+import com.communicator.services.cluster.SerializedMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking variant of the message path, enabled with {@code application.chat.reactive.enabled}.
+ *
+ * <p>Sending a chat message, building the {@code ALL_CHATS} payload after an acknowledgment and
+ * loading the last messages of a chat become reactive pipelines on the reactive Mongo driver.
+ * The handler thread only submits the pipeline and returns, so a few threads serve any number
+ * of sessions while Mongo round trips are in flight. Pipelines are queued and at most
+ * {@code max-concurrency} of them run at once, which bounds the load a reconnect storm puts on
+ * Mongo. When the queue is full the pipeline runs on the submitting thread instead, throttling
+ * the sender like the write-behind pipeline does.</p>
+ *
+ * <p>A chat message gets its id and timestamp and is handed to the write-behind pipeline and the
+ * chat's tail on the handler thread, before anything is submitted, so it is accepted in the order
+ * it was received even when the pipeline queue is full or the chat has to be loaded first. Only
+ * resolving the members and the fan-out are reactive. Delivery to online members happens in the
+ * same order as long as the chat's members are cached; the first message of a chat that is not
+ * cached waits for the chat to load, and members who are offline get their outbox entries once
+ * the reactive writes finish.</p>
+ */
+@Service
+@Slf4j
+public class ReactiveChatPipeline {
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ChatService chatService;
+    private final ChatMessageService chatMessageService;
+    private final ClusterMessagingService clusterMessagingService;
+    private final PresenceService presenceService;
+    private final OfflineOutboxService offlineOutboxService;
+    private final LoginBootstrapService loginBootstrapService;
+    private final ChatTailCache chatTailCache;
+    private final boolean enabled;
+    private final int maxConcurrency;
+    private final Sinks.Many<Mono<Void>> pipelines;
+    private final Counter throttledCounter;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private Disposable subscription;
+
+    /**
+     * Creates the pipeline.
+     *
+     * @param chatServiceBean service resolving chat members
+     * @param chatMessageServiceBean service persisting chat messages
+     * @param clusterMessagingServiceBean service delivering frames to users on any node
+     * @param presenceServiceBean in-memory presence
+     * @param offlineOutboxServiceBean outbox for members who are offline
+     * @param loginBootstrapServiceBean service building the {@code ALL_CHATS} payload
+     * @param chatTailCacheBean cache the last messages are read from
+     * @param enabledProp whether handlers use this pipeline instead of the blocking path
+     * @param maxConcurrencyProp maximum number of pipelines running at once
+     * @param queueCapacity maximum number of pipelines waiting to run
+     * @param meterRegistry registry the throttling counter is published to
+     */
+    public ReactiveChatPipeline(final ChatService chatServiceBean,
+                                final ChatMessageService chatMessageServiceBean,
+                                final ClusterMessagingService clusterMessagingServiceBean,
+                                final PresenceService presenceServiceBean,
+                                final OfflineOutboxService offlineOutboxServiceBean,
+                                final LoginBootstrapService loginBootstrapServiceBean,
+                                final ChatTailCache chatTailCacheBean,
+                                @Value("${application.chat.reactive.enabled}") final boolean enabledProp,
+                                @Value("${application.chat.reactive.max-concurrency}") final int maxConcurrencyProp,
+                                @Value("${application.chat.reactive.queue-capacity}") final int queueCapacity,
+                                final MeterRegistry meterRegistry) {
+        this.chatService = chatServiceBean;
+        this.chatMessageService = chatMessageServiceBean;
+        this.clusterMessagingService = clusterMessagingServiceBean;
+        this.presenceService = presenceServiceBean;
+        this.offlineOutboxService = offlineOutboxServiceBean;
+        this.loginBootstrapService = loginBootstrapServiceBean;
+        this.chatTailCache = chatTailCacheBean;
+        this.enabled = enabledProp;
+        this.maxConcurrency = maxConcurrencyProp;
+        this.pipelines = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(queueCapacity));
+        this.throttledCounter = Counter.builder("chat.reactive.throttled")
+                .description("Pipelines run on the submitting thread because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts running submitted pipelines.
+     */
+    @PostConstruct
+    public void start() {
+        subscription = pipelines.asFlux()
+                .flatMap(pipeline -> pipeline.onErrorResume(e -> {
+                    log.error("Reactive chat pipeline failed", e);
+                    return Mono.empty();
+                }), maxConcurrency)
+                .doFinally(signal -> terminated.countDown())
+                .subscribe();
+    }
+
+    /**
+     * Stops accepting pipelines and waits for queued ones to finish.
+     */
+    @PreDestroy
+    public void stop() {
+        pipelines.tryEmitComplete();
+        try {
+            if (!terminated.await(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Reactive chat pipelines still running after {}", SHUTDOWN_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        subscription.dispose();
+    }
+
+    /**
+     * Whether message handlers should use this pipeline.
+     *
+     * @return true in reactive mode
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Persists a chat message and delivers it to the chat's members.
+     *
+     * @param chatMessage chat message
+     */
+    public void sendMessage(final ChatMessage chatMessage) {
+        chatMessageService.queueChatMessage(chatMessage);
+        submit(chatService.getMemberIdsReactive(chatMessage.getChatId())
+                .flatMap(memberIds -> deliver(memberIds, chatMessage)));
+    }
+
+    /**
+     * Sends the {@code ALL_CHATS} payload to a user who acknowledged the subscription.
+     *
+     * @param userId user's phone number
+     */
+    public void sendAllChats(final String userId) {
+        submit(loginBootstrapService.bootstrapReactive(userId)
+                .doOnNext(payload -> clusterMessagingService.sendToUser(userId,
+                        new TypedWebSocketMessage(MessageType.ALL_CHATS, payload)))
+                .then());
+    }
+
+    /**
+     * Sends the last messages of a chat to a user.
+     *
+     * @param chatId chat id
+     * @param userId user's phone number
+     */
+    public void sendLastMessages(final String chatId, final String userId) {
+        submit(chatTailCache.getLastMessagesReactive(chatId)
+                .doOnNext(messages -> clusterMessagingService.sendToUser(userId,
+                        new TypedWebSocketMessage(MessageType.LAST_MESSAGES, messages)))
+                .then());
+    }
+
+    private Mono<Void> deliver(final List<String> memberIds, final ChatMessage chatMessage) {
+        TypedWebSocketMessage message = new TypedWebSocketMessage(MessageType.CHAT_MESSAGE, chatMessage);
+        SerializedMessage serializedMessage = null;
+        List<String> offlineMemberIds = new ArrayList<>();
+        for (String userId : memberIds) {
+            if (presenceService.isOnline(userId)) {
+                if (serializedMessage == null) {
+                    serializedMessage = clusterMessagingService.serialize(message);
+                }
+                clusterMessagingService.sendToUser(userId, serializedMessage);
+            } else {
+                offlineMemberIds.add(userId);
+            }
+        }
+        return Flux.fromIterable(offlineMemberIds)
+                .flatMap(userId -> offlineOutboxService.enqueueReactive(userId, MessageType.CHAT_MESSAGE,
+                        chatMessage))
+                .then();
+    }
+
+    private void submit(final Mono<Void> pipeline) {
+        Sinks.EmitResult result;
+        do {
+            result = pipelines.tryEmitNext(pipeline);
+        } while (result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            throttledCounter.increment();
+            pipeline.block();
+        } else if (result.isFailure()) {
+            log.warn("Reactive chat pipeline rejected: {}", result);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.communicator.services.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport relaying messages between server nodes.
+ */
+public interface ClusterBroker {
+
+    /**
+     * Starts delivering envelopes addressed to the node. Envelopes are delivered to the listener
+     * in the order they were published by each sender.
+     *
+     * @param nodeId id of the subscribing node
+     * @param listener receiver of the envelopes
+     */
+    void subscribe(String nodeId, Consumer<ClusterEnvelope> listener);
+
+    /**
+     * Starts delivering events broadcast by other nodes. Events are delivered to the listener in
+     * the order they were broadcast by each sender, see {@link ClusterEventBus}.
+     *
+     * @param nodeId id of the subscribing node
+     * @param listener receiver of the events
+     */
+    void subscribeEvents(String nodeId, Consumer<ClusterEvent> listener);
+
+    /**
+     * Stops delivering envelopes and events to the node.
+     *
+     * @param nodeId id of the node
+     */
+    void unsubscribe(String nodeId);
+
+    /**
+     * Sends an envelope to another node. Envelopes addressed to nodes without a subscription are
+     * dropped.
+     *
+     * @param nodeId id of the receiving node
+     * @param envelope message to relay
+     */
+    void publish(String nodeId, ClusterEnvelope envelope);
+
+    /**
+     * Sends an event to every node subscribed to events except the sender.
+     *
+     * @param senderNodeId id of the sending node
+     * @param event change to apply on the other nodes
+     */
+    void broadcast(String senderNodeId, ClusterEvent event);
+}
@@ -0,0 +1,10 @@
+package com.communicator.services.cluster;
+
+/**
+ * Message relayed to the node holding the recipient's WebSocket session.
+ *
+ * @param userId recipient id
+ * @param payload STOMP frame body, already serialized by the sending node
+ */
+public record ClusterEnvelope(String userId, byte[] payload) {
+}
@@ -0,0 +1,11 @@
+package com.communicator.services.cluster;
+
+/**
+ * Change of node-local state that every other node has to apply as well, like a logout or a new
+ * chat. Events are published with {@link ClusterEventBus#publish}.
+ *
+ * <p>Implementations are records of plain values, so a transport between processes can serialize
+ * them as they are.</p>
+ */
+public interface ClusterEvent {
+}
@@ -0,0 +1,87 @@
+package com.communicator.services.cluster;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps state that every node holds in memory, like revocations and the contact graph, the same
+ * across the cluster.
+ *
+ * <p>The node that changes such state publishes a {@link ClusterEvent} after applying it locally,
+ * and the {@link ClusterBroker} delivers it to every other node, where the listeners registered
+ * for its type apply it too. Events are not delivered back to the publishing node. Delivery is
+ * best effort like relayed messages: a node that was not subscribed when an event was published
+ * picks the change up from the database when it builds its state. The node leaves the cluster in
+ * {@link ClusterMessagingService#stop}, which ends event delivery as well.</p>
+ */
+@Service
+@Slf4j
+public class ClusterEventBus {
+
+    private final ClusterBroker clusterBroker;
+    private final String nodeId;
+    private final Map<Class<?>, List<Consumer<ClusterEvent>>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the bus.
+     *
+     * @param clusterBrokerBean transport relaying events between nodes
+     * @param nodeIdProp id of this node, unique within the cluster
+     */
+    public ClusterEventBus(final ClusterBroker clusterBrokerBean,
+                           @Value("${application.cluster.node-id}") final String nodeIdProp) {
+        this.clusterBroker = clusterBrokerBean;
+        this.nodeId = nodeIdProp;
+    }
+
+    /**
+     * Starts receiving events published by other nodes.
+     */
+    @PostConstruct
+    public void start() {
+        clusterBroker.subscribeEvents(nodeId, this::dispatch);
+    }
+
+    /**
+     * Registers a listener for events of a type published by other nodes.
+     *
+     * @param type event type
+     * @param listener receiver of the events, called on the transport's delivery thread
+     * @param <T> event type
+     */
+    public <T extends ClusterEvent> void listen(final Class<T> type, final Consumer<? super T> listener) {
+        listeners.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>())
+                .add(event -> listener.accept(type.cast(event)));
+    }
+
+    /**
+     * Sends an event to every other node.
+     *
+     * @param event change already applied on this node
+     */
+    public void publish(final ClusterEvent event) {
+        try {
+            clusterBroker.broadcast(nodeId, event);
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish {} to the cluster", event.getClass().getSimpleName(), e);
+        }
+    }
+
+    private void dispatch(final ClusterEvent event) {
+        for (Consumer<ClusterEvent> listener : listeners.getOrDefault(event.getClass(), List.of())) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.error("Failed to apply {} from the cluster", event.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.communicator.services.cluster;
+
+import com.communicator.entity.TypedWebSocketMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers WebSocket messages to users no matter which node holds their sessions.
+ *
+ * <p>Messages are serialized once with the broker's message converter and the same bytes are
+ * handed to the local broker for users connected to this node and relayed through the
+ * {@link ClusterBroker} to every node the {@link UserRoutingTable} names for users connected
+ * elsewhere. Sending one message to a group therefore costs a single serialization no matter how
+ * many recipients and nodes it reaches.</p>
+ */
+@Service
+@Slf4j
+public class ClusterMessagingService {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ClusterBroker clusterBroker;
+    private final UserRoutingTable userRoutingTable;
+    private final String nodeId;
+    private final Set<String> localUsers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates the service.
+     *
+     * @param messagingTemplateBean template of the local broker
+     * @param clusterBrokerBean transport relaying messages between nodes
+     * @param userRoutingTableBean table of nodes holding users' sessions
+     * @param nodeIdProp id of this node, unique within the cluster
+     */
+    public ClusterMessagingService(final SimpMessagingTemplate messagingTemplateBean,
+                                   final ClusterBroker clusterBrokerBean,
+                                   final UserRoutingTable userRoutingTableBean,
+                                   @Value("${application.cluster.node-id}") final String nodeIdProp) {
+        this.messagingTemplate = messagingTemplateBean;
+        this.clusterBroker = clusterBrokerBean;
+        this.userRoutingTable = userRoutingTableBean;
+        this.nodeId = nodeIdProp;
+    }
+
+    /**
+     * Starts receiving messages relayed by other nodes.
+     */
+    @PostConstruct
+    public void start() {
+        clusterBroker.subscribe(nodeId, this::deliverLocally);
+        log.info("Node {} joined the cluster", nodeId);
+    }
+
+    /**
+     * Leaves the cluster, so other nodes stop routing this node's users here.
+     */
+    @PreDestroy
+    public void stop() {
+        clusterBroker.unsubscribe(nodeId);
+        userRoutingTable.removeNode(nodeId);
+    }
+
+    /**
+     * Records that the user opened their first session on this node.
+     *
+     * @param userId user id
+     */
+    public void userConnected(final String userId) {
+        localUsers.add(userId);
+        userRoutingTable.register(userId, nodeId);
+    }
+
+    /**
+     * Records that the user closed their last session on this node.
+     *
+     * @param userId user id
+     */
+    public void userDisconnected(final String userId) {
+        localUsers.remove(userId);
+        userRoutingTable.unregister(userId, nodeId);
+    }
+
+    /**
+     * Checks if the user has a session on any node.
+     *
+     * @param userId user id
+     * @return true if the user is connected somewhere in the cluster
+     */
+    public boolean isConnected(final String userId) {
+        return localUsers.contains(userId) || !userRoutingTable.nodesOf(userId).isEmpty();
+    }
+
+    /**
+     * Sends a message to every session of the user in the cluster.
+     *
+     * @param userId recipient id
+     * @param message message to send
+     */
+    public void sendToUser(final String userId, final TypedWebSocketMessage message) {
+        sendToUser(userId, serialize(message));
+    }
+
+    /**
+     * Sends an already serialized message to every session of the user in the cluster. Use it
+     * with {@link #serialize(TypedWebSocketMessage)} to send one message to many recipients.
+     *
+     * @param userId recipient id
+     * @param message serialized message
+     */
+    public void sendToUser(final String userId, final SerializedMessage message) {
+        if (localUsers.contains(userId)) {
+            sendLocally(userId, message.payload());
+        }
+        for (String remoteNodeId : userRoutingTable.nodesOf(userId)) {
+            if (!remoteNodeId.equals(nodeId)) {
+                clusterBroker.publish(remoteNodeId, new ClusterEnvelope(userId, message.payload()));
+            }
+        }
+    }
+
+    /**
+     * Serializes a message with the broker's message converter.
+     *
+     * @param message message to serialize
+     * @return serialized message, reusable for any number of recipients
+     */
+    public SerializedMessage serialize(final TypedWebSocketMessage message) {
+        Message<?> converted = messagingTemplate.getMessageConverter().toMessage(message, null);
+        if (converted == null || !(converted.getPayload() instanceof byte[] payload)) {
+            throw new IllegalStateException("Cannot serialize message of type " + message.getType());
+        }
+        return new SerializedMessage(payload);
+    }
+
+    /**
+     * Id of this node.
+     *
+     * @return node id
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void deliverLocally(final ClusterEnvelope envelope) {
+        sendLocally(envelope.userId(), envelope.payload());
+    }
+
+    private void sendLocally(final String userId, final byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + userId + "/" + userId,
+                MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+}
@@ -0,0 +1,147 @@
+package com.communicator.services.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * In-process cluster transport and routing table.
+ *
+ * <p>Nodes using the same cluster name within one JVM share an instance, so several application
+ * contexts started side by side behave like a multi-node deployment without any external
+ * infrastructure. Every node gets its own delivery thread, which keeps relayed envelopes and events
+ * off the sender's thread and in publishing order, like a network hop would.</p>
+ */
+@Slf4j
+public final class LoopbackCluster implements ClusterBroker, UserRoutingTable {
+
+    private static final Map<String, LoopbackCluster> CLUSTERS = new ConcurrentHashMap<>();
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> nodesByUser = new ConcurrentHashMap<>();
+
+    private LoopbackCluster() {
+    }
+
+    /**
+     * Returns the cluster with the given name, creating it on first use.
+     *
+     * @param clusterName cluster name
+     * @return shared cluster instance
+     */
+    public static LoopbackCluster named(final String clusterName) {
+        return CLUSTERS.computeIfAbsent(clusterName, name -> new LoopbackCluster());
+    }
+
+    @Override
+    public void subscribe(final String nodeId, final Consumer<ClusterEnvelope> listener) {
+        node(nodeId).envelopeListener = listener;
+    }
+
+    @Override
+    public void subscribeEvents(final String nodeId, final Consumer<ClusterEvent> listener) {
+        node(nodeId).eventListener = listener;
+    }
+
+    @Override
+    public void unsubscribe(final String nodeId) {
+        Node node = nodes.remove(nodeId);
+        if (node != null) {
+            node.executor.shutdown();
+        }
+    }
+
+    @Override
+    public void publish(final String nodeId, final ClusterEnvelope envelope) {
+        Node node = nodes.get(nodeId);
+        Consumer<ClusterEnvelope> listener = node == null ? null : node.envelopeListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            node.executor.execute(() -> deliver(listener, envelope));
+        } catch (RejectedExecutionException e) {
+            log.debug("Node {} left the cluster, dropping message for {}", nodeId, envelope.userId());
+        }
+    }
+
+    @Override
+    public void broadcast(final String senderNodeId, final ClusterEvent event) {
+        nodes.forEach((nodeId, node) -> {
+            Consumer<ClusterEvent> listener = node.eventListener;
+            if (nodeId.equals(senderNodeId) || listener == null) {
+                return;
+            }
+            try {
+                node.executor.execute(() -> deliver(listener, event));
+            } catch (RejectedExecutionException e) {
+                log.debug("Node {} left the cluster, dropping {}", nodeId, event.getClass().getSimpleName());
+            }
+        });
+    }
+
+    @Override
+    public void register(final String userId, final String nodeId) {
+        nodesByUser.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(nodeId);
+    }
+
+    @Override
+    public void unregister(final String userId, final String nodeId) {
+        nodesByUser.computeIfPresent(userId, (key, userNodes) -> {
+            userNodes.remove(nodeId);
+            return userNodes.isEmpty() ? null : userNodes;
+        });
+    }
+
+    @Override
+    public void removeNode(final String nodeId) {
+        nodesByUser.keySet().forEach(userId -> unregister(userId, nodeId));
+    }
+
+    @Override
+    public Set<String> nodesOf(final String userId) {
+        Set<String> userNodes = nodesByUser.get(userId);
+        return userNodes == null ? Set.of() : Set.copyOf(userNodes);
+    }
+
+    private Node node(final String nodeId) {
+        return nodes.computeIfAbsent(nodeId, key -> new Node(Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("cluster-loopback-" + key).daemon().factory())));
+    }
+
+    private static void deliver(final Consumer<ClusterEnvelope> listener, final ClusterEnvelope envelope) {
+        try {
+            listener.accept(envelope);
+        } catch (RuntimeException e) {
+            log.error("Failed to deliver relayed message to {}", envelope.userId(), e);
+        }
+    }
+
+    private static void deliver(final Consumer<ClusterEvent> listener, final ClusterEvent event) {
+        try {
+            listener.accept(event);
+        } catch (RuntimeException e) {
+            log.error("Failed to deliver {}", event.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Delivery thread and listeners of one node.
+     */
+    private static final class Node {
+
+        private final ExecutorService executor;
+        private volatile Consumer<ClusterEnvelope> envelopeListener;
+        private volatile Consumer<ClusterEvent> eventListener;
+
+        Node(final ExecutorService executorService) {
+            this.executor = executorService;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.communicator.services.cluster;
+
+/**
+ * WebSocket message serialized once so it can be sent to any number of recipients.
+ *
+ * <p>The bytes are never handed out for modification; every recipient's frame shares the same
+ * array and only the per-user destination differs.</p>
+ */
+public final class SerializedMessage {
+
+    private final byte[] payload;
+
+    SerializedMessage(final byte[] payloadBytes) {
+        this.payload = payloadBytes;
+    }
+
+    /**
+     * Size of the serialized message.
+     *
+     * @return number of bytes
+     */
+    public int size() {
+        return payload.length;
+    }
+
+    byte[] payload() {
+        return payload;
+    }
+}
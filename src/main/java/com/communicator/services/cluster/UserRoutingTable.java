@@ -0,0 +1,40 @@
+package com.communicator.services.cluster;
+
+import java.util.Set;
+
+/**
+ * Cluster-wide table of nodes holding WebSocket sessions of each user.
+ */
+public interface UserRoutingTable {
+
+    /**
+     * Records that the user has a session on the node.
+     *
+     * @param userId user id
+     * @param nodeId node id
+     */
+    void register(String userId, String nodeId);
+
+    /**
+     * Records that the user has no more sessions on the node.
+     *
+     * @param userId user id
+     * @param nodeId node id
+     */
+    void unregister(String userId, String nodeId);
+
+    /**
+     * Removes every entry of a node that is shutting down.
+     *
+     * @param nodeId node id
+     */
+    void removeNode(String nodeId);
+
+    /**
+     * Nodes holding sessions of the user.
+     *
+     * @param userId user id
+     * @return node ids, empty if the user is offline
+     */
+    Set<String> nodesOf(String userId);
+}
@@ -0,0 +1,4 @@
+/**
+ * Package holding fan-out of WebSocket messages and state changes between server nodes.
+ */
+package com.communicator.services.cluster;
@@ -1,43 +1,43 @@
 package com.communicator.services.utils;
 
-import jakarta.mail.Authenticator;
-import jakarta.mail.PasswordAuthentication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
 import jakarta.mail.Session;
 import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Asynchronous email outbox.
+ *
+ * <p>{@link #sendEmail} renders the message from a template split into its static parts once,
+ * queues it and returns right away. A bounded pool of worker threads delivers queued messages,
+ * each keeping its SMTP connection open between messages and closing it only after it has been
+ * idle for a while. Failed deliveries are retried on a fresh connection with exponential backoff.
+ * Queue depth, outcomes and the time from queueing to delivery are published as metrics.</p>
+ */
 @Component
+@Slf4j
 public class EmailService {
 
-    @Value("${application.mail.service.from}")
-    private String from;
-    @Value("${application.mail.service.password}")
-    private String password;
-    @Value("${application.mail.service.host}")
-    private String host;
-    @Value("${application.mail.service.port}")
-    private int port;
-
-    /**
-     * Method to send an email via gmail smpt server.
-     *
-     * @param to      From client. User's email adress
-     * @param subject From higher method. ex. "Account verification", "Password reset"
-     * @param content Email content.
-     * @param title Email title.
-     * @param code Verification code.
-     * @return returns boolean that indicates if sending an email succeeded.
-     */
-    public boolean sendEmail(final String to, final String subject, final String title,
-                             final String content, final String code) {
-        String messageTemplate = """
+    private static final String[] TEMPLATE_PARTS = """
                 <head>
                     <style>
                         body {
@@ -89,35 +89,231 @@ public class EmailService {
                     <div id="footer"></div>
                 </body>
                 </html>
-                """;
-        String msg = String.format(messageTemplate, title, content, code);
+                """.replace("%%", "%").split("%s", -1);
+
+    private final String from;
+    private final String password;
+    private final String host;
+    private final int port;
+    private final int workers;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long idleTimeoutMillis;
+    private final Session session;
+    private final BlockingQueue<OutgoingEmail> queue;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+    private final Timer deliveryTimer;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    /**
+     * Creates the outbox.
+     *
+     * @param fromProp sender address, also used as SMTP user name
+     * @param passwordProp SMTP password
+     * @param hostProp SMTP host
+     * @param portProp SMTP port
+     * @param workersProp number of delivery threads, each with its own SMTP connection
+     * @param queueCapacity maximum number of messages waiting for delivery
+     * @param maxAttemptsProp delivery attempts per message
+     * @param backoffMillisProp delay before the first retry, doubled for every next one
+     * @param idleTimeoutMillisProp time after which an unused SMTP connection is closed
+     * @param meterRegistry registry the outbox metrics are published to
+     */
+    public EmailService(@Value("${application.mail.service.from}") final String fromProp,
+                        @Value("${application.mail.service.password}") final String passwordProp,
+                        @Value("${application.mail.service.host}") final String hostProp,
+                        @Value("${application.mail.service.port}") final int portProp,
+                        @Value("${application.mail.outbox.workers}") final int workersProp,
+                        @Value("${application.mail.outbox.queue-capacity}") final int queueCapacity,
+                        @Value("${application.mail.outbox.max-attempts}") final int maxAttemptsProp,
+                        @Value("${application.mail.outbox.backoff-ms}") final long backoffMillisProp,
+                        @Value("${application.mail.outbox.idle-timeout-ms}") final long idleTimeoutMillisProp,
+                        final MeterRegistry meterRegistry) {
+        this.from = fromProp;
+        this.password = passwordProp;
+        this.host = hostProp;
+        this.port = portProp;
+        this.workers = workersProp;
+        this.maxAttempts = maxAttemptsProp;
+        this.backoffMillis = backoffMillisProp;
+        this.idleTimeoutMillis = idleTimeoutMillisProp;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
 
+        final String socketTimeoutMillis = "10000";
         Properties props = new Properties();
         props.put("mail.smtp.auth", "true");
         props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.smtp.host", host);
-        props.put("mail.smtp.port", port);
+        props.put("mail.smtp.host", hostProp);
+        props.put("mail.smtp.port", portProp);
+        props.put("mail.smtp.connectiontimeout", socketTimeoutMillis);
+        props.put("mail.smtp.timeout", socketTimeoutMillis);
+        props.put("mail.smtp.writetimeout", socketTimeoutMillis);
+        this.session = Session.getInstance(props);
 
+        Gauge.builder("email.outbox.queue.depth", queue, BlockingQueue::size)
+                .description("Emails waiting for delivery")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("email.outbox.sent").register(meterRegistry);
+        this.failedCounter = Counter.builder("email.outbox.failed")
+                .description("Emails dropped after the last delivery attempt")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("email.outbox.rejected")
+                .description("Emails not accepted because the queue was full")
+                .register(meterRegistry);
+        this.deliveryTimer = Timer.builder("email.outbox.delivery")
+                .description("Time from queueing an email to handing it to the SMTP server")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the delivery threads.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            workerThreads.add(Thread.ofPlatform().name("email-sender-" + i).start(this::runWorker));
+        }
+    }
 
-        Authenticator auth = new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(from, password);
+    /**
+     * Stops accepting new emails and waits for the queued ones to be delivered.
+     */
+    @PreDestroy
+    public void stop() {
+        final long joinTimeoutMillis = 30_000;
+        running = false;
+        for (Thread workerThread : workerThreads) {
+            try {
+                workerThread.join(joinTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-        };
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Dropping {} emails that could not be delivered before shutdown", queue.size());
+        }
+    }
 
-        Session session = Session.getInstance(props, auth);
+    /**
+     * Queues an email for delivery.
+     *
+     * @param to      From client. User's email adress
+     * @param subject From higher method. ex. "Account verification", "Password reset"
+     * @param content Email content.
+     * @param title Email title.
+     * @param code Verification code.
+     * @return true if the email was accepted for delivery
+     */
+    public boolean sendEmail(final String to, final String subject, final String title,
+                             final String content, final String code) {
+        InternetAddress[] recipients;
         try {
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(from));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
-            message.setSubject(subject);
-            message.setContent(msg, "text/html");
-            Transport.send(message);
-            return true;
-        } catch (MessagingException e) {
+            recipients = InternetAddress.parse(to);
+        } catch (AddressException e) {
+            log.warn("Not sending email to invalid address {}", to);
+            return false;
+        }
+        OutgoingEmail email = new OutgoingEmail(recipients, subject, render(title, content, code), System.nanoTime());
+        if (!running || !queue.offer(email)) {
+            rejectedCounter.increment();
             return false;
         }
+        return true;
+    }
+
+    /**
+     * Number of emails waiting for delivery.
+     *
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private static String render(final String title, final String content, final String code) {
+        final int placeholders = 3;
+        int length = title.length() + content.length() + code.length();
+        for (String part : TEMPLATE_PARTS) {
+            length += part.length();
+        }
+        return new StringBuilder(length)
+                .append(TEMPLATE_PARTS[0]).append(title)
+                .append(TEMPLATE_PARTS[1]).append(content)
+                .append(TEMPLATE_PARTS[2]).append(code)
+                .append(TEMPLATE_PARTS[placeholders])
+                .toString();
+    }
+
+    private void runWorker() {
+        final long pollMillis = 500;
+        Transport transport = null;
+        long lastUsed = System.nanoTime();
+        try {
+            while (running || !queue.isEmpty()) {
+                OutgoingEmail email = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (email != null) {
+                    transport = deliver(transport, email);
+                    lastUsed = System.nanoTime();
+                } else if (System.nanoTime() - lastUsed > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+                    transport = close(transport);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close(transport);
+        }
     }
 
+    private Transport deliver(final Transport transport, final OutgoingEmail email) throws InterruptedException {
+        Transport current = transport;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                if (current == null) {
+                    current = session.getTransport("smtp");
+                    current.connect(host, port, from, password);
+                }
+                MimeMessage message = new MimeMessage(session);
+                message.setFrom(new InternetAddress(from));
+                message.setRecipients(Message.RecipientType.TO, email.recipients());
+                message.setSubject(email.subject());
+                message.setContent(email.html(), "text/html");
+                current.sendMessage(message, email.recipients());
+                sentCounter.increment();
+                deliveryTimer.record(System.nanoTime() - email.queuedAt(), TimeUnit.NANOSECONDS);
+                return current;
+            } catch (MessagingException e) {
+                // The connection may be broken, so the next attempt starts from a fresh one.
+                current = close(current);
+                if (attempt == maxAttempts) {
+                    failedCounter.increment();
+                    log.error("Dropping email to {} after {} attempts", email.recipients()[0], attempt, e);
+                } else {
+                    log.warn("Failed to send email to {}, attempt {}", email.recipients()[0], attempt, e);
+                    Thread.sleep(backoffMillis << (attempt - 1));
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Transport close(final Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP connection", e);
+            }
+        }
+        return null;
+    }
+
+    private record OutgoingEmail(InternetAddress[] recipients, String subject, String html, long queuedAt) {
+    }
 }
@@ -23,6 +23,8 @@ import java.util.function.Function;
 @Component
 public class JWTUtils {
 
+    private static final String GENERATION_CLAIM = "rev";
+
     private SecretKey secretKey;
 
     @Value("${application.security.jwt.secret-string}")
@@ -56,6 +58,18 @@ public class JWTUtils {
                 .getPayload();
     }
 
+    /**
+     * Verifies the token signature and expiration and returns its claims. Callers that need
+     * more than one claim should use this method, so the token is parsed only once.
+     *
+     * @param token the JWT token
+     * @return the claims in the token
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, expired or not signed by us
+     */
+    public Claims parseClaims(final String token) {
+        return extractAllClaims(token);
+    }
+
     /**
      * Extracts a specific claim from a token using a resolver function.
      *
@@ -84,25 +98,42 @@ public class JWTUtils {
      *
      * @param appUser       the user for whom the token is generated
      * @param expiryTime the expiration time of the token in milliseconds
+     * @param generation the user's revocation generation, see
+     *                   {@link com.communicator.services.TokenRevocationService#currentGeneration}
      * @return the generated JWT token
      */
-    public String generateToken(final AppUser appUser, final long expiryTime) {
+    public String generateToken(final AppUser appUser, final long expiryTime, final long generation) {
+        final long now = System.currentTimeMillis();
         return Jwts.builder()
                 .subject(appUser.getPhoneNumber())
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + expiryTime))
+                .claim(GENERATION_CLAIM, generation)
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expiryTime))
                 .signWith(secretKey)
                 .compact();
     }
 
+    /**
+     * Extracts the token generation, the number of the user's logouts before the token was issued.
+     * Tokens issued before generations were introduced report 0.
+     *
+     * @param claims claims of a verified token
+     * @return token generation
+     */
+    public long extractGeneration(final Claims claims) {
+        Long generation = claims.get(GENERATION_CLAIM, Long.class);
+        return generation == null ? 0 : generation;
+    }
+
     /**
      * Generates an access token for the user using the default expiration time.
      *
      * @param appUser the user for whom the token is generated
+     * @param generation the user's revocation generation
      * @return the generated access token
      */
-    public String generateAccessToken(final AppUser appUser) {
-        return generateToken(appUser, accessTokenExpiration);
+    public String generateAccessToken(final AppUser appUser, final long generation) {
+        return generateToken(appUser, accessTokenExpiration, generation);
     }
 
     /**
@@ -113,8 +144,8 @@ public class JWTUtils {
      * @return true if the token is valid, false otherwise
      */
     public boolean isTokenValid(final String token, final AppUser appUser) {
-        final String phoneNumber = extractPhoneNumber(token);
-        return phoneNumber.equals(appUser.getPhoneNumber()) && !isTokenExpired(token);
+        final Claims claims = extractAllClaims(token);
+        return claims.getSubject().equals(appUser.getPhoneNumber()) && !claims.getExpiration().before(new Date());
     }
 
     /**
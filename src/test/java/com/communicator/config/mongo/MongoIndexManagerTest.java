@@ -0,0 +1,75 @@
+package com.communicator.config.mongo;
+
+import com.communicator.entity.chat.ChatMessage;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Testcontainers(disabledWithoutDocker = true)
+class MongoIndexManagerTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void connect() {
+        mongoClient = MongoClients.create(MONGO.getReplicaSetUrl());
+    }
+
+    @AfterAll
+    static void disconnect() {
+        mongoClient.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = new MongoTemplate(mongoClient, "index-test");
+        mongoTemplate.getDb().drop();
+    }
+
+    @Test
+    void hotQueriesUseIndexesAfterStartup() {
+        new MongoIndexManager(mongoTemplate, true).init();
+
+        assertThat(new MongoIndexManager(mongoTemplate, true).findCollectionScans()).isEmpty();
+    }
+
+    @Test
+    void ensuringIndexesTwiceIsIdempotent() {
+        MongoIndexManager manager = new MongoIndexManager(mongoTemplate, true);
+        manager.ensureIndexes();
+        int indexCount = mongoTemplate.indexOps(ChatMessage.class).getIndexInfo().size();
+
+        manager.ensureIndexes();
+
+        assertThat(mongoTemplate.indexOps(ChatMessage.class).getIndexInfo()).hasSize(indexCount);
+    }
+
+    @Test
+    void startupFailsWhenHotQueryScansCollection() {
+        MongoIndexManager manager = new MongoIndexManager(mongoTemplate, true);
+        manager.ensureIndexes();
+        mongoTemplate.indexOps(ChatMessage.class).dropIndex("chatId_timestamp_id");
+
+        assertThat(manager.findCollectionScans())
+                .contains("ChatMessageRepository.findTop20ByChatIdOrderByTimestampDesc");
+        assertThatThrownBy(() -> new MongoIndexManager(mongoTemplate, true) {
+            @Override
+            public void ensureIndexes() {
+            }
+        }.init()).isInstanceOf(IllegalStateException.class);
+    }
+}
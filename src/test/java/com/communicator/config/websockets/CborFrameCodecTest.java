@@ -0,0 +1,82 @@
+package com.communicator.config.websockets;
+
+import com.communicator.entity.DefaultPhoto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CborFrameCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CborFrameCodec codec = new CborFrameCodec();
+
+    @Test
+    void chatMessageRoundTripsInFewerBytes() throws Exception {
+        String json = """
+                {"type":"CHAT_MESSAGE","content":{"messageId":"6710b3a4c2f1e35a9d4b7c01",
+                "content":"Hello","chatId":"6710b3a4c2f1e35a9d4b7c02","senderId":"48123456789",
+                "timestamp":"2024-10-17T10:15:30.123Z"}}""";
+
+        byte[] cbor = codec.encode(bytes(json));
+
+        assertThat(cbor.length).isLessThan(bytes(json).length * 2 / 3);
+        assertThat(codec.decode(cbor)).isEqualTo(objectMapper.readTree(json));
+    }
+
+    @Test
+    void loginPayloadRoundTripsWithDefaultPhotoAndUntypedParts() throws Exception {
+        String user = """
+                {"userId":"48123456789","firstName":"Jan","lastName":"Kowalski","photo":"%s"}"""
+                .formatted(DefaultPhoto.URL);
+        String json = """
+                {"type":"ALL_CHATS","content":{"chats":[{"chatId":"c1","users":[%1$s,%1$s],"active":true,
+                "photo":"%2$s","lastMessageContent":"Hi","lastMessageAuthorId":"48123456789",
+                "lastMessageTime":"2024-10-17T10:15:30Z","lastMessageId":"m1"}],
+                "undeliveredMessages":[{"id":"u1","sequence":3,"payload":{"any":"shape"}}],
+                "friendsActivity":{"48123456789":true}}}""".formatted(user, DefaultPhoto.URL);
+
+        JsonNode decoded = codec.decode(codec.encode(bytes(json)));
+
+        assertThat(decoded).isEqualTo(objectMapper.readTree(json));
+    }
+
+    @Test
+    void unknownTypesKeepTheirShape() throws Exception {
+        String json = """
+                {"type":"NEW_CHAT","content":{"chatId":"c1","users":[]}}""";
+
+        assertThat(codec.decode(codec.encode(bytes(json)))).isEqualTo(objectMapper.readTree(json));
+    }
+
+    @Test
+    void contentNotShapedLikeItsSchemaRoundTrips() throws Exception {
+        String statusList = """
+                {"type":"ACTIVITY_STATUS_UPDATE","content":[{"userId":"48123456789","active":true},["a",1]]}""";
+        String arrayElements = """
+                {"type":"LAST_MESSAGES","content":[["m1","Hi","c1","48123456789",1729160130000],"text",null]}""";
+        String objectForList = """
+                {"type":"ACTIVITY_STATUS_UPDATES","content":{"userId":"48123456789","active":false}}""";
+
+        for (String json : new String[] {statusList, arrayElements, objectForList}) {
+            assertThat(codec.decode(codec.encode(bytes(json)))).isEqualTo(objectMapper.readTree(json));
+        }
+    }
+
+    @Test
+    void clientBodiesAreConvertedToJson() throws Exception {
+        String json = """
+                {"chatId":"c1","content":"Hi"}""";
+        byte[] cbor = new CBORMapper().writeValueAsBytes(objectMapper.readTree(json));
+
+        assertThat(objectMapper.readTree(codec.toJson(cbor))).isEqualTo(objectMapper.readTree(json));
+    }
+
+    private static byte[] bytes(final String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
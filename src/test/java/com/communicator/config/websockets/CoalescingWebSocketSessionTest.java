@@ -0,0 +1,100 @@
+package com.communicator.config.websockets;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CoalescingWebSocketSessionTest {
+
+    private static final long MAX_DELAY_MS = 50;
+
+    private final SlowConsumerProtection protection = mock(SlowConsumerProtection.class);
+    private final OutboundCoalescing settings = new OutboundCoalescing(true, MAX_DELAY_MS, 1024,
+            Set.of("CHAT_MESSAGE"), protection, new SimpleMeterRegistry());
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final WebSocketSession delegate = mock(WebSocketSession.class);
+    private final CoalescingWebSocketSession session = new CoalescingWebSocketSession(delegate, settings,
+            scheduler, Runnable::run, new SimpleMeterRegistry().summary("frames"));
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+        settings.stop();
+    }
+
+    @Test
+    void bypassTypeIsWrittenTogetherWithHeldFrames() throws Exception {
+        session.sendMessage(frame("ACTIVITY_STATUS_UPDATE"));
+        session.sendMessage(frame("CHAT_MESSAGE"));
+
+        verify(delegate).sendMessage(new TextMessage(frame("ACTIVITY_STATUS_UPDATE").getPayload()
+                + frame("CHAT_MESSAGE").getPayload()));
+    }
+
+    @Test
+    void heldFramesAreWrittenAfterTheDelay() throws Exception {
+        when(delegate.isOpen()).thenReturn(true);
+        session.sendMessage(frame("ACTIVITY_STATUS_UPDATE"));
+        session.sendMessage(frame("NEW_CHAT"));
+
+        verifyNoInteractions(delegate);
+        verify(delegate, timeout(MAX_DELAY_MS * 20)).sendMessage(any(WebSocketMessage.class));
+    }
+
+    @Test
+    void failedDelayedWriteClosesTheSessionAndHandsOverTheHeldFrames() throws Exception {
+        when(delegate.isOpen()).thenReturn(true);
+        when(delegate.getId()).thenReturn("session");
+        doThrow(new IOException("Broken pipe")).when(delegate).sendMessage(any(WebSocketMessage.class));
+        session.sendMessage(frame("ACTIVITY_STATUS_UPDATE"));
+        session.sendMessage(frame("NEW_CHAT"));
+
+        verify(delegate, timeout(MAX_DELAY_MS * 20)).close(CloseStatus.SERVER_ERROR);
+        verify(protection).unsent("session", List.of(frame("ACTIVITY_STATUS_UPDATE"), frame("NEW_CHAT")));
+    }
+
+    @Test
+    void otherFramesAreNotHeld() throws Exception {
+        TextMessage receipt = new TextMessage("RECEIPT\nreceipt-id:1\n\n\u0000");
+
+        session.sendMessage(receipt);
+
+        verify(delegate).sendMessage(receipt);
+    }
+
+    @Test
+    void typeIsReadFromJsonAndCborBodies() {
+        byte[] cbor = {(byte) 0xd9, 0x01, 0x00, (byte) 0x82, 0x6c,
+            'C', 'H', 'A', 'T', '_', 'M', 'E', 'S', 'S', 'A', 'G', 'E', (byte) 0xa0};
+        ByteBuffer binary = ByteBuffer.allocate(cbor.length + "MESSAGE\ncodec:cbor\n\n".length());
+        binary.put("MESSAGE\ncodec:cbor\n\n".getBytes()).put(cbor).flip();
+
+        assertThat(StompFrames.typeOf(frame("NEW_CHAT").getPayload())).isEqualTo("NEW_CHAT");
+        assertThat(StompFrames.typeOf(binary)).isEqualTo("CHAT_MESSAGE");
+    }
+
+    private static TextMessage frame(final String type) {
+        return new TextMessage("MESSAGE\ndestination:/user/queue/messages\n\n{\"type\":\"" + type
+                + "\",\"content\":{}}\u0000");
+    }
+}
@@ -0,0 +1,192 @@
+package com.communicator.config.websockets;
+
+import com.communicator.dto.MessageType;
+import com.communicator.services.chat.OfflineOutboxService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SlowConsumerProtectionTest {
+
+    private static final int SEND_TIME_LIMIT_MS = 200;
+    private static final int BUFFER_SIZE_LIMIT = 4096;
+    private static final int DROP_THRESHOLD = 1024;
+    private static final String SLOW_USER = "48111111111";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OfflineOutboxService offlineOutboxService = mock(OfflineOutboxService.class);
+    private final SessionRegistry sessionRegistry = new SessionRegistry();
+    private final SlowConsumerProtection protection = new SlowConsumerProtection(true, SEND_TIME_LIMIT_MS,
+            BUFFER_SIZE_LIMIT, DROP_THRESHOLD, Set.of("ACTIVITY_STATUS_UPDATE"), Set.of("CHAT_MESSAGE"),
+            offlineOutboxService, sessionRegistry, meterRegistry);
+    private final ExecutorService writer = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private final WebSocketSession slowClient = mock(WebSocketSession.class);
+    private final WebSocketSession fastClient = mock(WebSocketSession.class);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(slowClient.getId()).thenReturn("slow");
+        when(fastClient.getId()).thenReturn("fast");
+        sessionRegistry.put("slow", SLOW_USER);
+        doAnswer(invocation -> {
+            stalled.await();
+            return null;
+        }).when(slowClient).sendMessage(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stalled.countDown();
+        writer.shutdownNow();
+        protection.stop();
+    }
+
+    @Test
+    void stalledClientDoesNotDelayOtherSessions() throws Exception {
+        final int frames = 200;
+        BoundedSendSession slow = new BoundedSendSession(slowClient, protection, writer);
+        BoundedSendSession fast = new BoundedSendSession(fastClient, protection, writer);
+        Semaphore delivered = new Semaphore(0);
+        doAnswer(invocation -> {
+            delivered.release();
+            return null;
+        }).when(fastClient).sendMessage(any());
+        boolean slowClosed = false;
+
+        for (int i = 0; i < frames; i++) {
+            if (!slowClosed) {
+                try {
+                    slow.sendMessage(presence());
+                    slow.sendMessage(chatMessage(i));
+                } catch (SessionLimitExceededException e) {
+                    slowClosed = true;
+                }
+            }
+            fast.sendMessage(chatMessage(i));
+            assertThat(delivered.tryAcquire(SEND_TIME_LIMIT_MS * 10, TimeUnit.MILLISECONDS)).isTrue();
+        }
+
+        assertThat(slowClosed).isTrue();
+        assertThat(stalled.getCount()).as("slow client still stalled").isOne();
+        verify(fastClient, times(frames)).sendMessage(any());
+        assertThat(meterRegistry.get("websocket.slow.consumer.dropped").tag("type", "ACTIVITY_STATUS_UPDATE")
+                .counter().count()).isPositive();
+        assertThat(meterRegistry.get("websocket.slow.consumer.closed").tag("reason", "buffer")
+                .counter().count()).isEqualTo(1);
+        verify(offlineOutboxService, timeout(SEND_TIME_LIMIT_MS * 10).atLeastOnce())
+                .enqueue(eq(SLOW_USER), eq(MessageType.CHAT_MESSAGE), any());
+    }
+
+    @Test
+    void writeBlockedOverTheTimeLimitClosesTheSession() throws Exception {
+        BoundedSendSession slow = new BoundedSendSession(slowClient, protection, writer);
+        slow.sendMessage(chatMessage(0));
+        verify(slowClient, timeout(SEND_TIME_LIMIT_MS * 10)).sendMessage(any());
+        long limit = protection.getSendTimeLimitNanos();
+
+        long now = System.nanoTime();
+        slow.checkSendTime(now);
+        slow.checkSendTime(now + 2 * limit);
+        slow.sendMessage(chatMessage(1));
+
+        verify(slowClient, timeout(SEND_TIME_LIMIT_MS * 10)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(slowClient, times(1)).sendMessage(any(WebSocketMessage.class));
+        assertThat(meterRegistry.get("websocket.slow.consumer.closed").tag("reason", "time")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void writeThreadScheduledLateDoesNotCountAgainstTheTimeLimit() throws Exception {
+        List<Runnable> notYetRun = new ArrayList<>();
+        BoundedSendSession session = new BoundedSendSession(fastClient, protection, notYetRun::add);
+        session.sendMessage(chatMessage(0));
+
+        session.checkSendTime(System.nanoTime() + 2 * protection.getSendTimeLimitNanos());
+        session.sendMessage(chatMessage(1));
+        notYetRun.forEach(Runnable::run);
+
+        verify(fastClient, times(2)).sendMessage(any(WebSocketMessage.class));
+        verify(fastClient, never()).close(any());
+        assertThat(meterRegistry.get("websocket.slow.consumer.closed").tag("reason", "time")
+                .counter().count()).isZero();
+    }
+
+    @Test
+    void quietSessionStuckOnAWriteIsClosedByTheTimer() throws Exception {
+        WebSocketHandler handler = mock(WebSocketHandler.class);
+        protection.decorate(handler).afterConnectionEstablished(slowClient);
+        ArgumentCaptor<WebSocketSession> bounded = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(handler).afterConnectionEstablished(bounded.capture());
+        protection.start();
+
+        bounded.getValue().sendMessage(chatMessage(0));
+
+        verify(slowClient, timeout(SEND_TIME_LIMIT_MS * 10)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(meterRegistry.get("websocket.slow.consumer.closed").tag("reason", "time")
+                .counter().count()).isEqualTo(1);
+        verify(offlineOutboxService, timeout(SEND_TIME_LIMIT_MS * 10))
+                .enqueue(eq(SLOW_USER), eq(MessageType.CHAT_MESSAGE), any());
+    }
+
+    @Test
+    void failedWriteStoresTheUnsentFramesAndClosesTheSession() throws Exception {
+        sessionRegistry.put("fast", SLOW_USER);
+        doThrow(new IOException("Broken pipe")).when(fastClient).sendMessage(any());
+        BoundedSendSession failing = new BoundedSendSession(fastClient, protection, writer);
+
+        failing.sendMessage(chatMessage(0));
+
+        verify(fastClient, timeout(SEND_TIME_LIMIT_MS * 10)).close(CloseStatus.SERVER_ERROR);
+        verify(offlineOutboxService, timeout(SEND_TIME_LIMIT_MS * 10))
+                .enqueue(eq(SLOW_USER), eq(MessageType.CHAT_MESSAGE), any());
+        verify(fastClient, times(1)).sendMessage(any(WebSocketMessage.class));
+    }
+
+    private static TextMessage presence() {
+        return frame("ACTIVITY_STATUS_UPDATE", "{\"userId\":\"48222222222\",\"active\":true}");
+    }
+
+    private static TextMessage chatMessage(final int index) {
+        return frame("CHAT_MESSAGE", "{\"messageId\":\"m" + index + "\",\"chatId\":\"c1\",\"senderId\":\"48333333333\","
+                + "\"content\":\"Message number " + index + "\",\"timestamp\":\"2024-10-17T10:15:30Z\"}");
+    }
+
+    private static TextMessage frame(final String type, final String content) {
+        return new TextMessage("MESSAGE\ndestination:/user/" + SLOW_USER + "/" + SLOW_USER
+                + "\ncontent-type:application/json\nsubscription:sub-0\nmessage-id:1\n\n{\"type\":\"" + type
+                + "\",\"content\":" + content + "}\u0000");
+    }
+}
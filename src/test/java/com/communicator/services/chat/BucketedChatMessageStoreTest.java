@@ -0,0 +1,146 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.chat.MessageCursor;
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.entity.chat.ChatMessageBucket;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class BucketedChatMessageStoreTest {
+
+    private static final String CHAT = "chat";
+    private static final int BUCKET_SIZE = 5;
+    private static final Instant START = Instant.parse("2024-10-17T10:00:00Z");
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private BucketedChatMessageStore store;
+
+    @BeforeAll
+    static void connect() {
+        mongoClient = MongoClients.create(MONGO.getReplicaSetUrl());
+    }
+
+    @AfterAll
+    static void disconnect() {
+        mongoClient.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = new MongoTemplate(mongoClient, "bucket-test");
+        mongoTemplate.getDb().drop();
+        store = new BucketedChatMessageStore(mongoTemplate, null, BUCKET_SIZE, Duration.ofHours(1));
+    }
+
+    @Test
+    void appendsStartNewBucketsWhenFullOrInNextWindow() {
+        List<ChatMessage> sent = messages(START, 7);
+        store.saveAll(sent.subList(0, 3));
+        store.saveAll(sent.subList(3, 7));
+        store.saveAll(messages(START.plus(Duration.ofHours(1)), 1));
+
+        List<ChatMessageBucket> buckets = mongoTemplate.findAll(ChatMessageBucket.class);
+        assertThat(buckets).extracting(ChatMessageBucket::getCount).containsExactlyInAnyOrder(3, 4, 1);
+        assertThat(buckets).allSatisfy(bucket ->
+                assertThat(bucket.getMessages()).hasSize(bucket.getCount()));
+    }
+
+    @Test
+    void appendsOnlyToTheNewestBucketOfAWindow() {
+        List<ChatMessage> sent = messages(START, 8);
+        store.saveAll(sent.subList(0, 3));
+        store.saveAll(sent.subList(3, 7));
+        store.saveAll(sent.subList(7, 8));
+
+        List<ChatMessageBucket> buckets = mongoTemplate.findAll(ChatMessageBucket.class);
+        assertThat(buckets).extracting(ChatMessageBucket::getCount).containsExactlyInAnyOrder(3, 5);
+        assertThat(buckets).filteredOn(ChatMessageBucket::isOpen).singleElement()
+                .extracting(ChatMessageBucket::getCount)
+                .isEqualTo(5);
+        assertThat(store.findLastMessages(CHAT)).extracting(ChatMessage::getMessageId)
+                .containsExactlyElementsOf(idsNewestFirst(sent));
+    }
+
+    @Test
+    void latestPageAndHistoryAreNewestFirst() {
+        List<ChatMessage> sent = messages(START, 23);
+        store.saveAll(sent);
+
+        List<ChatMessage> latest = store.findLastMessages(CHAT);
+        assertThat(latest).extracting(ChatMessage::getMessageId)
+                .containsExactlyElementsOf(idsNewestFirst(sent.subList(3, 23)));
+
+        ChatMessage oldestLoaded = latest.get(latest.size() - 1);
+        List<ChatMessage> older = store.findBefore(CHAT,
+                new MessageCursor(oldestLoaded.getTimestamp(), oldestLoaded.getMessageId()), 10);
+        assertThat(older).extracting(ChatMessage::getMessageId)
+                .containsExactlyElementsOf(idsNewestFirst(sent.subList(0, 3)));
+    }
+
+    @Test
+    void historyReturnsOnlyTheMessagesRightBeforeTheCursor() {
+        List<ChatMessage> sent = messages(START, 13);
+        store.saveAll(sent);
+
+        ChatMessage cursor = sent.get(8);
+        List<ChatMessage> older = store.findBefore(CHAT,
+                new MessageCursor(cursor.getTimestamp(), cursor.getMessageId()), 4);
+        assertThat(older).extracting(ChatMessage::getMessageId)
+                .containsExactlyElementsOf(idsNewestFirst(sent.subList(4, 8)));
+    }
+
+    @Test
+    void savingTwiceKeepsOneCopyAndFindsItById() {
+        ChatMessage message = messages(START, 1).get(0);
+        store.save(message);
+        store.save(message);
+
+        assertThat(mongoTemplate.findAll(ChatMessageBucket.class))
+                .singleElement()
+                .extracting(ChatMessageBucket::getCount)
+                .isEqualTo(1);
+        assertThat(store.findById(message.getMessageId()))
+                .get()
+                .extracting(ChatMessage::getContent)
+                .isEqualTo(message.getContent());
+    }
+
+    private static List<ChatMessage> messages(final Instant from, final int count) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(ChatMessage.builder()
+                    .messageId(new ObjectId().toHexString())
+                    .chatId(CHAT)
+                    .senderId("48123456789")
+                    .content("message " + i)
+                    .timestamp(from.plusSeconds(i))
+                    .build());
+        }
+        return messages;
+    }
+
+    private static List<String> idsNewestFirst(final List<ChatMessage> messages) {
+        return messages.reversed().stream().map(ChatMessage::getMessageId).toList();
+    }
+}
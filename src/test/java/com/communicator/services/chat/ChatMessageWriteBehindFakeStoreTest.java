@@ -0,0 +1,174 @@
+package com.communicator.services.chat;
+
+import com.communicator.dto.chat.MessageCursor;
+import com.communicator.entity.chat.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Retries and shutdown of the write-behind pipeline against an in-memory store, without Docker.
+ */
+class ChatMessageWriteBehindFakeStoreTest {
+
+    private static final String CHAT = "chat";
+    private static final String POISON = "poison";
+    private static final long RETRY_BACKOFF_MS = 1;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final FakeStore store = new FakeStore();
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class)))
+                .thenReturn(mock(BulkOperations.class));
+    }
+
+    @Test
+    @Timeout(10)
+    void rejectedMessageIsDeadLetteredAndLaterBatchesAreStored() {
+        final int messages = 50;
+        ChatMessageWriteBehindService service = service(2);
+        service.start();
+
+        ChatMessage poison = message(POISON);
+        service.enqueue(poison);
+        List<ChatMessage> sent = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            ChatMessage message = message("message " + i);
+            service.enqueue(message);
+            sent.add(message);
+        }
+        service.stop();
+
+        assertThat(store.messages.keySet()).containsExactlyInAnyOrderElementsOf(ids(sent));
+        verify(mongoTemplate).insert(List.of(poison), ChatMessageWriteBehindService.DEAD_LETTER_COLLECTION);
+    }
+
+    @Test
+    @Timeout(10)
+    void messagesAcceptedDuringShutdownAreAllStored() throws Exception {
+        final int producers = 8;
+        final int afterStop = 10;
+        ChatMessageWriteBehindService service = service(2);
+        service.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch producing = new CountDownLatch(producers);
+        AtomicBoolean stopped = new AtomicBoolean();
+        List<Future<List<ChatMessage>>> results = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            results.add(executor.submit(() -> {
+                List<ChatMessage> mine = new ArrayList<>();
+                producing.countDown();
+                int left = afterStop;
+                while (!stopped.get() || left-- > 0) {
+                    ChatMessage message = message("message " + mine.size());
+                    service.enqueue(message);
+                    mine.add(message);
+                }
+                return mine;
+            }));
+        }
+        producing.await();
+        service.stop();
+        stopped.set(true);
+
+        List<ChatMessage> sent = new ArrayList<>();
+        for (Future<List<ChatMessage>> result : results) {
+            sent.addAll(result.get());
+        }
+        executor.shutdown();
+
+        assertThat(service.getQueueDepth()).isZero();
+        assertThat(store.messages.keySet()).containsExactlyInAnyOrderElementsOf(ids(sent));
+    }
+
+    private ChatMessageWriteBehindService service(final int queueCapacity) {
+        return new ChatMessageWriteBehindService(mongoTemplate, store, queueCapacity, 2, 1, RETRY_BACKOFF_MS,
+                RETRY_BACKOFF_MS, MAX_ATTEMPTS, new SimpleMeterRegistry());
+    }
+
+    private static List<String> ids(final List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getMessageId).toList();
+    }
+
+    private static ChatMessage message(final String content) {
+        return ChatMessage.builder()
+                .chatId(CHAT)
+                .senderId("48123456789")
+                .content(content)
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    /**
+     * Store keeping messages in memory that rejects every message with the content {@value #POISON}.
+     */
+    private static final class FakeStore implements ChatMessageStore {
+
+        private final Map<String, ChatMessage> messages = new ConcurrentHashMap<>();
+
+        @Override
+        public void saveAll(final List<ChatMessage> batch) {
+            batch.forEach(this::save);
+        }
+
+        @Override
+        public void save(final ChatMessage message) {
+            if (POISON.equals(message.getContent())) {
+                throw new DataIntegrityViolationException("Document failed validation");
+            }
+            messages.putIfAbsent(message.getMessageId(), message);
+        }
+
+        @Override
+        public Optional<ChatMessage> findById(final String messageId) {
+            return Optional.ofNullable(messages.get(messageId));
+        }
+
+        @Override
+        public List<ChatMessage> findLastMessages(final String chatId) {
+            return findBefore(chatId, null, LAST_MESSAGES);
+        }
+
+        @Override
+        public Mono<List<ChatMessage>> findLastMessagesReactive(final String chatId) {
+            return Mono.fromCallable(() -> findLastMessages(chatId));
+        }
+
+        @Override
+        public List<ChatMessage> findBefore(final String chatId, final MessageCursor position, final int limit) {
+            return messages.values().stream()
+                    .filter(message -> message.getChatId().equals(chatId))
+                    .sorted(NEWEST_FIRST)
+                    .limit(limit)
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.communicator.services.chat;
+
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.entity.chat.ChatRoom;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+@Testcontainers(disabledWithoutDocker = true)
+class ChatMessageWriteBehindServiceTest {
+
+    private static final String CHAT = "chat";
+    private static final long RETRY_BACKOFF_MS = 10;
+    private static final int MAX_ATTEMPTS = 5;
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void connect() {
+        mongoClient = MongoClients.create(MONGO.getReplicaSetUrl());
+    }
+
+    @AfterAll
+    static void disconnect() {
+        mongoClient.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = new MongoTemplate(mongoClient, "write-behind-test");
+        mongoTemplate.getDb().drop();
+        ChatRoom chatRoom = new ChatRoom();
+        chatRoom.setChatId(CHAT);
+        mongoTemplate.insert(chatRoom);
+    }
+
+    @Test
+    void fullQueueMakesProducersWaitAndLosesNothing() throws Exception {
+        final int producers = 8;
+        final int perProducer = 50;
+        ChatMessageWriteBehindService service = service(new DocumentChatMessageStore(mongoTemplate, null, null), 2);
+        service.start();
+
+        List<ChatMessage> sent = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<List<ChatMessage>>> results = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            results.add(executor.submit(() -> {
+                List<ChatMessage> mine = new ArrayList<>();
+                for (int i = 0; i < perProducer; i++) {
+                    ChatMessage message = message("message " + i);
+                    service.enqueue(message);
+                    mine.add(message);
+                }
+                return mine;
+            }));
+        }
+        for (Future<List<ChatMessage>> result : results) {
+            sent.addAll(result.get());
+        }
+        executor.shutdown();
+        service.stop();
+
+        assertThat(mongoTemplate.count(new Query(), ChatMessage.class))
+                .isEqualTo(producers * perProducer);
+        ChatMessage newest = sent.stream().max(Comparator.comparing(ChatMessage::getTimestamp)
+                .thenComparing(ChatMessage::getMessageId)).orElseThrow();
+        assertThat(lastMessageId()).isEqualTo(newest.getMessageId());
+    }
+
+    @Test
+    void failedBatchIsRetriedUntilStored() {
+        ChatMessageStore store = spy(new DocumentChatMessageStore(mongoTemplate, null, null));
+        doThrow(new DataAccessResourceFailureException("down")).when(store).saveAll(any());
+        doThrow(new DataAccessResourceFailureException("down"))
+                .doThrow(new DataAccessResourceFailureException("still down"))
+                .doCallRealMethod()
+                .when(store).save(any());
+        ChatMessageWriteBehindService service = service(store, 1);
+        service.start();
+
+        ChatMessage message = message("hello");
+        service.enqueue(message);
+        service.stop();
+
+        assertThat(mongoTemplate.findById(message.getMessageId(), ChatMessage.class)).isNotNull();
+        assertThat(lastMessageId()).isEqualTo(message.getMessageId());
+    }
+
+    @Test
+    void olderMessageDoesNotReplaceLastMessage() {
+        ChatMessageWriteBehindService service = service(new DocumentChatMessageStore(mongoTemplate, null, null), 1);
+        service.start();
+
+        ChatMessage newer = message("newer");
+        ChatMessage older = message("older");
+        older.setTimestamp(newer.getTimestamp().minusSeconds(1));
+        service.enqueue(newer);
+        service.enqueue(older);
+        service.stop();
+
+        assertThat(lastMessageId()).isEqualTo(newer.getMessageId());
+    }
+
+    private ChatMessageWriteBehindService service(final ChatMessageStore store, final int queueCapacity) {
+        return new ChatMessageWriteBehindService(mongoTemplate, store, queueCapacity, 2, 1, RETRY_BACKOFF_MS,
+                RETRY_BACKOFF_MS * 4, MAX_ATTEMPTS, new SimpleMeterRegistry());
+    }
+
+    private String lastMessageId() {
+        return mongoTemplate.findById(CHAT, ChatRoom.class).getLastMessage().getMessageId();
+    }
+
+    private static ChatMessage message(final String content) {
+        return ChatMessage.builder()
+                .chatId(CHAT)
+                .senderId("48123456789")
+                .content(content)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
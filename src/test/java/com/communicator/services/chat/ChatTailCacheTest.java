@@ -0,0 +1,99 @@
+package com.communicator.services.chat;
+
+import com.communicator.entity.chat.ChatMessage;
+import com.communicator.services.cluster.ClusterEventBus;
+import com.communicator.services.cluster.LoopbackCluster;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatTailCacheTest {
+
+    private static final String CHAT = "chat";
+    private static final Instant START = Instant.parse("2024-10-17T10:00:00Z");
+    private static final Duration DELIVERY_TIMEOUT = Duration.ofSeconds(5);
+
+    private final ChatMessageStore storeOfA = mock(ChatMessageStore.class);
+    private final ChatMessageStore storeOfB = mock(ChatMessageStore.class);
+    private LoopbackCluster cluster;
+    private ChatTailCache nodeA;
+    private ChatTailCache nodeB;
+
+    @BeforeEach
+    void setUp() {
+        cluster = LoopbackCluster.named("test-" + UUID.randomUUID());
+        nodeA = cache(storeOfA, "node-a");
+        nodeB = cache(storeOfB, "node-b");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cluster.unsubscribe("node-a");
+        cluster.unsubscribe("node-b");
+    }
+
+    @Test
+    void firstReadMergesStoredMessagesWithUnflushedOnes() {
+        ChatMessage persisted = message("persisted", 0);
+        ChatMessage flushedAfterAppend = message("flushed", 1);
+        ChatMessage unflushed = message("unflushed", 2);
+        nodeA.append(flushedAfterAppend);
+        nodeA.append(unflushed);
+        when(storeOfA.findLastMessages(CHAT)).thenReturn(List.of(flushedAfterAppend, persisted));
+
+        assertThat(nodeA.getLastMessages(CHAT)).containsExactly(unflushed, flushedAfterAppend, persisted);
+        assertThat(nodeA.getLastMessages(CHAT)).containsExactly(unflushed, flushedAfterAppend, persisted);
+        verify(storeOfA, times(1)).findLastMessages(CHAT);
+    }
+
+    @Test
+    void messagesSentOnAnotherNodeReachACompleteTailInOrder() throws InterruptedException {
+        ChatMessage first = message("first", 0);
+        ChatMessage second = message("second", 1);
+        ChatMessage third = message("third", 2);
+        when(storeOfB.findLastMessages(CHAT)).thenReturn(List.of(first));
+        assertThat(nodeB.getLastMessages(CHAT)).containsExactly(first);
+
+        nodeB.append(third);
+        nodeA.append(second);
+        nodeA.append(first);
+
+        long deadline = System.nanoTime() + DELIVERY_TIMEOUT.toNanos();
+        while (nodeB.getLastMessages(CHAT).size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(nodeB.getLastMessages(CHAT)).containsExactly(third, second, first);
+        verify(storeOfB, times(1)).findLastMessages(CHAT);
+    }
+
+    private ChatTailCache cache(final ChatMessageStore store, final String nodeId) {
+        ClusterEventBus bus = new ClusterEventBus(cluster, nodeId);
+        ChatTailCache cache = new ChatTailCache(store, bus, 100, 1 << 20, Duration.ofMinutes(1),
+                new SimpleMeterRegistry());
+        cache.listenToCluster();
+        bus.start();
+        return cache;
+    }
+
+    private static ChatMessage message(final String content, final int second) {
+        return ChatMessage.builder()
+                .messageId(content)
+                .chatId(CHAT)
+                .senderId("48123456789")
+                .content(content)
+                .timestamp(START.plusSeconds(second))
+                .build();
+    }
+}
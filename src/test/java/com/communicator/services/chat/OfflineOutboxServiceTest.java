@@ -0,0 +1,154 @@
+package com.communicator.services.chat;
+
+import com.communicator.config.mongo.MongoIndexManager;
+import com.communicator.config.mongo.OutboxSequenceMigration;
+import com.communicator.dto.MessageType;
+import com.communicator.entity.chat.UndeliveredMessage;
+import com.communicator.repositories.UndeliveredMessageRepository;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class OfflineOutboxServiceTest {
+
+    private static final String USER = "48123456789";
+    private static final int PAGE_SIZE = 1000;
+    private static final long TRIM_INTERVAL_MS = 1;
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private OfflineOutboxService outbox;
+
+    @BeforeAll
+    static void connect() {
+        mongoClient = MongoClients.create(MONGO.getReplicaSetUrl());
+    }
+
+    @AfterAll
+    static void disconnect() {
+        mongoClient.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = new MongoTemplate(mongoClient, "outbox-test");
+        mongoTemplate.getDb().drop();
+        UndeliveredMessageRepository repository =
+                new MongoRepositoryFactory(mongoTemplate).getRepository(UndeliveredMessageRepository.class);
+        outbox = new OfflineOutboxService(repository, mongoTemplate, null, null, PAGE_SIZE, TRIM_INTERVAL_MS,
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        outbox.stop();
+    }
+
+    @Test
+    void concurrentEnqueuesGetDistinctSequences() throws Exception {
+        final int producers = 8;
+        final int perProducer = 25;
+        new MongoIndexManager(mongoTemplate, false).ensureIndexes();
+        outbox.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> results = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    outbox.enqueue(USER, MessageType.CHAT_MESSAGE, "message " + i);
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertThat(outbox.nextPage(USER)).extracting(UndeliveredMessage::getSequence)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, producers * perProducer).boxed().toList());
+    }
+
+    @Test
+    void acknowledgementsRacingTheTrimAreNotLost() throws Exception {
+        final int entries = 200;
+        new MongoIndexManager(mongoTemplate, false).ensureIndexes();
+        for (int i = 0; i < entries; i++) {
+            outbox.enqueue(USER, MessageType.CHAT_MESSAGE, "message " + i);
+        }
+        outbox.start();
+
+        final long lastAcknowledged = entries - 10;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> {
+            for (long sequence = 1; sequence <= lastAcknowledged; sequence++) {
+                outbox.acknowledge(USER, sequence);
+                Thread.sleep(0, 1);
+            }
+            return null;
+        }).get();
+        executor.shutdown();
+
+        assertThat(outbox.nextPage(USER)).extracting(UndeliveredMessage::getSequence)
+                .containsExactlyElementsOf(LongStream.rangeClosed(lastAcknowledged + 1, entries).boxed().toList());
+        outbox.stop();
+        assertThat(mongoTemplate.find(new Query(), UndeliveredMessage.class))
+                .extracting(UndeliveredMessage::getSequence)
+                .containsExactlyInAnyOrderElementsOf(
+                        LongStream.rangeClosed(lastAcknowledged + 1, entries).boxed().toList());
+    }
+
+    @Test
+    void legacyEntriesAreNumberedAndReplayedAfterNewerOnes() {
+        outbox.enqueue(USER, MessageType.CHAT_MESSAGE, "numbered");
+        String collection = mongoTemplate.getCollectionName(UndeliveredMessage.class);
+        mongoTemplate.insert(legacyEntry("legacy 1"), collection);
+        mongoTemplate.insert(legacyEntry("legacy 2"), collection);
+
+        new OutboxSequenceMigration(mongoTemplate).migrate();
+        new MongoIndexManager(mongoTemplate, false).ensureIndexes();
+        outbox.start();
+
+        assertThat(outbox.nextPage(USER)).extracting(UndeliveredMessage::getPayload)
+                .containsExactly("numbered", "legacy 1", "legacy 2");
+        assertThat(mongoTemplate.exists(Query.query(Criteria.where("sequence").exists(false)), collection))
+                .isFalse();
+        outbox.enqueue(USER, MessageType.CHAT_MESSAGE, "after migration");
+        assertThat(outbox.nextPage(USER)).extracting(UndeliveredMessage::getSequence)
+                .containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    private static Document legacyEntry(final String payload) {
+        return new Document("userId", USER)
+                .append("payload", payload)
+                .append("type", MessageType.CHAT_MESSAGE.name())
+                .append("createdAt", Instant.now());
+    }
+}
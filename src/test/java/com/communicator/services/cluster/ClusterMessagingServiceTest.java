@@ -0,0 +1,101 @@
+package com.communicator.services.cluster;
+
+import com.communicator.dto.MessageType;
+import com.communicator.entity.TypedWebSocketMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterMessagingServiceTest {
+
+    private static final String USER = "48123456789";
+
+    private final BlockingQueue<Message<?>> receivedByA = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Message<?>> receivedByB = new LinkedBlockingQueue<>();
+    private ClusterMessagingService nodeA;
+    private ClusterMessagingService nodeB;
+    private LoopbackCluster cluster;
+
+    @BeforeEach
+    void setUp() {
+        cluster = LoopbackCluster.named("test-" + UUID.randomUUID());
+        nodeA = new ClusterMessagingService(template(receivedByA), cluster, cluster, "node-a");
+        nodeB = new ClusterMessagingService(template(receivedByB), cluster, cluster, "node-b");
+        nodeA.start();
+        nodeB.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    void relaysMessageToNodeHoldingTheSession() throws InterruptedException {
+        nodeB.userConnected(USER);
+
+        nodeA.sendToUser(USER, new TypedWebSocketMessage(MessageType.NEW_CHAT, "chat"));
+
+        Message<?> relayed = receivedByB.poll(5, TimeUnit.SECONDS);
+        assertThat(relayed).isNotNull();
+        assertThat(SimpMessageHeaderAccessor.getDestination(relayed.getHeaders()))
+                .isEqualTo("/user/" + USER + "/" + USER);
+        assertThat(new String((byte[]) relayed.getPayload(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"type\":\"NEW_CHAT\",\"content\":\"chat\"}");
+        assertThat(receivedByA).isEmpty();
+    }
+
+    @Test
+    void userIsOfflineEverywhereAfterTheirNodeLeaves() {
+        nodeB.userConnected(USER);
+        assertThat(nodeA.isConnected(USER)).isTrue();
+
+        nodeB.stop();
+
+        assertThat(nodeA.isConnected(USER)).isFalse();
+    }
+
+    @Test
+    void eventsReachEveryOtherNodeButNotTheSender() throws InterruptedException {
+        BlockingQueue<TestEvent> eventsOfA = new LinkedBlockingQueue<>();
+        BlockingQueue<TestEvent> eventsOfB = new LinkedBlockingQueue<>();
+        ClusterEventBus busA = new ClusterEventBus(cluster, "node-a");
+        ClusterEventBus busB = new ClusterEventBus(cluster, "node-b");
+        busA.listen(TestEvent.class, eventsOfA::add);
+        busB.listen(TestEvent.class, eventsOfB::add);
+        busA.start();
+        busB.start();
+
+        busA.publish(new TestEvent("first"));
+        busA.publish(new TestEvent("second"));
+
+        assertThat(eventsOfB.poll(5, TimeUnit.SECONDS)).isEqualTo(new TestEvent("first"));
+        assertThat(eventsOfB.poll(5, TimeUnit.SECONDS)).isEqualTo(new TestEvent("second"));
+        assertThat(eventsOfA).isEmpty();
+    }
+
+    private record TestEvent(String value) implements ClusterEvent {
+    }
+
+    private static SimpMessagingTemplate template(final BlockingQueue<Message<?>> received) {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> received.add(message));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        template.setMessageConverter(converter);
+        return template;
+    }
+}
@@ -0,0 +1,70 @@
+package com.communicator.services.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailServiceTest {
+
+    private FakeSmtpServer smtpServer;
+    private SimpleMeterRegistry meterRegistry;
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtpServer = new FakeSmtpServer();
+        meterRegistry = new SimpleMeterRegistry();
+        emailService = new EmailService("app@example.com", "secret", "localhost", smtpServer.getPort(),
+                1, 10, 3, 10, 30_000, meterRegistry);
+        emailService.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        emailService.stop();
+        smtpServer.close();
+    }
+
+    @Test
+    void deliversQueuedEmailsOverOneConnection() throws InterruptedException {
+        assertThat(emailService.sendEmail("user@example.com", "Account verification", "Verify", "Your code:",
+                "ABC123")).isTrue();
+        assertThat(emailService.sendEmail("user@example.com", "Password reset", "Reset", "Your code:",
+                "XYZ789")).isTrue();
+
+        String first = smtpServer.getMessages().poll(5, TimeUnit.SECONDS);
+        String second = smtpServer.getMessages().poll(5, TimeUnit.SECONDS);
+        assertThat(first).contains("Subject: Account verification").contains("ABC123");
+        assertThat(second).contains("Subject: Password reset").contains("XYZ789");
+        assertThat(smtpServer.getConnectionCount()).isEqualTo(1);
+        // The delivery is recorded once the client has read the server's reply.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("email.outbox.delivery").timer().count() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.get("email.outbox.delivery").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void retriesTransientFailures() throws InterruptedException {
+        smtpServer.failNext(2);
+
+        assertThat(emailService.sendEmail("user@example.com", "Account verification", "Verify", "Your code:",
+                "ABC123")).isTrue();
+
+        assertThat(smtpServer.getMessages().poll(5, TimeUnit.SECONDS)).contains("ABC123");
+        assertThat(meterRegistry.get("email.outbox.failed").counter().count()).isZero();
+    }
+
+    @Test
+    void rejectsInvalidAddressWithoutQueueing() {
+        assertThat(emailService.sendEmail("<user@example.com", "Subject", "Title", "Content", "Code")).isFalse();
+        assertThat(emailService.getQueueDepth()).isZero();
+    }
+}